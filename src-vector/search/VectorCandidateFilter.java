@@ -0,0 +1,46 @@
+package search;
+
+import jdk.incubator.vector.LongVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * CandidateFilter that tests as many masks at once as the CPU has long lanes
+ * (4 with AVX2, 8 with AVX-512), using the incubating Vector API of Java 17.
+ * It lives in the src-vector source root, which is only compiled with
+ * --add-modules jdk.incubator.vector. Get it through CandidateFilter.create,
+ * which falls back to the scalar filter when the module or the class is
+ * missing.
+ */
+public class VectorCandidateFilter extends CandidateFilter {
+    private static final VectorSpecies<Long> SPECIES = LongVector.SPECIES_PREFERRED;
+    // the bit of every candidate within its word of the bit set
+    private final long[] laneBits;
+
+    public VectorCandidateFilter(int[][][][] shapes, int[] typeIDs) {
+        super(shapes, typeIDs);
+        laneBits = new long[active.length];
+        for (int i = 0; i < laneBits.length; i++) {
+            laneBits[i] = 1L << (i % 64);
+        }
+    }
+
+    @Override
+    public void fits(long window, long[] fits) {
+        int lanes = SPECIES.length();
+        for (int w = 0; w < words; w++) {
+            // the bits of fitting lanes are collected in a vector, so no mask
+            // has to be turned into a long
+            LongVector bits = LongVector.zero(SPECIES);
+            int end = Math.min(active.length, (w + 1) * 64);
+            for (int i = w * 64; i < end; i += lanes) {
+                VectorMask<Long> fit = LongVector.fromArray(SPECIES, active, i).and(window)
+                        .compare(VectorOperators.EQ, 0);
+                bits = bits.lanewise(VectorOperators.OR, LongVector.fromArray(SPECIES, laneBits, i), fit);
+            }
+            fits[w] = bits.reduceLanes(VectorOperators.OR);
+        }
+        fits[words - 1] &= lastWordMask();
+    }
+}
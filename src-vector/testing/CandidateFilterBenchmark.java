@@ -0,0 +1,116 @@
+package testing;
+
+import java.util.Arrays;
+
+import pentominoes.PentominoDatabase;
+import search.CandidateFilter;
+import search.Pieces;
+
+/**
+ * Counts the tilings of the standard boards by always covering the first
+ * empty cell, once with the scalar CandidateFilter and once with the filter
+ * CandidateFilter.create gives, and prints both times. Both are run a few
+ * times first so the times are taken after the JIT has compiled them. Run
+ * with --add-modules jdk.incubator.vector to get the VectorCandidateFilter.
+ */
+public class CandidateFilterBenchmark {
+
+        public static final TestingParameter[] parameters = new TestingParameter[] {
+                        new TestingParameter(3, 20,
+                                        new char[] { 'X', 'I', 'Z', 'T', 'U', 'V', 'W', 'Y', 'L', 'P', 'N', 'F' }),
+                        new TestingParameter(4, 15,
+                                        new char[] { 'X', 'I', 'Z', 'T', 'U', 'V', 'W', 'Y', 'L', 'P', 'N', 'F' }),
+                        new TestingParameter(5, 12,
+                                        new char[] { 'X', 'I', 'Z', 'T', 'U', 'V', 'W', 'Y', 'L', 'P', 'N', 'F' }),
+                        new TestingParameter(6, 10,
+                                        new char[] { 'X', 'I', 'Z', 'T', 'U', 'V', 'W', 'Y', 'L', 'P', 'N', 'F' })
+        };
+
+        private static final int WARM_UP_ROUNDS = 3;
+        private static final int TIMED_ROUNDS = 3;
+
+        private static CandidateFilter filter;
+        private static long[] board;
+        private static int[] remaining;
+        private static long[][] fits;
+        private static int rows;
+        private static int cols;
+
+        public static void main(String[] args) {
+                for (TestingParameter param : parameters) {
+                        System.out.println("Testing parameter: " + param.pentominoWidth + "x" + param.pentominoHeight);
+                        int[] typeIDs = new int[param.pentominoes.length];
+                        for (int i = 0; i < typeIDs.length; i++) {
+                                typeIDs[i] = Pieces.characterToID(param.pentominoes[i]);
+                        }
+
+                        CandidateFilter scalar = new CandidateFilter(PentominoDatabase.data, typeIDs);
+                        CandidateFilter created = CandidateFilter.create(PentominoDatabase.data, typeIDs);
+                        for (int round = 0; round < WARM_UP_ROUNDS; round++) {
+                                count(scalar, param.pentominoWidth, param.pentominoHeight);
+                                count(created, param.pentominoWidth, param.pentominoHeight);
+                        }
+                        time("Scalar", scalar, param);
+                        time(created.getClass().getSimpleName(), created, param);
+                }
+        }
+
+        // Prints the count and the average time of the timed rounds
+        private static void time(String name, CandidateFilter candidates, TestingParameter param) {
+                long count = 0;
+                long startTime = System.currentTimeMillis();
+                for (int round = 0; round < TIMED_ROUNDS; round++) {
+                        count = count(candidates, param.pentominoWidth, param.pentominoHeight);
+                }
+                long time = (System.currentTimeMillis() - startTime) / TIMED_ROUNDS;
+                System.out.println(name + ": " + count + " tilings in " + time + " ms");
+        }
+
+        // Counts the tilings of a board where every type is used once
+        private static long count(CandidateFilter candidates, int boardRows, int boardCols) {
+                filter = candidates;
+                // cover the board along its short side, that keeps the search small
+                rows = Math.max(boardRows, boardCols);
+                cols = Math.min(boardRows, boardCols);
+                board = CandidateFilter.emptyBoard(rows, cols);
+                remaining = new int[filter.candidateType[filter.size - 1] + 1];
+                Arrays.fill(remaining, 1);
+                fits = new long[rows * cols / 5 + 1][filter.words];
+                return search(0, 0);
+        }
+
+        private static long search(int cell, int depth) {
+                while (cell < rows * cols && CandidateFilter.isFilled(board, cell / cols, cell % cols)) {
+                        cell++;
+                }
+                if (cell == rows * cols) {
+                        return 1;
+                }
+                int x = cell / cols;
+                int y = cell % cols;
+                long[] found = fits[depth];
+                filter.fits(CandidateFilter.window(board, x, y), found);
+                long count = 0;
+                for (int w = 0; w < found.length; w++) {
+                        for (long bits = found[w]; bits != 0; bits &= bits - 1) {
+                                count += place(w * 64 + Long.numberOfTrailingZeros(bits), cell, depth, x, y);
+                        }
+                }
+                return count;
+        }
+
+        private static long place(int candidate, int cell, int depth, int x, int y) {
+                int type = filter.candidateType[candidate];
+                long mask = filter.candidateMask[candidate];
+                CandidateFilter.toggle(board, mask, x, y);
+                if (--remaining[type] == 0) {
+                        filter.setAvailable(type, false);
+                }
+                long count = search(cell + 1, depth + 1);
+                if (remaining[type]++ == 0) {
+                        filter.setAvailable(type, true);
+                }
+                CandidateFilter.toggle(board, mask, x, y);
+                return count;
+        }
+}
@@ -0,0 +1,159 @@
+package dancinglinks;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Reads the files written by {@link BinarySolutionWriter}. The file is memory
+ * mapped, so solutions can be scanned or looked up by number without parsing
+ * anything.
+ */
+public class BinarySolutionReader implements Closeable {
+    // keep every mapping well below the 2GB limit of a MappedByteBuffer
+    private static final long MAX_CHUNK = 1L << 30;
+
+    private final FileChannel channel;
+    private final int rows;
+    private final int cols;
+    private final int bitsPerCell;
+    private final int[] pieceTypes;
+    private final int recordSize;
+    private final long headerSize;
+    private final long solutionCount;
+    private final long recordsPerChunk;
+    private final MappedByteBuffer[] chunks;
+
+    public BinarySolutionReader(Path file) throws IOException {
+        channel = FileChannel.open(file, StandardOpenOption.READ);
+        ByteBuffer header = ByteBuffer.allocate(12);
+        readFully(header, 0);
+        if (header.getInt() != BinarySolutionWriter.MAGIC) {
+            throw new IOException(file + " is not a solution file");
+        }
+        if (header.get() != BinarySolutionWriter.VERSION) {
+            throw new IOException(file + " has an unsupported version");
+        }
+        bitsPerCell = header.get();
+        rows = header.getShort();
+        cols = header.getShort();
+        int pieceCount = header.getShort();
+
+        ByteBuffer pieces = ByteBuffer.allocate(2 * pieceCount);
+        readFully(pieces, 12);
+        pieceTypes = new int[pieceCount];
+        for (int i = 0; i < pieceCount; i++) {
+            pieceTypes[i] = pieces.getShort();
+        }
+
+        headerSize = BinarySolutionWriter.headerSize(pieceCount);
+        recordSize = BinarySolutionWriter.recordSize(rows * cols, bitsPerCell);
+        solutionCount = (channel.size() - headerSize) / recordSize;
+        recordsPerChunk = Math.max(1, MAX_CHUNK / recordSize);
+
+        chunks = new MappedByteBuffer[(int) ((solutionCount + recordsPerChunk - 1) / recordsPerChunk)];
+        for (int i = 0; i < chunks.length; i++) {
+            long first = i * recordsPerChunk;
+            long count = Math.min(recordsPerChunk, solutionCount - first);
+            chunks[i] = channel.map(FileChannel.MapMode.READ_ONLY, headerSize + first * recordSize,
+                    count * recordSize);
+        }
+    }
+
+    private void readFully(ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Unexpected end of solution file");
+            }
+        }
+        buffer.flip();
+    }
+
+    public int getRows() {
+        return rows;
+    }
+
+    public int getColumns() {
+        return cols;
+    }
+
+    /**
+     * @return the database ID of every input piece
+     */
+    public int[] getPieceTypes() {
+        return pieceTypes.clone();
+    }
+
+    public long getSolutionCount() {
+        return solutionCount;
+    }
+
+    /**
+     * Gives the index of the input piece covering a cell.
+     * 
+     * @param solution number of the solution, starting at 0
+     * @param row      row of the cell
+     * @param col      column of the cell
+     * @return the input piece index or -1 if the cell is empty
+     */
+    public int pieceIndexAt(long solution, int row, int col) {
+        int cell = row * cols + col;
+        MappedByteBuffer chunk = chunks[(int) (solution / recordsPerChunk)];
+        int base = (int) (solution % recordsPerChunk) * recordSize;
+        int value;
+        if (bitsPerCell == 4) {
+            int b = chunk.get(base + cell / 2) & 0xFF;
+            value = cell % 2 == 0 ? b >>> 4 : b & 0xF;
+        } else {
+            value = chunk.get(base + cell) & 0xFF;
+        }
+        return value == (1 << bitsPerCell) - 1 ? -1 : value;
+    }
+
+    /**
+     * Decodes one solution into a field as used by the UI: the ID of the
+     * pentomino on every cell, -1 for an empty cell.
+     * 
+     * @param solution number of the solution, starting at 0
+     * @param field    rows*cols matrix that is overwritten
+     */
+    public void readSolution(long solution, int[][] field) {
+        for (int i = 0; i < rows; i++) {
+            for (int j = 0; j < cols; j++) {
+                int piece = pieceIndexAt(solution, i, j);
+                field[i][j] = piece == -1 ? -1 : pieceTypes[piece];
+            }
+        }
+    }
+
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * Main function used for inspecting a solution file: prints the header and
+     * the first solution.
+     */
+    public static void main(String[] args) throws IOException {
+        try (BinarySolutionReader reader = new BinarySolutionReader(Paths.get(args[0]))) {
+            System.out.println(reader.getRows() + "x" + reader.getColumns() + " board, "
+                    + reader.getPieceTypes().length + " pieces, " + reader.getSolutionCount() + " solutions");
+            if (reader.getSolutionCount() > 0) {
+                int[][] field = new int[reader.getRows()][reader.getColumns()];
+                reader.readSolution(0, field);
+                for (int[] row : field) {
+                    StringBuilder line = new StringBuilder();
+                    for (int id : row) {
+                        line.append(id == -1 ? "." : Integer.toString(id, 36)).append(' ');
+                    }
+                    System.out.println(line.toString().stripTrailing());
+                }
+            }
+        }
+    }
+}
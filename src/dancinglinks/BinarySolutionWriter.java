@@ -0,0 +1,181 @@
+package dancinglinks;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Writes solutions in a compact binary stream instead of printing them.
+ * 
+ * Layout of the file (big endian):
+ * - int magic number "PSOL"
+ * - byte version, byte bits per cell (4 when there are at most 15 pieces,
+ * 8 otherwise)
+ * - short rows, short columns, short number of pieces
+ * - one short per piece with its ID in the piece database
+ * - then one fixed size record per solution: for every cell of the board
+ * (row by row) the index of the input piece covering it, or the all-ones value
+ * for an empty cell
+ * 
+ * Solutions are collected in a direct buffer and written through a
+ * FileChannel in large batches. {@link BinarySolutionReader} reads the files
+ * back.
+ */
+public class BinarySolutionWriter implements RowSolutionHandler, CheckpointOutput, Closeable {
+    public static final int MAGIC = 0x50534F4C;
+    public static final byte VERSION = 1;
+    private static final int BUFFER_SIZE = 1 << 20;
+
+    private final FileChannel channel;
+    private final ByteBuffer buffer;
+    private final int[][] matrixRows;
+    private final int pieceCount;
+    private final int cellCount;
+    private final int bitsPerCell;
+    private final int recordSize;
+    // piece index per cell of the solution that is being encoded
+    private final int[] cells;
+    private long written;
+
+    /**
+     * @param file       the file to write, it is replaced if it exists
+     * @param rows       rows of the board
+     * @param cols       columns of the board
+     * @param pieceTypes the database ID of every input piece, in the order of
+     *                   the piece columns of the matrix
+     * @param matrixRows the exact cover matrix as column lists per row (see
+     *                   {@link Example#toSparseRows}). The first pieceTypes.length
+     *                   columns are the piece columns, the others the cells
+     */
+    public BinarySolutionWriter(Path file, int rows, int cols, int[] pieceTypes, int[][] matrixRows)
+            throws IOException {
+        this(FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING), rows, cols, pieceTypes, matrixRows, 0);
+        buffer.putInt(MAGIC);
+        buffer.put(VERSION);
+        buffer.put((byte) bitsPerCell);
+        buffer.putShort((short) rows);
+        buffer.putShort((short) cols);
+        buffer.putShort((short) pieceCount);
+        for (int type : pieceTypes) {
+            buffer.putShort((short) type);
+        }
+    }
+
+    private BinarySolutionWriter(FileChannel channel, int rows, int cols, int[] pieceTypes, int[][] matrixRows,
+            long written) {
+        if (pieceTypes.length > 255) {
+            throw new IllegalArgumentException("At most 255 pieces can be stored per solution");
+        }
+        this.matrixRows = matrixRows;
+        this.pieceCount = pieceTypes.length;
+        this.cellCount = rows * cols;
+        this.bitsPerCell = bitsPerCell(pieceCount);
+        this.recordSize = recordSize(cellCount, bitsPerCell);
+        this.cells = new int[cellCount];
+        this.buffer = ByteBuffer.allocateDirect(Math.max(BUFFER_SIZE, headerSize(pieceCount) + recordSize));
+        this.channel = channel;
+        this.written = written;
+    }
+
+    /**
+     * Opens a file written before to add more solutions, after cutting it
+     * back to a position returned by checkpoint. Solutions written after that
+     * checkpoint are dropped.
+     *
+     * @param position the position of the checkpoint
+     */
+    public static BinarySolutionWriter resume(Path file, int rows, int cols, int[] pieceTypes, int[][] matrixRows,
+            long position) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE);
+        int header = headerSize(pieceTypes.length);
+        int recordSize = recordSize(rows * cols, bitsPerCell(pieceTypes.length));
+        if (position < header || (position - header) % recordSize != 0 || position > channel.size()) {
+            channel.close();
+            throw new IOException(file + " does not match the checkpoint");
+        }
+        channel.truncate(position);
+        channel.position(position);
+        return new BinarySolutionWriter(channel, rows, cols, pieceTypes, matrixRows,
+                (position - header) / recordSize);
+    }
+
+    public void handleSolution(int[] rows) throws InterruptedException {
+        int empty = (1 << bitsPerCell) - 1;
+        Arrays.fill(cells, empty);
+        for (int row : rows) {
+            int[] columns = matrixRows[row];
+            // the piece column is always the lowest column of a row
+            int piece = columns[0];
+            for (int k = 1; k < columns.length; k++) {
+                cells[columns[k] - pieceCount] = piece;
+            }
+        }
+        try {
+            if (buffer.remaining() < recordSize) {
+                flush();
+            }
+            if (bitsPerCell == 4) {
+                for (int i = 0; i < cellCount; i += 2) {
+                    int low = i + 1 < cellCount ? cells[i + 1] : empty;
+                    buffer.put((byte) (cells[i] << 4 | low));
+                }
+            } else {
+                for (int i = 0; i < cellCount; i++) {
+                    buffer.put((byte) cells[i]);
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        written++;
+    }
+
+    /**
+     * @return the number of solutions written so far
+     */
+    public long getSolutionCount() {
+        return written;
+    }
+
+    /**
+     * Writes the buffered solutions to disk.
+     *
+     * @return the length of the file, everything written so far
+     */
+    public long checkpoint() throws IOException {
+        flush();
+        channel.force(false);
+        return channel.position();
+    }
+
+    private void flush() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    public void close() throws IOException {
+        flush();
+        channel.close();
+    }
+
+    static int bitsPerCell(int pieceCount) {
+        return pieceCount < 16 ? 4 : 8;
+    }
+
+    static int recordSize(int cellCount, int bitsPerCell) {
+        return bitsPerCell == 4 ? (cellCount + 1) / 2 : cellCount;
+    }
+
+    static int headerSize(int pieceCount) {
+        return 12 + 2 * pieceCount;
+    }
+}
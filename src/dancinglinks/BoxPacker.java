@@ -0,0 +1,211 @@
+package dancinglinks;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import pentominoes.PolycubeBuilder;
+
+/**
+ * Fills a box of width*height*depth cubes with polycubes, the three
+ * dimensional version of Example. Every placement of a piece rotation inside
+ * the box becomes a row of an exact cover matrix with one column per piece
+ * followed by one column per cube of the box, which is then solved by
+ * DancingLinks.
+ */
+public class BoxPacker {
+    public final int width;
+    public final int height;
+    public final int depth;
+    // rotation table of every input piece, see PolycubeBuilder
+    private final int[][][][] pieces;
+
+    // the exact cover matrix and what every row means
+    private int[][] rows;
+    private int[] rowPiece;
+    private int[][] rowCubes;
+
+    private DancingLinks dlx;
+
+    /**
+     * @param width  size of the box along x
+     * @param height size of the box along y
+     * @param depth  size of the box along z
+     * @param pieces rotation table of every piece to place, each piece is used
+     *               exactly once
+     */
+    public BoxPacker(int width, int height, int depth, int[][][][] pieces) {
+        this.width = width;
+        this.height = height;
+        this.depth = depth;
+        this.pieces = pieces;
+    }
+
+    /**
+     * Generates every placement of every rotation of every piece inside the box.
+     * 
+     * @return per row the columns it covers: the piece column, then the cube
+     *         columns (pieces.length + cube index)
+     */
+    public int[][] buildRows() {
+        ArrayList<int[]> matrix = new ArrayList<>();
+        ArrayList<Integer> pieceOfRow = new ArrayList<>();
+        ArrayList<int[]> cubesOfRow = new ArrayList<>();
+        for (int p = 0; p < pieces.length; p++) {
+            for (int[][] rotation : pieces[p]) {
+                int sizeX = 0;
+                int sizeY = 0;
+                int sizeZ = 0;
+                for (int[] cube : rotation) {
+                    sizeX = Math.max(sizeX, cube[0] + 1);
+                    sizeY = Math.max(sizeY, cube[1] + 1);
+                    sizeZ = Math.max(sizeZ, cube[2] + 1);
+                }
+                // try every position where the rotation stays inside the box
+                for (int x = 0; x + sizeX <= width; x++) {
+                    for (int y = 0; y + sizeY <= height; y++) {
+                        for (int z = 0; z + sizeZ <= depth; z++) {
+                            int[] row = new int[rotation.length + 1];
+                            int[] cubes = new int[rotation.length];
+                            row[0] = p;
+                            for (int c = 0; c < rotation.length; c++) {
+                                cubes[c] = cubeIndex(x + rotation[c][0], y + rotation[c][1], z + rotation[c][2]);
+                            }
+                            Arrays.sort(cubes);
+                            for (int c = 0; c < cubes.length; c++) {
+                                row[c + 1] = pieces.length + cubes[c];
+                            }
+                            matrix.add(row);
+                            pieceOfRow.add(p);
+                            cubesOfRow.add(cubes);
+                        }
+                    }
+                }
+            }
+        }
+        rows = matrix.toArray(new int[0][]);
+        rowPiece = pieceOfRow.stream().mapToInt(i -> i).toArray();
+        rowCubes = cubesOfRow.toArray(new int[0][]);
+        return rows;
+    }
+
+    private int cubeIndex(int x, int y, int z) {
+        return (x * height + y) * depth + z;
+    }
+
+    /**
+     * @return the number of columns of the matrix
+     */
+    public int getColumnCount() {
+        return pieces.length + width * height * depth;
+    }
+
+    /**
+     * Looks for one packing of the box.
+     * 
+     * @return box[x][y][z] with the index of the input piece filling that cube,
+     *         or null if the pieces do not fit
+     */
+    public int[][][] solve() throws InterruptedException {
+        if (rows == null) {
+            buildRows();
+        }
+        int[][][] box = new int[width][height][depth];
+        boolean[] found = new boolean[1];
+        dlx = new DancingLinks(getColumnCount(), rows, new RowPrinter(solution -> {
+            fill(box, solution);
+            found[0] = true;
+            dlx.cancel();
+        }));
+        dlx.enumerate();
+        return found[0] ? box : null;
+    }
+
+    /**
+     * Counts all packings of the box (including those that are rotations of
+     * each other).
+     * 
+     * @param handler receives every solution as row indices, may be null
+     * @return the number of packings
+     */
+    public long count(RowSolutionHandler handler) throws InterruptedException {
+        if (rows == null) {
+            buildRows();
+        }
+        dlx = new DancingLinks(getColumnCount(), rows, new RowPrinter(solution -> {
+            if (handler != null) {
+                handler.handleSolution(solution);
+            }
+        }));
+        return dlx.enumerate();
+    }
+
+    /**
+     * Writes the pieces of a solution into a box
+     * 
+     * @param box      box[x][y][z] to fill with input piece indices
+     * @param solution row indices of the solution
+     */
+    public void fill(int[][][] box, int[] solution) {
+        for (int row : solution) {
+            for (int cube : rowCubes[row]) {
+                box[cube / (height * depth)][cube / depth % height][cube % depth] = rowPiece[row];
+            }
+        }
+    }
+
+    /**
+     * Stops a running solve or count, e.g. from another thread.
+     */
+    public void cancel() {
+        if (dlx != null) {
+            dlx.cancel();
+        }
+    }
+
+    /**
+     * @return the number of search nodes visited by the last solve or count
+     */
+    public long getNodeCount() {
+        return dlx == null ? 0 : dlx.getNodeCount();
+    }
+
+    /**
+     * Prints one layer of the box per z value, pieces as letters.
+     */
+    public static void print(int[][][] box) {
+        for (int z = 0; z < box[0][0].length; z++) {
+            System.out.println("Layer " + z + ":");
+            for (int y = 0; y < box[0].length; y++) {
+                StringBuilder line = new StringBuilder();
+                for (int x = 0; x < box.length; x++) {
+                    line.append((char) ('A' + box[x][y][z])).append(' ');
+                }
+                System.out.println(line.toString().stripTrailing());
+            }
+        }
+    }
+
+    /**
+     * Main function. Packs the 12 pentominoes as flat pentacubes into the boxes
+     * given as arguments (e.g. 3 4 5), or into 3x4x5 and 2x5x6.
+     */
+    public static void main(String[] args) throws InterruptedException {
+        int[][] boxes = args.length >= 3
+                ? new int[][] { { Integer.parseInt(args[0]), Integer.parseInt(args[1]), Integer.parseInt(args[2]) } }
+                : new int[][] { { 3, 4, 5 }, { 2, 5, 6 } };
+        int[][][][] pieces = PolycubeBuilder.flatPentacubes();
+        for (int[] size : boxes) {
+            BoxPacker packer = new BoxPacker(size[0], size[1], size[2], pieces);
+            long start = System.currentTimeMillis();
+            int[][][] box = packer.solve();
+            long end = System.currentTimeMillis();
+            System.out.println(size[0] + "x" + size[1] + "x" + size[2] + ": " + packer.rows.length + " placements, "
+                    + packer.getNodeCount() + " nodes, " + (end - start) + " ms");
+            if (box == null) {
+                System.out.println("No packing found");
+            } else {
+                print(box);
+            }
+        }
+    }
+}
@@ -0,0 +1,257 @@
+package dancinglinks;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Passes on only one solution of every class of solutions that are the same
+ * up to a symmetry of the board.
+ *
+ * A solution is written as one label per cell, row by row: the piece type of
+ * the cell and the rank of its piece, pieces ranked in the order their first
+ * cell is read. The ranks keep the borders between pieces of the same type,
+ * so two tilings only get the same sequence if they cut the board into the
+ * same pieces. For the 4 symmetries of a rectangle (8 of a square) the cells
+ * are read in the transformed order and the solution is passed on only if
+ * its own order gives the smallest sequence.
+ *
+ * When the input has the same piece more than once, the matrix has the same
+ * tiling once for every way of swapping the copies. Only the one where the
+ * copies are in the order of their first cells is passed on. Every class of
+ * solutions then passes exactly once when all solutions are enumerated,
+ * whatever its own symmetry, and nothing has to be stored per solution.
+ */
+public class CanonicalSolutionFilter implements RowSolutionHandler {
+    private final RowSolutionHandler next;
+    private final int pieceCount;
+    private final int[] pieceTypes;
+    private final int[][] matrixRows;
+    // per symmetry except the identity: the cell that ends up at position i
+    private final int[][] transforms;
+    // the previous piece column of the same type, -1 if none
+    private final int[] previousCopy;
+    private final int[] firstCell;
+    // the piece column that covers every cell, -1 if none
+    private final int[] pieceOf;
+    private final int[] labels;
+    // rank of every piece in the current reading order, -1 before it is read
+    private final int[] rank;
+    private int nextRank;
+
+    private long passed;
+    private long symmetricCopies;
+    private long repeated;
+
+    /**
+     * @param next       receives the solutions that pass
+     * @param rows       rows of the board
+     * @param cols       columns of the board
+     * @param pieceTypes the database ID of every input piece, in the order of
+     *                   the piece columns of the matrix
+     * @param matrixRows the exact cover matrix as column lists per row (see
+     *                   {@link Example#toSparseRows}), columns sorted
+     */
+    public CanonicalSolutionFilter(RowSolutionHandler next, int rows, int cols, int[] pieceTypes,
+            int[][] matrixRows) {
+        this.next = next;
+        this.pieceCount = pieceTypes.length;
+        this.pieceTypes = pieceTypes;
+        this.matrixRows = matrixRows;
+        this.transforms = transforms(rows, cols);
+        this.previousCopy = new int[pieceCount];
+        for (int p = 0; p < pieceCount; p++) {
+            previousCopy[p] = -1;
+            for (int q = 0; q < p; q++) {
+                if (pieceTypes[q] == pieceTypes[p]) {
+                    previousCopy[p] = q;
+                }
+            }
+        }
+        this.firstCell = new int[pieceCount];
+        this.pieceOf = new int[rows * cols];
+        this.labels = new int[rows * cols];
+        this.rank = new int[pieceCount];
+    }
+
+    /**
+     * @return for every symmetry of the board other than the identity, the
+     *         index of the cell that is read at every position
+     */
+    static int[][] transforms(int rows, int cols) {
+        int count = rows == cols ? 7 : 3;
+        int[][] result = new int[count][rows * cols];
+        for (int r = 0; r < rows; r++) {
+            for (int c = 0; c < cols; c++) {
+                int i = r * cols + c;
+                // position i reads the cell it is mapped from
+                result[0][i] = (rows - 1 - r) * cols + (cols - 1 - c); // turn by 180 degrees
+                result[1][i] = (rows - 1 - r) * cols + c; // mirror the rows
+                result[2][i] = r * cols + (cols - 1 - c); // mirror the columns
+                if (rows == cols) {
+                    result[3][i] = c * cols + r; // transpose
+                    result[4][i] = (cols - 1 - c) * cols + (rows - 1 - r); // anti transpose
+                    result[5][i] = (cols - 1 - c) * cols + r; // turn by 90 degrees
+                    result[6][i] = c * cols + (rows - 1 - r); // turn by 270 degrees
+                }
+            }
+        }
+        return result;
+    }
+
+    public void handleSolution(int[] chosen) throws InterruptedException {
+        Arrays.fill(pieceOf, -1);
+        for (int row : chosen) {
+            int[] columns = matrixRows[row];
+            firstCell[columns[0]] = columns[1] - pieceCount;
+            for (int k = 1; k < columns.length; k++) {
+                pieceOf[columns[k] - pieceCount] = columns[0];
+            }
+        }
+        for (int p = 0; p < pieceCount; p++) {
+            // copies of a piece out of order, the same tiling is passed with
+            // them in order
+            if (previousCopy[p] >= 0 && firstCell[previousCopy[p]] > firstCell[p]) {
+                repeated++;
+                return;
+            }
+        }
+        startReading();
+        for (int i = 0; i < labels.length; i++) {
+            labels[i] = label(i);
+        }
+        if (!isCanonical()) {
+            symmetricCopies++;
+            return;
+        }
+        passed++;
+        next.handleSolution(chosen);
+    }
+
+    // True if no symmetry gives a smaller sequence of labels
+    private boolean isCanonical() {
+        for (int[] transform : transforms) {
+            startReading();
+            for (int i = 0; i < labels.length; i++) {
+                int other = label(transform[i]);
+                if (other != labels[i]) {
+                    if (other < labels[i]) {
+                        return false;
+                    }
+                    break;
+                }
+            }
+        }
+        return true;
+    }
+
+    private void startReading() {
+        Arrays.fill(rank, -1);
+        nextRank = 0;
+    }
+
+    // Label of a cell read as the next one: piece type and the rank of its
+    // piece, a new piece gets the next rank
+    private int label(int cell) {
+        int piece = pieceOf[cell];
+        if (piece < 0) {
+            return -1;
+        }
+        if (rank[piece] < 0) {
+            rank[piece] = nextRank++;
+        }
+        return rank[piece] * 4096 + pieceTypes[piece];
+    }
+
+    /**
+     * @return the number of solutions passed on
+     */
+    public long getPassedCount() {
+        return passed;
+    }
+
+    /**
+     * @return the number of solutions dropped as a mirrored or rotated copy
+     */
+    public long getSymmetricCopies() {
+        return symmetricCopies;
+    }
+
+    /**
+     * @return the number of solutions dropped because they only swap copies
+     *         of a piece
+     */
+    public long getRepeated() {
+        return repeated;
+    }
+
+    /**
+     * Checks the filter on small boards with repeated pieces: the number of
+     * solutions it passes has to be the number of tilings that differ by more
+     * than a symmetry of the board, counted here by brute force as the
+     * different sets of (piece type, cells) after taking the smallest over all
+     * symmetries.
+     */
+    public static void main(String[] args) throws InterruptedException {
+        Object[][] cases = {
+                { 4, 5, "LLLL" }, { 4, 5, "PPPP" }, { 4, 5, "LLPP" },
+                { 2, 10, "LLLL" }, { 2, 10, "PPPP" }, { 2, 10, "LLPP" },
+                { 5, 5, "LLPPT" }, { 3, 10, "LLPPUY" }
+        };
+        for (Object[] c : cases) {
+            int rows = (Integer) c[0];
+            int cols = (Integer) c[1];
+            String input = (String) c[2];
+            Character[] pieces = new Character[input.length()];
+            for (int i = 0; i < pieces.length; i++) {
+                pieces[i] = input.charAt(i);
+            }
+            int[][] matrix = Example.buildMatrix(rows, cols, pieces);
+            int[][] sparseRows = Example.toSparseRows(matrix);
+            int[] types = Example.pieceTypes(pieces);
+            int[][] symmetries = transforms(rows, cols);
+
+            Set<List<String>> classes = new HashSet<>();
+            CanonicalSolutionFilter filter = new CanonicalSolutionFilter(chosen -> {
+            }, rows, cols, types, sparseRows);
+            new DancingLinks(matrix, new RowPrinter(chosen -> {
+                List<String> smallest = null;
+                for (int t = -1; t < symmetries.length; t++) {
+                    List<String> tiling = new ArrayList<>();
+                    for (int row : chosen) {
+                        int[] columns = sparseRows[row];
+                        int[] cells = new int[columns.length - 1];
+                        for (int k = 1; k < columns.length; k++) {
+                            int cell = columns[k] - types.length;
+                            cells[k - 1] = t < 0 ? cell : position(symmetries[t], cell);
+                        }
+                        Arrays.sort(cells);
+                        tiling.add(types[columns[0]] + ":" + Arrays.toString(cells));
+                    }
+                    Collections.sort(tiling);
+                    if (smallest == null || tiling.toString().compareTo(smallest.toString()) < 0) {
+                        smallest = tiling;
+                    }
+                }
+                classes.add(smallest);
+                filter.handleSolution(chosen);
+            })).enumerate();
+
+            System.out.println(rows + "x" + cols + " " + input + ": " + filter.getPassedCount() + " passed, "
+                    + classes.size() + " classes" + (filter.getPassedCount() == classes.size() ? "" : " MISMATCH"));
+        }
+    }
+
+    // Position a cell is read at under a symmetry
+    private static int position(int[] transform, int cell) {
+        for (int i = 0; i < transform.length; i++) {
+            if (transform[i] == cell) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,139 @@
+package dancinglinks;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * State of a DancingLinks enumeration that can be continued later: the row
+ * chosen on every level of the branch the search was about to enter, the
+ * counters and how far the output had been written.
+ *
+ * Layout of the file (big endian):
+ * - int magic number "PCKP", byte version
+ * - int number of matrix rows, int number of columns
+ * - long solutions, long search nodes, long output position (-1 if none)
+ * - int depth, then one int row index per level
+ *
+ * The file is written under a temporary name, synced and then renamed, so a
+ * crash leaves either the old or the new checkpoint.
+ */
+public class Checkpoint {
+    public static final int MAGIC = 0x50434B50;
+    public static final byte VERSION = 1;
+
+    public final int matrixRows;
+    public final int columns;
+    public final long solutionCount;
+    public final long nodeCount;
+    public final long outputPosition;
+    public final int[] path;
+
+    public Checkpoint(int matrixRows, int columns, long solutionCount, long nodeCount, long outputPosition,
+            int[] path) {
+        this.matrixRows = matrixRows;
+        this.columns = columns;
+        this.solutionCount = solutionCount;
+        this.nodeCount = nodeCount;
+        this.outputPosition = outputPosition;
+        this.path = path;
+    }
+
+    public void write(Path file) throws IOException {
+        Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileOutputStream stream = new FileOutputStream(temporary.toFile());
+                DataOutputStream out = new DataOutputStream(new BufferedOutputStream(stream))) {
+            out.writeInt(MAGIC);
+            out.writeByte(VERSION);
+            out.writeInt(matrixRows);
+            out.writeInt(columns);
+            out.writeLong(solutionCount);
+            out.writeLong(nodeCount);
+            out.writeLong(outputPosition);
+            out.writeInt(path.length);
+            for (int row : path) {
+                out.writeInt(row);
+            }
+            out.flush();
+            stream.getFD().sync();
+        }
+        try {
+            Files.move(temporary, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    public static Checkpoint read(Path file) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readByte() != VERSION) {
+                throw new IOException(file + " is not a checkpoint of this version");
+            }
+            int matrixRows = in.readInt();
+            int columns = in.readInt();
+            long solutionCount = in.readLong();
+            long nodeCount = in.readLong();
+            long outputPosition = in.readLong();
+            int[] path = new int[in.readInt()];
+            for (int i = 0; i < path.length; i++) {
+                path[i] = in.readInt();
+            }
+            return new Checkpoint(matrixRows, columns, solutionCount, nodeCount, outputPosition, path);
+        }
+    }
+
+    /**
+     * Enumerates a board into a binary solution file and writes a checkpoint
+     * at the given interval. If the checkpoint file exists, the enumeration
+     * continues from it and the solution file is cut back to the checkpoint,
+     * so the result is the same as that of a run without interruption. The
+     * checkpoint is deleted when the enumeration is finished.
+     *
+     * @return the number of solutions in the file
+     */
+    public static long enumerateToFile(int rows, int cols, Character[] pentominoes, Path file, Path checkpointFile,
+            long intervalMillis) throws IOException, InterruptedException {
+        int[][] matrix = Example.buildMatrix(rows, cols, pentominoes);
+        int[][] sparseRows = Example.toSparseRows(matrix);
+        int[] types = Example.pieceTypes(pentominoes);
+        Checkpoint checkpoint = Files.exists(checkpointFile) ? read(checkpointFile) : null;
+        BinarySolutionWriter writer = checkpoint == null
+                ? new BinarySolutionWriter(file, rows, cols, types, sparseRows)
+                : BinarySolutionWriter.resume(file, rows, cols, types, sparseRows, checkpoint.outputPosition);
+        try (writer) {
+            DancingLinks dlx = new DancingLinks(matrix, new RowPrinter(writer));
+            dlx.setCheckpoint(checkpointFile, intervalMillis, writer);
+            long count = checkpoint == null ? dlx.enumerate() : dlx.resume(checkpoint);
+            Files.deleteIfExists(checkpointFile);
+            return count;
+        }
+    }
+
+    /**
+     * Main function. Enumerates a board into a solution file with a
+     * checkpoint every second, e.g. 6 10 XIZTUVWYLPNF solutions.sol. Run it
+     * again after it was stopped to continue.
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        int rows = Integer.parseInt(args[0]);
+        int cols = Integer.parseInt(args[1]);
+        Character[] pieces = new Character[args[2].length()];
+        for (int i = 0; i < pieces.length; i++) {
+            pieces[i] = args[2].charAt(i);
+        }
+        Path file = Paths.get(args[3]);
+        Path checkpointFile = file.resolveSibling(file.getFileName() + ".checkpoint");
+        long startTime = System.currentTimeMillis();
+        long count = enumerateToFile(rows, cols, pieces, file, checkpointFile, 1000);
+        System.out.println(count + " solutions in " + file + ", this run took "
+                + (System.currentTimeMillis() - startTime) + " ms");
+    }
+}
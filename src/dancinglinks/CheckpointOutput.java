@@ -0,0 +1,17 @@
+package dancinglinks;
+
+import java.io.IOException;
+
+/**
+ * Output of an enumeration that can be continued from a checkpoint, see
+ * {@link DancingLinks#setCheckpoint}.
+ */
+public interface CheckpointOutput {
+    /**
+     * Writes everything buffered so far to disk.
+     *
+     * @return the position the output has to be cut back to when the
+     *         enumeration continues from this checkpoint
+     */
+    long checkpoint() throws IOException;
+}
@@ -0,0 +1,270 @@
+package dancinglinks;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+
+/**
+ * Exact cover solver in the style of Knuth's dancing cells: the same search
+ * as DancingLinks, but every list is a sparse set in a flat int array instead
+ * of a ring of linked nodes.
+ *
+ * Every column (item) has a segment of the array set holding the matrix
+ * nodes of the rows that still fit, the first size[item] entries are alive.
+ * A node is removed by swapping it with the last alive entry and shrinking
+ * the size, and as long as sizes are restored in the reverse order the
+ * removed entries come back exactly. So undoing a step only needs the trail
+ * of the items whose size was decreased. The primary columns that still have
+ * to be covered are a sparse set in the same way.
+ *
+ * Everything the search touches lies in a few int arrays, which is much
+ * friendlier to the CPU caches than following node pointers.
+ */
+public class DancingCells {
+    private final RowSolutionHandler handler;
+    private final int rowCount;
+    // the nodes of row r are rowStart[r] .. rowStart[r + 1] - 1
+    private final int[] rowStart;
+    private final int[] nodeItem;
+    private final int[] nodeRow;
+    // position of every node within the segment of its item
+    private final int[] nodeLoc;
+    // per item its segment of set and the number of alive nodes in it
+    private final int[] setStart;
+    private final int[] setSize;
+    private final int[] set;
+    // primary items still to cover: the first activeCount of active
+    private final int[] active;
+    private final int[] activePos;
+    private int activeCount;
+    // covered items, their sets are not kept up to date any more
+    private final boolean[] covered;
+    private final boolean[] primary;
+    // items whose size was decreased, -1 - item for a covered item
+    private final int[] trail;
+    private int trailSize;
+    // the rows chosen on every level, and the options of every level on one
+    // stack. The options of a level all use the item it covers, so the levels
+    // below never see them again and the stack needs at most one entry per row
+    private final int[] chosen;
+    private final int[] options;
+
+    private long solutionCount;
+    private long nodeCount;
+    private volatile boolean cancelled;
+
+    /**
+     * @param columns   number of columns
+     * @param secondary true for columns that may be covered at most once
+     *                  instead of exactly once, null if all are primary
+     * @param rows      per row the columns it covers
+     * @param handler   receives every solution as row indices
+     */
+    public DancingCells(int columns, boolean[] secondary, int[][] rows, RowSolutionHandler handler) {
+        this.handler = handler;
+        this.rowCount = rows.length;
+        int nodes = 0;
+        int[] perItem = new int[columns];
+        for (int[] row : rows) {
+            nodes += row.length;
+            for (int c : row) {
+                perItem[c]++;
+            }
+        }
+        rowStart = new int[rows.length + 1];
+        nodeItem = new int[nodes];
+        nodeRow = new int[nodes];
+        nodeLoc = new int[nodes];
+        setStart = new int[columns];
+        setSize = new int[columns];
+        set = new int[nodes];
+        for (int c = 1; c < columns; c++) {
+            setStart[c] = setStart[c - 1] + perItem[c - 1];
+        }
+        int n = 0;
+        for (int r = 0; r < rows.length; r++) {
+            rowStart[r] = n;
+            for (int c : rows[r]) {
+                nodeItem[n] = c;
+                nodeRow[n] = r;
+                nodeLoc[n] = setSize[c];
+                set[setStart[c] + setSize[c]++] = n;
+                n++;
+            }
+        }
+        rowStart[rows.length] = n;
+
+        active = new int[columns];
+        activePos = new int[columns];
+        covered = new boolean[columns];
+        primary = new boolean[columns];
+        for (int c = 0; c < columns; c++) {
+            if (secondary == null || !secondary[c]) {
+                primary[c] = true;
+                activePos[c] = activeCount;
+                active[activeCount++] = c;
+            }
+        }
+        trail = new int[nodes + columns];
+        chosen = new int[columns];
+        options = new int[rows.length];
+    }
+
+    /**
+     * Runs the search over the whole tree and hands every solution to the
+     * handler.
+     *
+     * @return the number of solutions found
+     */
+    public long enumerate() throws InterruptedException {
+        solutionCount = 0;
+        nodeCount = 0;
+        cancelled = false;
+        search(0, 0);
+        return solutionCount;
+    }
+
+    // top is the first free entry of the options stack
+    private void search(int depth, int top) throws InterruptedException {
+        if (cancelled) {
+            return;
+        }
+        nodeCount++;
+        if (activeCount == 0) {
+            solutionCount++;
+            int[] rows = new int[depth];
+            System.arraycopy(chosen, 0, rows, 0, depth);
+            handler.handleSolution(rows);
+            return;
+        }
+        // the primary item with the fewest rows
+        int item = active[0];
+        for (int i = 1; i < activeCount && setSize[item] > 1; i++) {
+            if (setSize[active[i]] < setSize[item]) {
+                item = active[i];
+            }
+        }
+        int count = setSize[item];
+        if (count == 0) {
+            return;
+        }
+        // the set of the item may be reordered below, so keep its rows
+        for (int i = 0; i < count; i++) {
+            options[top + i] = nodeRow[set[setStart[item] + i]];
+        }
+        for (int i = 0; i < count && !cancelled; i++) {
+            int row = options[top + i];
+            int mark = trailSize;
+            choose(row);
+            chosen[depth] = row;
+            search(depth + 1, top + count);
+            undo(mark);
+        }
+    }
+
+    // Covers the items of a row and removes every row that clashes with it
+    // from the items that are not covered yet
+    private void choose(int row) {
+        for (int n = rowStart[row]; n < rowStart[row + 1]; n++) {
+            int item = nodeItem[n];
+            int start = setStart[item];
+            for (int k = 0; k < setSize[item]; k++) {
+                int other = nodeRow[set[start + k]];
+                if (other == row) {
+                    continue;
+                }
+                for (int m = rowStart[other]; m < rowStart[other + 1]; m++) {
+                    if (nodeItem[m] != item && !covered[nodeItem[m]]) {
+                        remove(m);
+                    }
+                }
+            }
+            cover(item);
+        }
+    }
+
+    private void cover(int item) {
+        covered[item] = true;
+        if (primary[item]) {
+            int last = active[--activeCount];
+            int pos = activePos[item];
+            active[pos] = last;
+            activePos[last] = pos;
+            active[activeCount] = item;
+            activePos[item] = activeCount;
+        }
+        trail[trailSize++] = -1 - item;
+    }
+
+    private void remove(int node) {
+        int item = nodeItem[node];
+        int lastLoc = --setSize[item];
+        int last = set[setStart[item] + lastLoc];
+        int loc = nodeLoc[node];
+        set[setStart[item] + loc] = last;
+        nodeLoc[last] = loc;
+        set[setStart[item] + lastLoc] = node;
+        nodeLoc[node] = lastLoc;
+        trail[trailSize++] = item;
+    }
+
+    private void undo(int mark) {
+        while (trailSize > mark) {
+            int item = trail[--trailSize];
+            if (item < 0) {
+                item = -1 - item;
+                covered[item] = false;
+                if (primary[item]) {
+                    activeCount++;
+                }
+            } else {
+                setSize[item]++;
+            }
+        }
+    }
+
+    /**
+     * Stops a running search as soon as possible. Can be called from the
+     * handler or from another thread.
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    /**
+     * @return the number of search nodes visited by the last run
+     */
+    public long getNodeCount() {
+        return nodeCount;
+    }
+
+    public long getSolutionCount() {
+        return solutionCount;
+    }
+
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    /**
+     * Main function. Counts the solutions of an ExactCoverFile given as
+     * argument, or of the 6x10 board
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        DancingCells cells;
+        if (args.length > 0) {
+            try (ExactCoverFile file = new ExactCoverFile(Paths.get(args[0]))) {
+                cells = new DancingCells(file.getColumnCount(), file.getSecondary(), file.readRows(), rows -> {
+                });
+            }
+        } else {
+            Character[] pieces = { 'X', 'I', 'Z', 'T', 'U', 'V', 'W', 'Y', 'L', 'P', 'N', 'F' };
+            int[][] matrix = Example.buildMatrix(6, 10, pieces);
+            cells = new DancingCells(matrix[0].length, null, Example.toSparseRows(matrix), rows -> {
+            });
+        }
+        long startTime = System.currentTimeMillis();
+        long count = cells.enumerate();
+        System.out.println(count + " solutions, " + cells.getNodeCount() + " search nodes in "
+                + (System.currentTimeMillis() - startTime) + " ms");
+    }
+}
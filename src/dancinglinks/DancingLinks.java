@@ -4,19 +4,63 @@ package dancinglinks;
  * @author Heavely inspired by many different sources,
  * that said, sources are found in the gitlab README.
  */
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.BitSet;
+import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.ArrayList;
+import java.util.Map;
+
+import search.Pruner;
 
 public class DancingLinks {
     static long start1;
     private final ColumnNode header;
     private final SolutionPrinter handler;
     private List<DancingNode> answer;
+    // number of solutions handed to the handler since the last run
+    private long solutionCount;
+    // number of search nodes visited since the last run
+    private long nodeCount;
+    // set from another thread (or the handler) to stop the search
+    private volatile boolean cancelled;
+    // optional checks after every chosen row, with the piece and cells of every row
+    private List<Pruner> pruners;
+    private int[] rowTypes;
+    private int[][] rowCells;
+    // first node of every matrix row, null for an empty row
+    private DancingNode[] rowHeads;
+    // header of every column, also the secondary ones
+    private ColumnNode[] columnNodes;
+    // rows chosen with forceRow, they start every solution
+    private final List<DancingNode> forced = new ArrayList<>();
+    // columns covered by forceRow and blockColumn, in the order they were covered
+    private final List<ColumnNode> precovered = new ArrayList<>();
+    // board cells of the columns taken out with blockColumn, filled in the
+    // pruners while a search runs
+    private final List<Integer> blockedCells = new ArrayList<>();
+    // set while splitPrefixes runs: the search stops at this depth
+    private List<int[]> prefixes;
+    private int prefixDepth;
+    // number of rows and columns of the matrix, kept in checkpoints
+    private int matrixRows;
+    private int columnCount;
+    // where and how often to write checkpoints, null for none
+    private Path checkpointFile;
+    private long checkpointInterval;
+    private long nextCheckpoint;
+    private CheckpointOutput checkpointOutput;
+    // rows below the forced ones still to be replayed when resuming
+    private int[] resumePath;
 
     class DancingNode {
         DancingNode Left, Right, Up, Down;
         ColumnNode columnNode;
+        // index of the matrix row this node belongs to, -1 for column headers
+        int rowIndex = -1;
 
         // Takes node's bottom then makes it own currents down.
         // make the node up from this node to the node in question
@@ -68,6 +112,11 @@ public class DancingLinks {
         // number of ones in column
         int size;
         String name;
+        // index of the column in the input matrix
+        int index;
+        // true while the column is covered, secondary columns are never in
+        // the header list so this is the only way to tell
+        boolean covered;
 
         public ColumnNode(String n) {
             super();
@@ -77,6 +126,7 @@ public class DancingLinks {
         }
 
         void cover() {
+            covered = true;
             unlinkLR();
             for (DancingNode i = this.Down; i != this; i = i.Down) {
                 for (DancingNode j = i.Right; j != i; j = j.Right) {
@@ -94,25 +144,67 @@ public class DancingLinks {
                 }
             }
             relinkLR();
+            covered = false;
         }
     }
 
     private void search(int k) throws InterruptedException {
+        if (cancelled) {
+            return;
+        }
+        if (resumePath != null && k - forced.size() == resumePath.length) {
+            resumePath = null;
+        }
+        if (resumePath == null) {
+            if (checkpointFile != null && (nodeCount & 0xFFF) == 0
+                    && System.currentTimeMillis() >= nextCheckpoint) {
+                writeCheckpoint();
+            }
+            nodeCount++;
+        }
+        if (prefixes != null && (k == prefixDepth || header.Right == header)) {
+            int[] prefix = new int[answer.size()];
+            int i = 0;
+            for (DancingNode n : answer) {
+                prefix[i++] = n.rowIndex;
+            }
+            prefixes.add(prefix);
+            return;
+        }
         // if we removed all the columns that means we found a solution
         if (header.Right == header) {
+            solutionCount++;
             handler.handleSolution(answer, start1);
         } else {
             ColumnNode c = selectColumnNodeSmallestSize();
             c.cover();
 
-            for (DancingNode r = c.Down; r != c; r = r.Down) {
+            DancingNode first = c.Down;
+            if (resumePath != null) {
+                // the rows before the one of the checkpoint were done already
+                int wanted = resumePath[k - forced.size()];
+                while (first != c && first.rowIndex != wanted) {
+                    first = first.Down;
+                }
+                if (first == c) {
+                    throw new IllegalStateException("The checkpoint does not belong to this matrix");
+                }
+            }
+            for (DancingNode r = first; r != c && !cancelled; r = r.Down) {
                 answer.add(r);
 
                 for (DancingNode j = r.Right; j != r; j = j.Right) {
                     j.columnNode.cover();
                 }
 
-                search(k + 1);
+                if (pruners == null) {
+                    search(k + 1);
+                } else {
+                    if (placeInPruners(r.rowIndex)) {
+                        search(k + 1);
+                    }
+                    removeFromPruners(r.rowIndex);
+                }
 
                 r = answer.remove(answer.size() - 1);
                 c = r.columnNode;
@@ -125,6 +217,25 @@ public class DancingLinks {
         }
     }
 
+    // Tells the pruners about the piece of a chosen row, false if one rejects it
+    private boolean placeInPruners(int row) {
+        for (Pruner pruner : pruners) {
+            pruner.place(rowTypes[row], rowCells[row]);
+        }
+        for (Pruner pruner : pruners) {
+            if (!pruner.isFeasible()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void removeFromPruners(int row) {
+        for (int i = pruners.size() - 1; i >= 0; i--) {
+            pruners.get(i).remove(rowTypes[row], rowCells[row]);
+        }
+    }
+
     // Selects the column node by taking the smalled sized one
     private ColumnNode selectColumnNodeSmallestSize() {
         int min = Integer.MAX_VALUE;
@@ -141,30 +252,43 @@ public class DancingLinks {
     // Makes a grid of 0s and 1s, so we can solve for it.
     // it returns the root column header node
     private ColumnNode makeDLXBoard(int[][] grid) {
-        final int COLS = grid[0].length;
+        return makeDLXBoard(grid[0].length, null, toSparse(grid));
+    }
 
+    // Same as above, but every row only lists the columns where it has a 1.
+    // Much smaller for big boards and 3D boxes. Secondary columns (may be
+    // null) stay out of the header list, so they are covered at most once
+    // instead of exactly once.
+    private ColumnNode makeDLXBoard(int COLS, boolean[] secondary, int[][] rows) {
         ColumnNode headerNode = new ColumnNode("header");
-        ArrayList<ColumnNode> columnNodes = new ArrayList<>();
+        ColumnNode last = headerNode;
+        columnNodes = new ColumnNode[COLS];
 
         for (int i = 0; i < COLS; i++) {
             ColumnNode n = new ColumnNode(Integer.toString(i));
-            columnNodes.add(n);
-            headerNode = (ColumnNode) headerNode.ConnectRight(n);
+            n.index = i;
+            columnNodes[i] = n;
+            if (secondary == null || !secondary[i]) {
+                last = (ColumnNode) last.ConnectRight(n);
+            }
         }
-        headerNode = headerNode.Right.columnNode;
 
-        for (int[] ints : grid) {
+        matrixRows = rows.length;
+        columnCount = COLS;
+        rowHeads = new DancingNode[rows.length];
+        for (int r = 0; r < rows.length; r++) {
             DancingNode prev = null;
-            for (int j = 0; j < COLS; j++) {
-                if (ints[j] == 1) {
-                    ColumnNode col = columnNodes.get(j);
-                    DancingNode newNode = new DancingNode(col);
-                    if (prev == null)
-                        prev = newNode;
-                    col.Up.ConnectDown(newNode);
-                    prev = prev.ConnectRight(newNode);
-                    col.size++;
+            for (int j : rows[r]) {
+                ColumnNode col = columnNodes[j];
+                DancingNode newNode = new DancingNode(col);
+                newNode.rowIndex = r;
+                if (prev == null) {
+                    prev = newNode;
+                    rowHeads[r] = newNode;
                 }
+                col.Up.ConnectDown(newNode);
+                prev = prev.ConnectRight(newNode);
+                col.size++;
             }
         }
 
@@ -173,6 +297,25 @@ public class DancingLinks {
         return headerNode;
     }
 
+    // Lists the columns with a 1 for every row of the grid
+    static int[][] toSparse(int[][] grid) {
+        int[][] sparse = new int[grid.length][];
+        for (int i = 0; i < grid.length; i++) {
+            int count = 0;
+            for (int value : grid[i]) {
+                count += value;
+            }
+            sparse[i] = new int[count];
+            int k = 0;
+            for (int j = 0; j < grid[i].length; j++) {
+                if (grid[i][j] == 1) {
+                    sparse[i][k++] = j;
+                }
+            }
+        }
+        return sparse;
+    }
+
     // Constructor for setting up the grid
     public DancingLinks(int[][] grid) {
         this(grid, new DefaultPrinter());
@@ -184,11 +327,326 @@ public class DancingLinks {
         handler = h;
     }
 
+    // Constructor for a matrix given as the list of columns of every row
+    public DancingLinks(int columns, int[][] rows, SolutionPrinter h) {
+        this(columns, null, rows, h);
+    }
+
+    // Same, with columns that may be covered at most once instead of exactly
+    // once (secondary[c] true), e.g. cells that may stay empty
+    public DancingLinks(int columns, boolean[] secondary, int[][] rows, SolutionPrinter h) {
+        header = makeDLXBoard(columns, secondary, rows);
+        handler = h;
+    }
+
     public void runSolver() throws InterruptedException {
-        answer = new LinkedList<>();
+        answer = new LinkedList<>(forced);
+        nodeCount = 0;
         start1 = System.currentTimeMillis();
-        search(0);
+        search(forced.size());
         System.out.println("Sorry, couldn't find a solution! :( ");
         System.exit(0);
     }
+
+    /**
+     * Runs the search over the whole tree and hands every solution to the
+     * handler. Unlike runSolver this returns when the tree is exhausted, so the
+     * handler should not exit the program.
+     *
+     * @return the number of solutions found
+     */
+    public long enumerate() throws InterruptedException {
+        answer = new LinkedList<>(forced);
+        solutionCount = 0;
+        nodeCount = 0;
+        cancelled = false;
+        start1 = System.currentTimeMillis();
+        run();
+        return solutionCount;
+    }
+
+    /**
+     * Continues an enumeration that was stopped after writing a checkpoint.
+     * Solutions are handed to the handler from the point of the checkpoint,
+     * so output written after it has to be dropped first (see
+     * BinarySolutionWriter.resume). The counters go on from the values of the
+     * checkpoint.
+     *
+     * @return the number of solutions of the whole enumeration
+     */
+    public long resume(Checkpoint checkpoint) throws InterruptedException {
+        if (checkpoint.matrixRows != matrixRows || checkpoint.columns != columnCount) {
+            throw new IllegalArgumentException("The checkpoint does not belong to this matrix");
+        }
+        answer = new LinkedList<>(forced);
+        solutionCount = checkpoint.solutionCount;
+        nodeCount = checkpoint.nodeCount;
+        cancelled = false;
+        start1 = System.currentTimeMillis();
+        resumePath = checkpoint.path;
+        try {
+            run();
+        } finally {
+            resumePath = null;
+        }
+        return solutionCount;
+    }
+
+    /**
+     * Writes a checkpoint of enumerate and resume runs, at most once per
+     * interval. The search is between two nodes then, so the checkpoint holds
+     * the path to the next node and resuming starts there.
+     *
+     * @param file           the checkpoint file, null to stop writing them
+     * @param intervalMillis time between two checkpoints
+     * @param output         flushed before every checkpoint, may be null
+     */
+    public void setCheckpoint(Path file, long intervalMillis, CheckpointOutput output) {
+        checkpointFile = file;
+        checkpointInterval = intervalMillis;
+        checkpointOutput = output;
+        nextCheckpoint = System.currentTimeMillis() + intervalMillis;
+    }
+
+    private void writeCheckpoint() {
+        int[] path = new int[answer.size() - forced.size()];
+        int i = -forced.size();
+        for (DancingNode n : answer) {
+            if (i >= 0) {
+                path[i] = n.rowIndex;
+            }
+            i++;
+        }
+        try {
+            long position = checkpointOutput == null ? -1 : checkpointOutput.checkpoint();
+            new Checkpoint(matrixRows, columnCount, solutionCount, nodeCount, position, path)
+                    .write(checkpointFile);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        nextCheckpoint = System.currentTimeMillis() + checkpointInterval;
+    }
+
+    // Searches below the forced rows, with the pruners knowing about them and
+    // about the blocked cells
+    private void run() throws InterruptedException {
+        if (pruners == null) {
+            search(forced.size());
+        } else {
+            int[] blocked = blockedCells.stream().mapToInt(c -> c).toArray();
+            for (Pruner pruner : pruners) {
+                pruner.fill(blocked);
+            }
+            int placed = 0;
+            try {
+                boolean feasible = true;
+                for (DancingNode r : forced) {
+                    feasible &= placeInPruners(r.rowIndex);
+                    placed++;
+                }
+                if (feasible) {
+                    search(forced.size());
+                }
+            } finally {
+                // also when the search is cancelled or throws, so the pruners
+                // can be used again
+                for (int i = placed - 1; i >= 0; i--) {
+                    removeFromPruners(forced.get(i).rowIndex);
+                }
+                for (Pruner pruner : pruners) {
+                    pruner.unfill(blocked);
+                }
+            }
+        }
+    }
+
+    /**
+     * Builds a diagram of all solutions with Knuth's DXZ: the same search as
+     * enumerate, but the diagram below every search node is remembered by the
+     * set of covered columns. The rows still available only depend on that
+     * set, so a subproblem reached again through other rows is solved once.
+     * Forced rows are left out of the solutions in the diagram, pruners and
+     * checkpoints are not used. The node count is the number of subproblems
+     * solved.
+     */
+    public SolutionDiagram buildDiagram() {
+        SolutionDiagram diagram = new SolutionDiagram();
+        nodeCount = 0;
+        diagram.setRoot(searchDiagram(diagram, new HashMap<>()));
+        return diagram;
+    }
+
+    private int searchDiagram(SolutionDiagram diagram, Map<BitSet, Integer> memo) {
+        if (header.Right == header) {
+            return SolutionDiagram.TOP;
+        }
+        BitSet covered = new BitSet(columnNodes.length);
+        for (int i = 0; i < columnNodes.length; i++) {
+            if (columnNodes[i].covered) {
+                covered.set(i);
+            }
+        }
+        Integer known = memo.get(covered);
+        if (known != null) {
+            return known;
+        }
+        nodeCount++;
+        ColumnNode c = selectColumnNodeSmallestSize();
+        int result = SolutionDiagram.BOTTOM;
+        c.cover();
+        // last row first, so the LO chain lists the rows in search order
+        for (DancingNode r = c.Up; r != c; r = r.Up) {
+            for (DancingNode j = r.Right; j != r; j = j.Right) {
+                j.columnNode.cover();
+            }
+            int below = searchDiagram(diagram, memo);
+            for (DancingNode j = r.Left; j != r; j = j.Left) {
+                j.columnNode.uncover();
+            }
+            result = diagram.node(r.rowIndex, result, below);
+        }
+        c.uncover();
+        memo.put(covered, result);
+        return result;
+    }
+
+    /**
+     * Makes a row part of every solution, as if the search had chosen it. Its
+     * columns are covered until clearForced is called.
+     *
+     * @param row index of the matrix row
+     * @return false if the row is empty or uses a column of a row forced
+     *         before, nothing is changed then
+     */
+    public boolean forceRow(int row) {
+        DancingNode head = rowHeads[row];
+        if (head == null) {
+            return false;
+        }
+        DancingNode n = head;
+        do {
+            if (n.columnNode.covered) {
+                return false;
+            }
+            n = n.Right;
+        } while (n != head);
+        do {
+            n.columnNode.cover();
+            precovered.add(n.columnNode);
+            n = n.Right;
+        } while (n != head);
+        forced.add(head);
+        return true;
+    }
+
+    /**
+     * Takes a column out of the problem before the search, e.g. a board cell
+     * that has to stay empty: the rows that use it are removed and it does not
+     * need to be covered. Undone by clearForced.
+     *
+     * @param column index of the column
+     * @return false if a forced row or blockColumn covered it already
+     */
+    public boolean blockColumn(int column) {
+        return blockColumn(column, -1);
+    }
+
+    /**
+     * Takes the column of a board cell out of the problem, see
+     * blockColumn(int). The pruners get the cell as filled (Pruner.fill)
+     * while the search runs.
+     *
+     * @param column index of the column
+     * @param cell   the board cell (row * cols + col) of the column, -1 if it
+     *               is not one
+     * @return false if a forced row or blockColumn covered it already
+     */
+    public boolean blockColumn(int column, int cell) {
+        ColumnNode c = columnNodes[column];
+        if (c.covered) {
+            return false;
+        }
+        c.cover();
+        precovered.add(c);
+        if (cell >= 0) {
+            blockedCells.add(cell);
+        }
+        return true;
+    }
+
+    /**
+     * Undoes all forceRow and blockColumn calls.
+     */
+    public void clearForced() {
+        for (int i = precovered.size() - 1; i >= 0; i--) {
+            precovered.get(i).uncover();
+        }
+        precovered.clear();
+        forced.clear();
+        blockedCells.clear();
+    }
+
+    /**
+     * Splits the search tree below the forced rows into the branches at the
+     * given depth. The search picks its columns the same way every time, so
+     * forcing the rows of every branch and enumerating them one by one finds
+     * exactly the solutions of one enumerate call, in the same order.
+     *
+     * @param depth number of rows to choose below the forced ones
+     * @return the rows of every branch, forced rows first, in search order.
+     *         Branches that end in a solution before the depth are shorter.
+     */
+    public List<int[]> splitPrefixes(int depth) throws InterruptedException {
+        answer = new LinkedList<>(forced);
+        nodeCount = 0;
+        cancelled = false;
+        prefixes = new ArrayList<>();
+        prefixDepth = forced.size() + depth;
+        try {
+            search(forced.size());
+            return prefixes;
+        } finally {
+            prefixes = null;
+        }
+    }
+
+    /**
+     * Adds checks that run after every chosen row, e.g. the colouring pruners
+     * of the search package.
+     * 
+     * @param types    piece ID of every row of the matrix
+     * @param cells    board cells (row * cols + col) every row covers
+     * @param pruners the checks, null to switch pruning off
+     */
+    public void setPruners(int[] types, int[][] cells, List<Pruner> pruners) {
+        this.rowTypes = types;
+        this.rowCells = cells;
+        this.pruners = pruners;
+    }
+
+    /**
+     * Stops a running search as soon as possible. Can be called from the
+     * handler, e.g. when one solution is enough, or from another thread.
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * @return the number of search nodes visited by the last run
+     */
+    public long getNodeCount() {
+        return nodeCount;
+    }
+
+    /**
+     * @return the number of solutions found by the last run
+     */
+    public long getSolutionCount() {
+        return solutionCount;
+    }
 }
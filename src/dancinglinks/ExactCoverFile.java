@@ -0,0 +1,263 @@
+package dancinglinks;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+import pentominoes.PolycubeBuilder;
+
+/**
+ * Exact cover matrices in a compact binary file, so a large matrix can be
+ * built once and then read by every solver run, or by other tools, instead
+ * of being built again.
+ *
+ * Layout of the file (numbers marked varint use 7 bits per byte, the high
+ * bit set on every byte but the last):
+ * - int magic number "PXCV" (big endian), byte version
+ * - varint number of columns
+ * - one bit per column, 1 for a secondary column (covered at most once
+ * instead of exactly once), lowest bit first, padded to whole bytes
+ * - varint number of rows
+ * - per row: varint number of columns, varint first column, then varint
+ * differences to the previous column. Columns are strictly increasing, a row
+ * covers a column at most once.
+ *
+ * The file is memory mapped when it is read, so many runs can share it
+ * through the page cache.
+ */
+public class ExactCoverFile implements Closeable {
+    public static final int MAGIC = 0x50584356;
+    public static final byte VERSION = 1;
+
+    private final FileChannel channel;
+    private final MappedByteBuffer data;
+    private final int columns;
+    private final boolean[] secondary;
+    private final int rowCount;
+    // offset of the first row in the file
+    private final int rowsStart;
+    // offset of every row, built when a single row is read the first time
+    private int[] rowOffsets;
+
+    /**
+     * Writes a matrix.
+     *
+     * @param file      the file to write, it is replaced if it exists
+     * @param columns   number of columns
+     * @param secondary true for every secondary column, null if all columns
+     *                  are primary
+     * @param rows      per row the columns it covers, in strictly increasing
+     *                  order
+     */
+    public static void write(Path file, int columns, boolean[] secondary, int[][] rows) throws IOException {
+        try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(file), 1 << 16)) {
+            out.write(MAGIC >>> 24);
+            out.write(MAGIC >>> 16);
+            out.write(MAGIC >>> 8);
+            out.write(MAGIC);
+            out.write(VERSION);
+            writeVarint(out, columns);
+            for (int c = 0; c < columns; c += 8) {
+                int flags = 0;
+                for (int b = 0; b < 8 && c + b < columns; b++) {
+                    if (secondary != null && secondary[c + b]) {
+                        flags |= 1 << b;
+                    }
+                }
+                out.write(flags);
+            }
+            writeVarint(out, rows.length);
+            for (int[] row : rows) {
+                writeVarint(out, row.length);
+                int previous = 0;
+                for (int k = 0; k < row.length; k++) {
+                    int column = row[k];
+                    // a repeated column would be covered twice by DancingLinks
+                    if (column < previous || (k > 0 && column == previous) || column >= columns) {
+                        throw new IllegalArgumentException(
+                                "Columns of a row have to be strictly increasing and in range");
+                    }
+                    writeVarint(out, column - previous);
+                    previous = column;
+                }
+            }
+        }
+    }
+
+    private static void writeVarint(OutputStream out, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.write(value & 0x7F | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+
+    /**
+     * Opens a matrix file for reading.
+     */
+    public ExactCoverFile(Path file) throws IOException {
+        channel = FileChannel.open(file, StandardOpenOption.READ);
+        if (channel.size() > Integer.MAX_VALUE) {
+            channel.close();
+            throw new IOException(file + " is larger than 2GB");
+        }
+        data = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        if (data.limit() < 5 || data.getInt(0) != MAGIC || data.get(4) != VERSION) {
+            channel.close();
+            throw new IOException(file + " is not an exact cover file of this version");
+        }
+        data.position(5);
+        columns = readVarint();
+        secondary = new boolean[columns];
+        for (int c = 0; c < columns; c += 8) {
+            int flags = data.get();
+            for (int b = 0; b < 8 && c + b < columns; b++) {
+                secondary[c + b] = (flags >>> b & 1) != 0;
+            }
+        }
+        rowCount = readVarint();
+        rowsStart = data.position();
+    }
+
+    private int readVarint() {
+        int value = 0;
+        for (int shift = 0;; shift += 7) {
+            int b = data.get();
+            value |= (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+    }
+
+    public int getColumnCount() {
+        return columns;
+    }
+
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    /**
+     * @return per column true if it is secondary
+     */
+    public boolean[] getSecondary() {
+        return secondary.clone();
+    }
+
+    public boolean hasSecondaryColumns() {
+        for (boolean s : secondary) {
+            if (s) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Decodes all rows, e.g. for the DancingLinks constructor.
+     *
+     * @return per row the columns it covers
+     */
+    public int[][] readRows() {
+        int[][] rows = new int[rowCount][];
+        data.position(rowsStart);
+        for (int r = 0; r < rowCount; r++) {
+            rows[r] = readRow();
+        }
+        return rows;
+    }
+
+    /**
+     * Decodes one row. The first call reads through the file once to find
+     * where every row starts.
+     */
+    public int[] readRow(int row) {
+        if (rowOffsets == null) {
+            rowOffsets = new int[rowCount];
+            data.position(rowsStart);
+            for (int r = 0; r < rowCount; r++) {
+                rowOffsets[r] = data.position();
+                int length = readVarint();
+                for (int k = 0; k < length; k++) {
+                    readVarint();
+                }
+            }
+        }
+        data.position(rowOffsets[row]);
+        return readRow();
+    }
+
+    private int[] readRow() {
+        int[] row = new int[readVarint()];
+        int column = 0;
+        for (int k = 0; k < row.length; k++) {
+            int difference = readVarint();
+            column += difference;
+            if (difference < 0 || (k > 0 && difference == 0) || column >= columns) {
+                throw new UncheckedIOException(new IOException(
+                        "A row of the file repeats a column or has one out of range"));
+            }
+            row[k] = column;
+        }
+        return row;
+    }
+
+    /**
+     * @return a solver for the matrix in the file
+     */
+    public DancingLinks toDancingLinks(SolutionPrinter handler) {
+        return new DancingLinks(columns, hasSecondaryColumns() ? secondary : null, readRows(), handler);
+    }
+
+    /**
+     * @return the size of the file in bytes
+     */
+    public long getSize() {
+        return data.capacity();
+    }
+
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * Main function:
+     * - write file rows cols pieces, e.g. write 6x10.xc 6 10 XIZTUVWYLPNF
+     * - box file x y z, writes the matrix of the flat pentacubes in a box
+     * - count file, counts the solutions of a matrix file
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        Path file = Paths.get(args[1]);
+        long startTime = System.currentTimeMillis();
+        if (args[0].equals("write")) {
+            Character[] pieces = new Character[args[4].length()];
+            for (int i = 0; i < pieces.length; i++) {
+                pieces[i] = args[4].charAt(i);
+            }
+            int[][] matrix = Example.buildMatrix(Integer.parseInt(args[2]), Integer.parseInt(args[3]), pieces);
+            write(file, matrix[0].length, null, Example.toSparseRows(matrix));
+        } else if (args[0].equals("box")) {
+            BoxPacker packer = new BoxPacker(Integer.parseInt(args[2]), Integer.parseInt(args[3]),
+                    Integer.parseInt(args[4]), PolycubeBuilder.flatPentacubes());
+            write(file, packer.getColumnCount(), null, packer.buildRows());
+        } else {
+            try (ExactCoverFile matrix = new ExactCoverFile(file)) {
+                long count = matrix.toDancingLinks(new RowPrinter(rows -> {
+                })).enumerate();
+                System.out.println(matrix.getRowCount() + " rows, " + matrix.getColumnCount() + " columns, "
+                        + count + " solutions");
+            }
+        }
+        System.out.println(file + ": " + Files.size(file) + " bytes, took "
+                + (System.currentTimeMillis() - startTime) + " ms");
+    }
+}
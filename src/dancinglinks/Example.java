@@ -4,6 +4,8 @@ package dancinglinks;
  * @author Irdi Zeneli
  * @version 2022.0
  */
+import java.io.IOException;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
@@ -12,6 +14,9 @@ import java.util.concurrent.TimeUnit;
 
 import common.UI;
 import pentominoes.PentominoDatabase;
+import search.KnapsackSearch;
+import search.Preplacement;
+import search.Pruner;
 
 /**
  * Class includes methods which make the inputs ready for DLX
@@ -23,6 +28,9 @@ public class Example {
     public static int global_cols;
     // Static ui to display board
     public static UI ui;
+    // Mutations of every piece ID, the pentominoes unless a polyomino set is given
+    // to buildMatrix
+    static int[][][][] shapes = PentominoDatabase.data;
     static int[][] naive_field;
 
     /**
@@ -42,24 +50,34 @@ public class Example {
      *         'U', 'X', 'U'
      */
     static int[][] makeSparseMatrix(Character[] pentominoes) {
+        return makeSparseMatrix(pieceTypes(pentominoes));
+    }
+
+    /**
+     * Same as makeSparseMatrix for characters, but takes the piece IDs of the
+     * current shape table directly, so it also works for other polyominoes.
+     * 
+     * @param pieceIDs ID of every input piece in the shape table
+     * @return The Sparse Matrix Which is used by the DLX
+     */
+    static int[][] makeSparseMatrix(int[] pieceIDs) {
         int[][] pseudoGrid = new int[global_rows][global_cols];
         // cycle through the pentominoes
         // Keeps track of which pentomino we are at
-        int input_length = pentominoes.length;
+        int input_length = pieceIDs.length;
         // We use this, so we can use different types of pentominoes but also if there
         // are
         // duplicates; See format line 28
         int pentominoIndex = 0;
-        for (Character curr_pentomino : pentominoes) {
-            int pentID = characterToID(curr_pentomino);
+        for (int pentID : pieceIDs) {
             // cycle through the mutations of said pentomino
-            for (int j = 0; j < PentominoDatabase.data[pentID].length; j++) {
+            for (int j = 0; j < shapes[pentID].length; j++) {
                 // cycle through rows
                 for (int k = 0; k < pseudoGrid.length; k++) {
                     // cycle though columns
                     for (int l = 0; l < pseudoGrid[k].length; l++) {
                         // add the pieces combination to the rows to get them ready for DLX
-                        int[][] fullPiece = PentominoDatabase.data[pentID][j];
+                        int[][] fullPiece = shapes[pentID][j];
                         if (isPlacableForExample(pseudoGrid, pentID, j, k, l)) {
                             newAddPiece(pseudoGrid, fullPiece, k, l);
                             addSpecificRowToRows(pseudoGrid, pentominoIndex, k, l, j, input_length, pentID);
@@ -74,6 +92,178 @@ public class Example {
         return theRows.stream().map(u -> u.stream().mapToInt(i -> i).toArray()).toArray(int[][]::new);
     }
 
+    /**
+     * Builds the sparse matrix for a board without asking the user for input.
+     * Clears the rows of any previous call.
+     * 
+     * @param rows        rows of the board
+     * @param cols        columns of the board
+     * @param pentominoes the pentominoes to place
+     * @return the matrix in the format described at makeSparseMatrix
+     */
+    public static int[][] buildMatrix(int rows, int cols, Character[] pentominoes) {
+        return buildMatrix(rows, cols, PentominoDatabase.data, pieceTypes(pentominoes));
+    }
+
+    /**
+     * Builds the sparse matrix for any set of polyominoes, for example the
+     * tables made by PolyominoGenerator. The table is kept for decoding the
+     * answer afterwards.
+     * 
+     * @param rows       rows of the board
+     * @param cols       columns of the board
+     * @param shapeTable mutations of every piece ID, same format as
+     *                   PentominoDatabase.data
+     * @param pieceIDs   ID in shapeTable of every input piece, may repeat
+     * @return the matrix in the format described at makeSparseMatrix
+     */
+    public static int[][] buildMatrix(int rows, int cols, int[][][][] shapeTable, int[] pieceIDs) {
+        setGlobalRowsAndColumns(rows, cols);
+        shapes = shapeTable;
+        theRows.clear();
+        PentominoToRow.clear();
+        return makeSparseMatrix(pieceIDs);
+    }
+
+    /**
+     * Turns a matrix of 0s and 1s into the list of the columns which are 1 in
+     * every row. This is much smaller for boards with many cells.
+     * 
+     * @param grid matrix as returned by makeSparseMatrix
+     * @return per row the indices of its columns, in increasing order
+     */
+    public static int[][] toSparseRows(int[][] grid) {
+        return DancingLinks.toSparse(grid);
+    }
+
+    /**
+     * Lets the DLX use the colouring checks of the search package, which reject
+     * boards where the remaining pieces can not match the colours of the
+     * remaining cells.
+     * 
+     * @param dlx        the solver
+     * @param sparseRows the matrix of the solver as column lists
+     * @param pieceIDs   ID of every input piece, in the order of the piece
+     *                   columns
+     */
+    public static void addStandardPruners(DancingLinks dlx, int[][] sparseRows, int[] pieceIDs) {
+        int[] types = new int[sparseRows.length];
+        int[][] cells = new int[sparseRows.length][];
+        for (int r = 0; r < sparseRows.length; r++) {
+            types[r] = pieceIDs[sparseRows[r][0]];
+            cells[r] = new int[sparseRows[r].length - 1];
+            for (int k = 1; k < sparseRows[r].length; k++) {
+                cells[r][k - 1] = sparseRows[r][k] - pieceIDs.length;
+            }
+        }
+        dlx.setPruners(types, cells, Pruner.standardPruners(global_rows, global_cols, shapes, pieceIDs));
+    }
+
+    /**
+     * Fixes pieces in place and blocks cells before the DLX runs: the rows of
+     * the fixed pieces are forced and the columns of the blocked cells taken
+     * out, so the search only works on what is left. Undo with
+     * dlx.clearForced. Pruners are told about both, the fixed pieces as placed
+     * and the blocked cells as filled.
+     * 
+     * @param dlx          the solver
+     * @param sparseRows   the matrix of the solver as column lists, as made by
+     *                     buildMatrix for a board of the same size
+     * @param pieceIDs     ID of every input piece, in the order of the piece
+     *                     columns
+     * @param preplacement the fixed pieces and blocked cells
+     * @return false if a fixed piece is not one of the input pieces, or the
+     *         constraints clash. dlx.clearForced has been called then, which
+     *         also undoes rows forced before this call
+     */
+    public static boolean applyPreplacement(DancingLinks dlx, int[][] sparseRows, int[] pieceIDs,
+            Preplacement preplacement) {
+        int n = pieceIDs.length;
+        for (int k = 0; k < preplacement.getForced().size(); k++) {
+            int id = preplacement.getForced().get(k)[0];
+            int[] cells = preplacement.forcedCells(k);
+            boolean found = false;
+            // with repeated pieces the first one that is still free is used
+            for (int r = 0; r < sparseRows.length && !found; r++) {
+                int[] row = sparseRows[r];
+                if (pieceIDs[row[0]] != id || row.length != cells.length + 1) {
+                    continue;
+                }
+                boolean same = true;
+                for (int i = 0; i < cells.length && same; i++) {
+                    same = row[i + 1] == n + cells[i];
+                }
+                found = same && dlx.forceRow(r);
+            }
+            if (!found) {
+                dlx.clearForced();
+                return false;
+            }
+        }
+        for (int cell : preplacement.getBlocked()) {
+            if (!dlx.blockColumn(n + cell, cell)) {
+                dlx.clearForced();
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @param pentominoes pentomino characters
+     * @return the database ID of every pentomino
+     */
+    public static int[] pieceTypes(Character[] pentominoes) {
+        int[] types = new int[pentominoes.length];
+        for (int i = 0; i < pentominoes.length; i++) {
+            types[i] = characterToID(pentominoes[i]);
+        }
+        return types;
+    }
+
+    /**
+     * Enumerates every solution of a board and writes them to a binary solution
+     * file instead of showing them.
+     * 
+     * @param rows        rows of the board
+     * @param cols        columns of the board
+     * @param pentominoes the pentominoes to place
+     * @param file        the file to write (see BinarySolutionWriter)
+     * @return the number of solutions written
+     */
+    public static long enumerateToFile(int rows, int cols, Character[] pentominoes, Path file)
+            throws IOException, InterruptedException {
+        return enumerateToFile(rows, cols, pentominoes, file, false);
+    }
+
+    /**
+     * Enumerates the solutions of a board into a binary solution file,
+     * optionally only one of every set of solutions that are mirrored or
+     * rotated copies of each other.
+     * 
+     * @param rows          rows of the board
+     * @param cols          columns of the board
+     * @param pentominoes   the pentominoes to place
+     * @param file          the file to write (see BinarySolutionWriter)
+     * @param canonicalOnly true to skip symmetric copies and solutions that only
+     *                      swap equal pieces (see CanonicalSolutionFilter)
+     * @return the number of solutions written
+     */
+    public static long enumerateToFile(int rows, int cols, Character[] pentominoes, Path file, boolean canonicalOnly)
+            throws IOException, InterruptedException {
+        int[][] matrix = buildMatrix(rows, cols, pentominoes);
+        int[][] sparseRows = toSparseRows(matrix);
+        int[] types = pieceTypes(pentominoes);
+        try (BinarySolutionWriter writer = new BinarySolutionWriter(file, rows, cols, types, sparseRows)) {
+            RowSolutionHandler handler = writer;
+            if (canonicalOnly) {
+                handler = new CanonicalSolutionFilter(writer, rows, cols, types, sparseRows);
+            }
+            new DancingLinks(matrix, new RowPrinter(handler)).enumerate();
+            return writer.getSolutionCount();
+        }
+    }
+
     /**
      * Get as input the character representation of a pentomino and translate it
      * into its corresponding numerical value (ID)
@@ -138,10 +328,10 @@ public class Example {
     public static boolean isPlacableForExample(int[][] field, int pentID, int mutation, int current_row,
             int current_col) {
 
-        int pentominoRowsIndex = PentominoDatabase.data[pentID][mutation].length;
+        int pentominoRowsIndex = shapes[pentID][mutation].length;
 
         // assuming all the rows have same length we put [0]
-        int pentominoColsIndex = PentominoDatabase.data[pentID][mutation][0].length;
+        int pentominoColsIndex = shapes[pentID][mutation][0].length;
 
         // check if there is space
         if (current_row + pentominoRowsIndex > field.length) {
@@ -180,33 +370,36 @@ public class Example {
         for (int i = 0; i < pentomino_list.size(); i++) {
             pentominoes[i] = pentomino_list.get(i);
         }
-        // F I L P N T U V W X Y Z
-        // Follow this ordering
-        String order = "FILPNTUVWXYZ";
-        // Orders them by the order above
+        // Most constrained pentominoes first: the ones with the fewest mutations
+        // have the fewest rows, so the DLX sees their columns first when sizes tie
         Arrays.sort(pentominoes, (first, second) -> {
-            for (int index = 0; index < 1; index++) {
-                int charFirst = (int) (first);
-                int charSecond = (int) (second);
-                if (order.indexOf(charFirst) > order.indexOf(charSecond)) {
-                    return 1;
-                } else if (order.indexOf(charFirst) < order.indexOf(charSecond)) {
-                    return -1;
-                } else {
-                    continue;
-                }
+            int mutationsFirst = PentominoDatabase.data[characterToID(first)].length;
+            int mutationsSecond = PentominoDatabase.data[characterToID(second)].length;
+            if (mutationsFirst != mutationsSecond) {
+                return Integer.compare(mutationsFirst, mutationsSecond);
             }
-            return 0;
+            return Character.compare(first, second);
         });
-        // if there are more blocks in the field than in the pentominoes its impossible
-        // to solve
+        // if there are more blocks in the field than in the pentominoes an exact
+        // tiling is impossible, so look for the packing that covers the most cells
         if (pentomino_list.size() * 5 != global_cols * global_rows) {
-            System.out.println("Impossible to solve, try more pentominoes?");
-            System.exit(0);
+            System.out.println("Impossible to fill exactly, searching the packing that covers the most cells");
+            KnapsackSearch knapsack = new KnapsackSearch();
+            knapsack.horiGridSize = global_rows;
+            knapsack.vertGridSize = global_cols;
+            knapsack.input = new char[pentominoes.length];
+            for (int i = 0; i < pentominoes.length; i++) {
+                knapsack.input[i] = pentominoes[i];
+            }
+            knapsack.ui = ui;
+            knapsack.search();
+            scanner.close();
+            return;
         }
         // make int[][] example
         int[][] example = makeSparseMatrix(pentominoes);
         DancingLinks DLX = new DancingLinks(example);
+        addStandardPruners(DLX, toSparseRows(example), pieceTypes(pentominoes));
         DLX.runSolver();
         scanner.close();
     }
@@ -303,7 +496,7 @@ public class Example {
                     int row = pentominoInfo[2];
                     int col = pentominoInfo[3];
                     // id, mut, row, col
-                    int[][] full_piece = PentominoDatabase.data[pentID][mutation];
+                    int[][] full_piece = shapes[pentID][mutation];
                     // add the piece to show to user
                     newAddPiece(naive_field, full_piece, pentID, row, col);
                 }
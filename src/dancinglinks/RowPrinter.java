@@ -0,0 +1,27 @@
+package dancinglinks;
+
+import java.util.List;
+
+/**
+ * Adapter which turns the node list of a DLX solution into row indices and
+ * forwards them to a {@link RowSolutionHandler}.
+ */
+public class RowPrinter implements SolutionPrinter {
+    private final RowSolutionHandler handler;
+    private int[] rows = new int[0];
+
+    public RowPrinter(RowSolutionHandler handler) {
+        this.handler = handler;
+    }
+
+    public void handleSolution(List<DancingLinks.DancingNode> answer, long start1) throws InterruptedException {
+        if (rows.length != answer.size()) {
+            rows = new int[answer.size()];
+        }
+        int i = 0;
+        for (DancingLinks.DancingNode n : answer) {
+            rows[i++] = n.rowIndex;
+        }
+        handler.handleSolution(rows);
+    }
+}
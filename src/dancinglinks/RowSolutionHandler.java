@@ -0,0 +1,15 @@
+package dancinglinks;
+
+/**
+ * Receives solutions as the list of matrix row indices that were chosen.
+ * This is the compact form used by the binary writers; wrap it in a
+ * {@link RowPrinter} to plug it into {@link DancingLinks}.
+ */
+public interface RowSolutionHandler {
+    /**
+     * @param rows indices of the chosen rows of the exact cover matrix, in the
+     *             order the search picked them. The array may be reused by
+     *             the caller, copy it if it needs to be kept.
+     */
+    void handleSolution(int[] rows) throws InterruptedException;
+}
@@ -0,0 +1,295 @@
+package dancinglinks;
+
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.function.IntPredicate;
+
+/**
+ * All solutions of an exact cover problem as a zero-suppressed decision
+ * diagram (ZDD), built by DancingLinks.buildDiagram.
+ *
+ * Every node stands for a matrix row and has two children: LO, the solutions
+ * without the row, and HI, the rest of the solutions with it. The two sinks
+ * are BOTTOM (no solution) and TOP (the empty solution), so every path from
+ * the root to TOP is one solution, made of the rows where it took HI. Equal
+ * nodes are stored once, and subproblems that come up again and again in the
+ * search share their nodes, so the diagram is usually far smaller than the
+ * list of solutions.
+ *
+ * Nodes are kept in flat int arrays and children always have smaller
+ * numbers than their parents, so counting is a single pass over the arrays.
+ */
+public class SolutionDiagram {
+    public static final int BOTTOM = 0;
+    public static final int TOP = 1;
+
+    private int[] row = new int[1024];
+    private int[] lo = new int[1024];
+    private int[] hi = new int[1024];
+    private int size = 2;
+    private int root = BOTTOM;
+    // open addressing table of node numbers, 0 for an empty slot
+    private int[] unique = new int[2048];
+    // solutions below every node, computed on first use
+    private BigInteger[] counts;
+
+    SolutionDiagram() {
+        row[BOTTOM] = row[TOP] = -1;
+    }
+
+    /**
+     * @return the node for a row with the two children, an existing one if
+     *         there is one. A node whose HI child is BOTTOM is just its LO child.
+     */
+    int node(int matrixRow, int loChild, int hiChild) {
+        if (hiChild == BOTTOM) {
+            return loChild;
+        }
+        int mask = unique.length - 1;
+        int slot = hash(matrixRow, loChild, hiChild) & mask;
+        while (unique[slot] != 0) {
+            int n = unique[slot];
+            if (row[n] == matrixRow && lo[n] == loChild && hi[n] == hiChild) {
+                return n;
+            }
+            slot = (slot + 1) & mask;
+        }
+        if (size == row.length) {
+            row = Arrays.copyOf(row, size * 2);
+            lo = Arrays.copyOf(lo, size * 2);
+            hi = Arrays.copyOf(hi, size * 2);
+        }
+        int n = size++;
+        row[n] = matrixRow;
+        lo[n] = loChild;
+        hi[n] = hiChild;
+        unique[slot] = n;
+        if (size * 2 > unique.length) {
+            rehash();
+        }
+        counts = null;
+        return n;
+    }
+
+    private static int hash(int matrixRow, int loChild, int hiChild) {
+        int h = matrixRow * 0x9E3779B1 + loChild * 0x85EBCA77 + hiChild * 0xC2B2AE3D;
+        return h ^ (h >>> 15);
+    }
+
+    private void rehash() {
+        unique = new int[unique.length * 2];
+        int mask = unique.length - 1;
+        for (int n = 2; n < size; n++) {
+            int slot = hash(row[n], lo[n], hi[n]) & mask;
+            while (unique[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            unique[slot] = n;
+        }
+    }
+
+    void setRoot(int root) {
+        this.root = root;
+        counts = null;
+    }
+
+    public int getRoot() {
+        return root;
+    }
+
+    /**
+     * @return the number of nodes, without the two sinks
+     */
+    public int size() {
+        return size - 2;
+    }
+
+    /**
+     * @return the number of solutions
+     */
+    public BigInteger count() {
+        return counts()[root];
+    }
+
+    private BigInteger[] counts() {
+        if (counts == null) {
+            counts = new BigInteger[size];
+            counts[BOTTOM] = BigInteger.ZERO;
+            counts[TOP] = BigInteger.ONE;
+            for (int n = 2; n < size; n++) {
+                counts[n] = counts[lo[n]].add(counts[hi[n]]);
+            }
+        }
+        return counts;
+    }
+
+    /**
+     * Counts the solutions that only use allowed rows, e.g. to count the
+     * tilings with a piece on the edge, allow only the rows that place it
+     * there. Takes one pass over the diagram.
+     *
+     * @param allowed tells for every matrix row if it may be used
+     */
+    public BigInteger count(IntPredicate allowed) {
+        return filteredCounts(allowed)[root];
+    }
+
+    private BigInteger[] filteredCounts(IntPredicate allowed) {
+        BigInteger[] filtered = new BigInteger[size];
+        filtered[BOTTOM] = BigInteger.ZERO;
+        filtered[TOP] = BigInteger.ONE;
+        for (int n = 2; n < size; n++) {
+            filtered[n] = allowed.test(row[n]) ? filtered[lo[n]].add(filtered[hi[n]]) : filtered[lo[n]];
+        }
+        return filtered;
+    }
+
+    /**
+     * Picks one of the solutions, each with the same probability.
+     *
+     * @return the rows of the solution, null if there is none
+     */
+    public int[] sample(Random random) {
+        BigInteger[] counts = counts();
+        if (counts[root].signum() == 0) {
+            return null;
+        }
+        int[] rows = new int[depth(root)];
+        int k = 0;
+        int n = root;
+        while (n != TOP) {
+            // take HI with probability count(HI) / count(n)
+            BigInteger total = counts[n];
+            BigInteger pick;
+            do {
+                pick = new BigInteger(total.bitLength(), random);
+            } while (pick.compareTo(total) >= 0);
+            if (pick.compareTo(counts[hi[n]]) < 0) {
+                rows[k++] = row[n];
+                n = hi[n];
+            } else {
+                n = lo[n];
+            }
+        }
+        return Arrays.copyOf(rows, k);
+    }
+
+    // the longest number of HI steps below a node, enough room for a solution
+    private int depth(int start) {
+        int[] depth = new int[size];
+        for (int n = 2; n <= start; n++) {
+            depth[n] = Math.max(depth[lo[n]], depth[hi[n]] + 1);
+        }
+        return depth[start];
+    }
+
+    /**
+     * Hands every solution to the handler.
+     *
+     * @return the number of solutions
+     */
+    public long enumerate(RowSolutionHandler handler) throws InterruptedException {
+        return enumerate(r -> true, handler);
+    }
+
+    /**
+     * Hands every solution that only uses allowed rows to the handler. Parts
+     * of the diagram without such a solution are skipped, so the time depends
+     * on the number of solutions found, not on the size of the diagram.
+     *
+     * @param allowed tells for every matrix row if it may be used
+     * @return the number of solutions handed to the handler
+     */
+    public long enumerate(IntPredicate allowed, RowSolutionHandler handler) throws InterruptedException {
+        BigInteger[] filtered = filteredCounts(allowed);
+        if (filtered[root].signum() == 0) {
+            return 0;
+        }
+        boolean[] usable = new boolean[size];
+        for (int n = 2; n < size; n++) {
+            usable[n] = allowed.test(row[n]) && filtered[hi[n]].signum() > 0;
+        }
+        return enumerate(root, new int[depth(root)], 0, usable, filtered, handler);
+    }
+
+    private long enumerate(int n, int[] rows, int k, boolean[] usable, BigInteger[] filtered,
+            RowSolutionHandler handler) throws InterruptedException {
+        long found = 0;
+        // follow the LO chain, branching into HI wherever a solution lies there
+        for (; n > TOP; n = lo[n]) {
+            if (usable[n]) {
+                rows[k] = row[n];
+                found += enumerate(hi[n], rows, k + 1, usable, filtered, handler);
+            }
+            if (filtered[lo[n]].signum() == 0) {
+                return found;
+            }
+        }
+        if (n == TOP) {
+            handler.handleSolution(Arrays.copyOf(rows, k));
+            found++;
+        }
+        return found;
+    }
+
+    /**
+     * Main function. Builds the diagram of a board, e.g. 6 10 XIZTUVWYLPNF
+     * (the default), counts it, draws a random tiling and counts the tilings
+     * with the I piece on the edge of the board.
+     */
+    public static void main(String[] args) throws InterruptedException {
+        int rows = args.length > 1 ? Integer.parseInt(args[0]) : 6;
+        int cols = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+        String names = args.length > 2 ? args[2] : "XIZTUVWYLPNF";
+        Character[] pieces = new Character[names.length()];
+        for (int i = 0; i < pieces.length; i++) {
+            pieces[i] = names.charAt(i);
+        }
+        int[][] matrix = Example.toSparseRows(Example.buildMatrix(rows, cols, pieces));
+        int n = pieces.length;
+
+        long startTime = System.currentTimeMillis();
+        DancingLinks dlx = new DancingLinks(n + rows * cols, matrix, new RowPrinter(r -> {
+        }));
+        SolutionDiagram diagram = dlx.buildDiagram();
+        System.out.println(diagram.size() + " nodes from " + dlx.getNodeCount() + " subproblems in "
+                + (System.currentTimeMillis() - startTime) + " ms");
+        System.out.println(diagram.count() + " solutions");
+
+        // the piece column comes first in every row, then the cells
+        int[] sample = diagram.sample(new Random());
+        if (sample != null) {
+            char[][] board = new char[rows][cols];
+            for (int r : sample) {
+                for (int k = 1; k < matrix[r].length; k++) {
+                    int cell = matrix[r][k] - n;
+                    board[cell / cols][cell % cols] = pieces[matrix[r][0]];
+                }
+            }
+            System.out.println("A random solution:");
+            for (char[] line : board) {
+                System.out.println(new String(line));
+            }
+        }
+
+        int piece = names.indexOf('I');
+        if (piece >= 0) {
+            BigInteger onEdge = diagram.count(r -> {
+                if (matrix[r][0] != piece) {
+                    return true;
+                }
+                for (int k = 1; k < matrix[r].length; k++) {
+                    int cell = matrix[r][k] - n;
+                    int x = cell / cols;
+                    int y = cell % cols;
+                    if (x == 0 || y == 0 || x == rows - 1 || y == cols - 1) {
+                        return true;
+                    }
+                }
+                return false;
+            });
+            System.out.println(onEdge + " solutions with the I on the edge");
+        }
+    }
+}
@@ -0,0 +1,322 @@
+package dancinglinks;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Append-only store of solutions as the matrix rows (placements) they use,
+ * kept in a memory mapped file instead of on the Java heap. Every solution is
+ * a fixed size record of rowsPerSolution ids of 1 to 4 bytes, enough for the
+ * number of rows of the matrix, so solution n can be read directly and a
+ * scan is a walk through the mapped chunks.
+ *
+ * Layout of the file (big endian):
+ * - int magic number "PSTO", byte version, byte bytes per id
+ * - int number of matrix rows, int rows per solution
+ * - long number of solutions, written by flush and close
+ * - then the records, packed without gaps
+ *
+ * The file is mapped in chunks of whole records, new chunks are mapped as the
+ * store grows. The last chunk is mapped a bit larger than needed and mapped
+ * again at twice the size when it is full, so the file can end in some unused
+ * space after the records. The number of solutions in the header is what
+ * counts, open for appending cuts the file back to it. Solutions added after
+ * the last flush are lost if the program stops without closing the store.
+ */
+public class SolutionStore implements RowSolutionHandler, Closeable {
+    public static final int MAGIC = 0x5053544F;
+    public static final byte VERSION = 1;
+    private static final int HEADER_SIZE = 22;
+    private static final long CHUNK_SIZE = 1L << 26;
+    // size of the first mapping of a chunk, it doubles when the chunk grows
+    private static final long FIRST_MAPPING = 1L << 16;
+
+    private final FileChannel channel;
+    private final boolean writable;
+    private final int matrixRows;
+    private final int rowsPerSolution;
+    private final int bytesPerId;
+    private final int recordSize;
+    private final long recordsPerChunk;
+    private final List<MappedByteBuffer> chunks = new ArrayList<>();
+    private long size;
+
+    private SolutionStore(FileChannel channel, boolean writable, int matrixRows, int rowsPerSolution, long size) {
+        this.channel = channel;
+        this.writable = writable;
+        this.matrixRows = matrixRows;
+        this.rowsPerSolution = rowsPerSolution;
+        this.bytesPerId = bytesPerId(matrixRows);
+        this.recordSize = rowsPerSolution * bytesPerId;
+        this.recordsPerChunk = Math.max(1, CHUNK_SIZE / recordSize);
+        this.size = size;
+    }
+
+    /**
+     * Creates an empty store, an existing file is replaced.
+     *
+     * @param file            the file to write
+     * @param matrixRows      number of rows of the exact cover matrix
+     * @param rowsPerSolution number of rows every solution uses, the number of
+     *                        pieces for a tiling with all pieces, at least 1
+     */
+    public static SolutionStore create(Path file, int matrixRows, int rowsPerSolution) throws IOException {
+        if (rowsPerSolution < 1) {
+            throw new IllegalArgumentException("A solution needs at least one row, not " + rowsPerSolution);
+        }
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        SolutionStore store = new SolutionStore(channel, true, matrixRows, rowsPerSolution, 0);
+        store.writeHeader();
+        return store;
+    }
+
+    /**
+     * Opens a store written before. For appending, the file is cut back to the
+     * solutions in the header first.
+     *
+     * @param append true to add more solutions, false to only read
+     */
+    public static SolutionStore open(Path file, boolean append) throws IOException {
+        FileChannel channel = append
+                ? FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)
+                : FileChannel.open(file, StandardOpenOption.READ);
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        while (header.hasRemaining()) {
+            if (channel.read(header, header.position()) < 0) {
+                channel.close();
+                throw new IOException(file + " is too short for a solution store");
+            }
+        }
+        header.flip();
+        if (header.getInt() != MAGIC || header.get() != VERSION) {
+            channel.close();
+            throw new IOException(file + " is not a solution store of this version");
+        }
+        header.get(); // bytes per id, follows from the number of rows
+        int matrixRows = header.getInt();
+        int rowsPerSolution = header.getInt();
+        long size = header.getLong();
+        if (rowsPerSolution < 1) {
+            channel.close();
+            throw new IOException(file + " has no rows per solution");
+        }
+        SolutionStore store = new SolutionStore(channel, append, matrixRows, rowsPerSolution, size);
+        if (append) {
+            // space mapped but not used before, nothing is mapped yet
+            long length = HEADER_SIZE + size * store.recordSize;
+            if (channel.size() > length) {
+                channel.truncate(length);
+            }
+        }
+        return store;
+    }
+
+    static int bytesPerId(int matrixRows) {
+        if (matrixRows <= 1 << 8) {
+            return 1;
+        } else if (matrixRows <= 1 << 16) {
+            return 2;
+        } else if (matrixRows <= 1 << 24) {
+            return 3;
+        }
+        return 4;
+    }
+
+    /**
+     * Adds a solution, same as append.
+     */
+    public void handleSolution(int[] rows) {
+        append(rows);
+    }
+
+    /**
+     * Adds a solution at the end of the store.
+     *
+     * @param rows the matrix rows of the solution, exactly rowsPerSolution
+     * @return the number of the solution
+     */
+    public long append(int[] rows) {
+        if (!writable) {
+            throw new IllegalStateException("The store is opened for reading only");
+        }
+        if (rows.length != rowsPerSolution) {
+            throw new IllegalArgumentException("Expected " + rowsPerSolution + " rows but got " + rows.length);
+        }
+        ByteBuffer chunk = chunk(size);
+        int offset = (int) (size % recordsPerChunk) * recordSize;
+        for (int row : rows) {
+            for (int b = bytesPerId - 1; b >= 0; b--) {
+                chunk.put(offset++, (byte) (row >>> (8 * b)));
+            }
+        }
+        return size++;
+    }
+
+    /**
+     * Reads one solution.
+     *
+     * @param index number of the solution, from 0
+     * @param rows  receives the matrix rows, at least rowsPerSolution long
+     * @return rows
+     */
+    public int[] get(long index, int[] rows) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Solution " + index + " of " + size);
+        }
+        ByteBuffer chunk = chunk(index);
+        int offset = (int) (index % recordsPerChunk) * recordSize;
+        for (int i = 0; i < rowsPerSolution; i++) {
+            int row = 0;
+            for (int b = 0; b < bytesPerId; b++) {
+                row = row << 8 | (chunk.get(offset++) & 0xFF);
+            }
+            rows[i] = row;
+        }
+        return rows;
+    }
+
+    /**
+     * Passes the solutions from first (inclusive) to last (exclusive) to the
+     * handler in order. The array passed is reused for every solution.
+     */
+    public void scan(long first, long last, RowSolutionHandler handler) throws InterruptedException {
+        int[] rows = new int[rowsPerSolution];
+        for (long i = first; i < last; i++) {
+            handler.handleSolution(get(i, rows));
+        }
+    }
+
+    /**
+     * Passes every solution to the handler in order.
+     */
+    public void scan(RowSolutionHandler handler) throws InterruptedException {
+        scan(0, size, handler);
+    }
+
+    public long size() {
+        return size;
+    }
+
+    public int getRowsPerSolution() {
+        return rowsPerSolution;
+    }
+
+    public int getMatrixRows() {
+        return matrixRows;
+    }
+
+    /**
+     * @return the mapped chunk holding the record, mapping it (and growing the
+     *         file) when needed
+     */
+    private MappedByteBuffer chunk(long index) {
+        int number = (int) (index / recordsPerChunk);
+        long needed = (index % recordsPerChunk + 1) * recordSize;
+        while (chunks.size() <= number) {
+            chunks.add(null);
+        }
+        MappedByteBuffer chunk = chunks.get(number);
+        if (chunk == null || chunk.capacity() < needed) {
+            long start = HEADER_SIZE + number * recordsPerChunk * recordSize;
+            long length = recordsPerChunk * recordSize;
+            try {
+                if (!writable) {
+                    length = Math.min(length, channel.size() - start);
+                } else {
+                    // whole records, twice the old mapping or at least FIRST_MAPPING
+                    long wanted = Math.max(needed, chunk == null ? FIRST_MAPPING : 2L * chunk.capacity());
+                    length = Math.min(length, (wanted + recordSize - 1) / recordSize * recordSize);
+                }
+                chunk = channel.map(writable ? FileChannel.MapMode.READ_WRITE : FileChannel.MapMode.READ_ONLY,
+                        start, length);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            chunks.set(number, chunk);
+        }
+        return chunk;
+    }
+
+    private void writeHeader() throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putInt(MAGIC);
+        header.put(VERSION);
+        header.put((byte) bytesPerId);
+        header.putInt(matrixRows);
+        header.putInt(rowsPerSolution);
+        header.putLong(size);
+        header.flip();
+        while (header.hasRemaining()) {
+            channel.write(header, header.position());
+        }
+    }
+
+    /**
+     * Writes the records to disk and the number of solutions to the header.
+     */
+    public void flush() throws IOException {
+        if (!writable) {
+            return;
+        }
+        for (MappedByteBuffer chunk : chunks) {
+            if (chunk != null) {
+                chunk.force();
+            }
+        }
+        writeHeader();
+        channel.force(false);
+    }
+
+    /**
+     * Flushes the store and closes the file. The file is not cut back to the
+     * records here, a file that is still mapped can not be truncated on every
+     * system (see open).
+     */
+    public void close() throws IOException {
+        flush();
+        channel.close();
+    }
+
+    /**
+     * Main function. Enumerates the 6x10 board into a store and prints the
+     * solution with the number given as argument
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        Character[] pieces = { 'X', 'I', 'Z', 'T', 'U', 'V', 'W', 'Y', 'L', 'P', 'N', 'F' };
+        int[][] matrix = Example.buildMatrix(6, 10, pieces);
+        int[][] sparseRows = Example.toSparseRows(matrix);
+        Path file = Paths.get("solutions.store");
+        long startTime = System.currentTimeMillis();
+        try (SolutionStore store = create(file, matrix.length, pieces.length)) {
+            new DancingLinks(matrix, new RowPrinter(store)).enumerate();
+            System.out.println(store.size() + " solutions stored in " + (System.currentTimeMillis() - startTime)
+                    + " ms");
+        }
+        try (SolutionStore store = open(file, false)) {
+            long index = args.length > 0 ? Long.parseLong(args[0]) : 0;
+            int[] rows = store.get(index, new int[store.getRowsPerSolution()]);
+            int[] types = Example.pieceTypes(pieces);
+            char[][] board = new char[6][10];
+            for (int row : rows) {
+                for (int k = 1; k < sparseRows[row].length; k++) {
+                    int cell = sparseRows[row][k] - pieces.length;
+                    board[cell / 10][cell % 10] = "XIZTUVWYLPNF".charAt(types[sparseRows[row][0]]);
+                }
+            }
+            System.out.println("Solution " + index + ":");
+            for (char[] line : board) {
+                System.out.println(new String(line));
+            }
+        }
+    }
+}
@@ -0,0 +1,432 @@
+package dancinglinks;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import common.UI;
+import pentominoes.PentominoDatabase;
+import search.Pieces;
+
+/**
+ * Tiles large boards by putting together rectangles that are known to be
+ * tileable with one full set of the 12 pentominoes: 3x20, 4x15, 5x12 and 6x10,
+ * and the same turned by 90 degrees.
+ *
+ * The board is split into these blocks by guillotine cuts, found with a
+ * dynamic program over the sizes of the sub-rectangles that places as many
+ * blocks as possible. To keep it close to linear in the number of cells, only
+ * strips of at most maxCut rows or columns are cut off. Every block then gets
+ * a solution from a catalogue of all tilings of its rectangle, which is
+ * enumerated once with DancingLinks and kept as a binary solution file.
+ *
+ * The cells that no block covers (and blocks for which no full set is left)
+ * are tiled with the remaining pieces by DancingLinks as one irregular region.
+ * If that region has a part whose size is not a multiple of 5 or a cell no
+ * piece fits on, or DancingLinks finds no tiling, the last block is given
+ * back to the region and it is tried again, at the end with the whole board.
+ */
+public class TilingComposer {
+    // the rectangles of the catalogue, always with rows <= cols
+    public static final int[][] BLOCKS = { { 3, 20 }, { 4, 15 }, { 5, 12 }, { 6, 10 } };
+    private static final Character[] FULL_SET = { 'X', 'I', 'Z', 'T', 'U', 'V', 'W', 'Y', 'L', 'P', 'N', 'F' };
+    private static final int BLOCK_AREA = 60;
+
+    public int horiGridSize;
+    public int vertGridSize;
+    public char[] input;
+    // where the catalogue files are kept
+    public Path catalogueDirectory = Paths.get("catalogue");
+    // strips longer than this are not cut off in one piece
+    public int maxCut = 60;
+    // chooses the catalogue solution of every block
+    public long seed = 0;
+
+    // Create the UI object
+    public UI ui;
+
+    // best[r][c]: most blocks in an r x c rectangle, cut[r][c]: how to get them
+    private int[][] best;
+    private int[][] cut;
+    // the open catalogue files, per entry of BLOCKS
+    private final BinarySolutionReader[] readers = new BinarySolutionReader[BLOCKS.length];
+    private int blockCount;
+    private int leftoverCells;
+    private long leftoverNodes;
+
+    // cut[r][c] values besides the row (> 0) and column (< 0) cuts
+    private static final int WASTE = 0;
+    private static final int BLOCK = Integer.MAX_VALUE;
+    // a cell of a block in a field that is not filled yet
+    private static final int COVERED = -2;
+
+    /**
+     * Composes a tiling of the board with the input pieces.
+     *
+     * @return the field with the pentomino ID on every cell, or null if the
+     *         board can not be tiled
+     */
+    public int[][] search() throws IOException, InterruptedException {
+        if (horiGridSize * vertGridSize != input.length * 5) {
+            throw new IllegalArgumentException("The pieces cover " + input.length * 5 + " cells but the board has "
+                    + horiGridSize * vertGridSize);
+        }
+        long startTime = System.currentTimeMillis();
+        int[] available = new int[PentominoDatabase.data.length];
+        for (char c : input) {
+            available[Pieces.characterToID(c)]++;
+        }
+        int sets = Integer.MAX_VALUE;
+        for (Character c : FULL_SET) {
+            sets = Math.min(sets, available[Pieces.characterToID(c)]);
+        }
+
+        plan(horiGridSize, vertGridSize);
+        List<int[]> blocks = new ArrayList<>();
+        collect(0, 0, horiGridSize, vertGridSize, blocks);
+
+        // the plan only counts blocks, so its leftover can be impossible to
+        // tile: then try again with fewer blocks, down to DancingLinks on the
+        // whole board
+        int[][] field = null;
+        try {
+            for (blockCount = Math.min(sets, blocks.size()); blockCount >= 0; blockCount--) {
+                field = new int[horiGridSize][vertGridSize];
+                for (int[] row : field) {
+                    Arrays.fill(row, -1);
+                }
+                int[] left = available.clone();
+                for (int b = 0; b < blockCount; b++) {
+                    int[] block = blocks.get(b);
+                    for (int i = 0; i < block[2]; i++) {
+                        Arrays.fill(field[block[0] + i], block[1], block[1] + block[3], COVERED);
+                    }
+                    for (Character c : FULL_SET) {
+                        left[Pieces.characterToID(c)]--;
+                    }
+                }
+                if (!canBeTiled(field, left)) {
+                    continue;
+                }
+                Random random = new Random(seed);
+                for (int b = 0; b < blockCount; b++) {
+                    int[] block = blocks.get(b);
+                    fillBlock(field, block[0], block[1], block[2], block[3], random);
+                }
+                if (fillLeftover(field, left)) {
+                    break;
+                }
+                System.out.println("The leftover of " + blockCount + " blocks can not be tiled, trying fewer blocks");
+            }
+        } finally {
+            for (int i = 0; i < readers.length; i++) {
+                if (readers[i] != null) {
+                    readers[i].close();
+                    readers[i] = null;
+                }
+            }
+        }
+
+        long endTime = System.currentTimeMillis();
+        if (blockCount < 0) {
+            blockCount = 0;
+            System.out.println("The board can not be tiled with these pieces (" + (endTime - startTime) + " ms)");
+            return null;
+        }
+        System.out.println("Composed " + blockCount + " blocks, " + leftoverCells + " cells left to DancingLinks ("
+                + leftoverNodes + " nodes) in " + (endTime - startTime) + " ms");
+        if (ui != null) {
+            ui.setState(field);
+        }
+        return field;
+    }
+
+    /**
+     * @return the number of catalogue blocks used by the last search
+     */
+    public int getBlockCount() {
+        return blockCount;
+    }
+
+    /**
+     * @return the number of cells the last search left to DancingLinks
+     */
+    public int getLeftoverCells() {
+        return leftoverCells;
+    }
+
+    // Fills best and cut for all rectangles up to rows x cols
+    private void plan(int rows, int cols) {
+        best = new int[rows + 1][cols + 1];
+        cut = new int[rows + 1][cols + 1];
+        for (int r = 1; r <= rows; r++) {
+            for (int c = 1; c <= cols; c++) {
+                if (isBlock(r, c)) {
+                    best[r][c] = 1;
+                    cut[r][c] = BLOCK;
+                    continue;
+                }
+                int most = 0;
+                int how = WASTE;
+                for (int a = 1; a <= Math.min(r / 2, maxCut); a++) {
+                    int blocks = best[a][c] + best[r - a][c];
+                    if (blocks > most) {
+                        most = blocks;
+                        how = a;
+                    }
+                }
+                for (int b = 1; b <= Math.min(c / 2, maxCut); b++) {
+                    int blocks = best[r][b] + best[r][c - b];
+                    if (blocks > most) {
+                        most = blocks;
+                        how = -b;
+                    }
+                }
+                best[r][c] = most;
+                cut[r][c] = how;
+            }
+        }
+    }
+
+    private static boolean isBlock(int r, int c) {
+        for (int[] block : BLOCKS) {
+            if ((r == block[0] && c == block[1]) || (r == block[1] && c == block[0])) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Adds the blocks {row, col, rows, cols} of the plan of a rectangle
+    private void collect(int row, int col, int rows, int cols, List<int[]> blocks) {
+        int how = cut[rows][cols];
+        if (how == BLOCK) {
+            blocks.add(new int[] { row, col, rows, cols });
+        } else if (how > 0) {
+            collect(row, col, how, cols, blocks);
+            collect(row + how, col, rows - how, cols, blocks);
+        } else if (how < 0) {
+            collect(row, col, rows, -how, blocks);
+            collect(row, col - how, rows, cols + how, blocks);
+        }
+    }
+
+    // Copies a catalogue solution into a block, turned if the block is
+    // higher than wide
+    private void fillBlock(int[][] field, int row, int col, int rows, int cols, Random random)
+            throws IOException, InterruptedException {
+        boolean turned = rows > cols;
+        BinarySolutionReader reader = catalogue(Math.min(rows, cols), Math.max(rows, cols));
+        long solution = (long) (random.nextDouble() * reader.getSolutionCount());
+        int[][] tiling = new int[reader.getRows()][reader.getColumns()];
+        reader.readSolution(solution, tiling);
+        for (int i = 0; i < rows; i++) {
+            for (int j = 0; j < cols; j++) {
+                field[row + i][col + j] = turned ? tiling[j][i] : tiling[i][j];
+            }
+        }
+    }
+
+    /**
+     * @return the catalogue of a rectangle, enumerated into
+     *         catalogueDirectory the first time it is needed
+     */
+    private BinarySolutionReader catalogue(int rows, int cols) throws IOException, InterruptedException {
+        int index = 0;
+        while (BLOCKS[index][0] != rows || BLOCKS[index][1] != cols) {
+            index++;
+        }
+        if (readers[index] == null) {
+            Files.createDirectories(catalogueDirectory);
+            Path file = catalogueDirectory.resolve(rows + "x" + cols + ".sol");
+            if (!Files.exists(file)) {
+                long count = Example.enumerateToFile(rows, cols, FULL_SET, file);
+                System.out.println("Catalogue " + file + ": " + count + " tilings");
+            }
+            readers[index] = new BinarySolutionReader(file);
+        }
+        return readers[index];
+    }
+
+    /**
+     * Quick test of the empty cells before DancingLinks is run on them: every
+     * connected part has to be a multiple of 5 cells, and every cell has to
+     * be covered by some placement of an available piece on empty cells.
+     *
+     * @return false if the empty cells can not be tiled
+     */
+    private boolean canBeTiled(int[][] field, int[] available) {
+        int[][][][] mutations = new int[available.length][][][];
+        for (int id = 0; id < available.length; id++) {
+            if (available[id] > 0) {
+                mutations[id] = Pieces.anchoredMutations(PentominoDatabase.data[id]);
+            }
+        }
+        boolean[][] seen = new boolean[horiGridSize][vertGridSize];
+        int[] stack = new int[horiGridSize * vertGridSize];
+        for (int x = 0; x < horiGridSize; x++) {
+            for (int y = 0; y < vertGridSize; y++) {
+                if (field[x][y] != -1 || seen[x][y]) {
+                    continue;
+                }
+                seen[x][y] = true;
+                stack[0] = x * vertGridSize + y;
+                int top = 1;
+                int size = 0;
+                while (top > 0) {
+                    int cell = stack[--top];
+                    int cx = cell / vertGridSize;
+                    int cy = cell % vertGridSize;
+                    size++;
+                    if (!fitsAnyPiece(field, cx, cy, mutations)) {
+                        return false;
+                    }
+                    int[][] neighbours = { { cx - 1, cy }, { cx + 1, cy }, { cx, cy - 1 }, { cx, cy + 1 } };
+                    for (int[] n : neighbours) {
+                        if (n[0] >= 0 && n[0] < horiGridSize && n[1] >= 0 && n[1] < vertGridSize
+                                && field[n[0]][n[1]] == -1 && !seen[n[0]][n[1]]) {
+                            seen[n[0]][n[1]] = true;
+                            stack[top++] = n[0] * vertGridSize + n[1];
+                        }
+                    }
+                }
+                if (size % 5 != 0) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    // True if a placement of an available piece on empty cells covers x, y
+    private boolean fitsAnyPiece(int[][] field, int x, int y, int[][][][] mutations) {
+        for (int[][][] piece : mutations) {
+            if (piece == null) {
+                continue;
+            }
+            for (int[][] mutation : piece) {
+                // try every cell of the piece on x, y
+                for (int[] at : mutation) {
+                    boolean fits = true;
+                    for (int k = 0; k < mutation.length && fits; k++) {
+                        int cx = x + mutation[k][0] - at[0];
+                        int cy = y + mutation[k][1] - at[1];
+                        fits = cx >= 0 && cx < horiGridSize && cy >= 0 && cy < vertGridSize && field[cx][cy] == -1;
+                    }
+                    if (fits) {
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Tiles the empty cells of the field with the available pieces, every
+     * piece has to be used.
+     *
+     * @return false if that is impossible
+     */
+    private boolean fillLeftover(int[][] field, int[] available) throws InterruptedException {
+        List<Integer> cells = new ArrayList<>();
+        int[][] column = new int[horiGridSize][vertGridSize];
+        for (int x = 0; x < horiGridSize; x++) {
+            for (int y = 0; y < vertGridSize; y++) {
+                column[x][y] = -1;
+                if (field[x][y] == -1) {
+                    column[x][y] = cells.size();
+                    cells.add(x * vertGridSize + y);
+                }
+            }
+        }
+        leftoverCells = cells.size();
+        leftoverNodes = 0;
+        if (cells.isEmpty()) {
+            return true;
+        }
+
+        List<Integer> pieceIDs = new ArrayList<>();
+        for (int id = 0; id < available.length; id++) {
+            for (int k = 0; k < available[id]; k++) {
+                pieceIDs.add(id);
+            }
+        }
+        // one row per piece and placement on empty cells: the piece column,
+        // then the cell columns
+        List<int[]> rows = new ArrayList<>();
+        for (int piece = 0; piece < pieceIDs.size(); piece++) {
+            int[][][] mutations = Pieces.anchoredMutations(PentominoDatabase.data[pieceIDs.get(piece)]);
+            for (int cell : cells) {
+                int x = cell / vertGridSize;
+                int y = cell % vertGridSize;
+                for (int[][] mutation : mutations) {
+                    int[] row = new int[mutation.length + 1];
+                    row[0] = piece;
+                    boolean fits = true;
+                    for (int k = 0; k < mutation.length && fits; k++) {
+                        int cx = x + mutation[k][0];
+                        int cy = y + mutation[k][1];
+                        fits = cx < horiGridSize && cy >= 0 && cy < vertGridSize && column[cx][cy] != -1;
+                        if (fits) {
+                            row[k + 1] = pieceIDs.size() + column[cx][cy];
+                        }
+                    }
+                    if (fits) {
+                        Arrays.sort(row, 1, row.length);
+                        rows.add(row);
+                    }
+                }
+            }
+        }
+        int[][] matrix = rows.toArray(new int[0][]);
+
+        int[][] found = new int[1][];
+        DancingLinks[] dlx = new DancingLinks[1];
+        dlx[0] = new DancingLinks(pieceIDs.size() + cells.size(), matrix, new RowPrinter(chosen -> {
+            found[0] = chosen.clone();
+            dlx[0].cancel();
+        }));
+        dlx[0].enumerate();
+        leftoverNodes = dlx[0].getNodeCount();
+        if (found[0] == null) {
+            return false;
+        }
+        for (int r : found[0]) {
+            int id = pieceIDs.get(matrix[r][0]);
+            for (int k = 1; k < matrix[r].length; k++) {
+                int cell = cells.get(matrix[r][k] - pieceIDs.size());
+                field[cell / vertGridSize][cell % vertGridSize] = id;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Main function. Tiles a board of the given size (default 30 40) with as
+     * many full sets as fit, plus the extra pieces given as third argument
+     * (e.g. 10 13 II)
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        TilingComposer composer = new TilingComposer();
+        composer.horiGridSize = args.length > 1 ? Integer.parseInt(args[0]) : 30;
+        composer.vertGridSize = args.length > 1 ? Integer.parseInt(args[1]) : 40;
+        String extra = args.length > 2 ? args[2] : "";
+        int sets = (composer.horiGridSize * composer.vertGridSize - 5 * extra.length()) / BLOCK_AREA;
+        StringBuilder pieces = new StringBuilder();
+        for (int i = 0; i < sets; i++) {
+            for (Character c : FULL_SET) {
+                pieces.append(c);
+            }
+        }
+        composer.input = pieces.append(extra).toString().toCharArray();
+        composer.ui = new UI(composer.horiGridSize, composer.vertGridSize,
+                Math.max(10, 600 / Math.max(composer.horiGridSize, composer.vertGridSize)));
+        composer.search();
+    }
+}
@@ -0,0 +1,390 @@
+package dancinglinks;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import search.MoreOptimizedBacktrackingSearch;
+import search.Pieces;
+import search.Preplacement;
+
+/**
+ * Splits an enumeration into work units that separate processes, on one or
+ * more machines, solve through a shared directory.
+ *
+ * A work unit is a branch of the DancingLinks search tree at a fixed depth:
+ * the matrix rows chosen on the way to it, which a worker forces before it
+ * enumerates the rest. The branches of one depth cover the whole tree once,
+ * so the counts of all units add up to the count of a single run.
+ *
+ * With the backtracking engine a unit is a branch of the dynamic ordering
+ * search of MoreOptimizedBacktrackingSearch instead, written as the text of
+ * a Preplacement with the pieces placed on the way to it. That search finds
+ * one solution, not all, so the count of a unit is 1 if it has a solution
+ * and 0 if not, and the reduced count is the number of units with one.
+ *
+ * Layout of the directory:
+ * - problem.txt: rows, columns, pieces, the number of units and the engine
+ * - pending/unit-NNNNNN: one unit per file, the row indices of its branch or
+ * its preplacement
+ * - claimed/unit-NNNNNN.worker: units a worker is solving. A worker claims a
+ * unit by renaming it from pending, which only one worker can do
+ * - results/unit-NNNNNN.count: number of solutions and search nodes
+ * - results/unit-NNNNNN.sol: the solutions (see BinarySolutionWriter), only
+ * if the worker was asked to keep them. The backtracking engine writes the
+ * solution it found as text to results/unit-NNNNNN.field instead
+ *
+ * Results are written under a temporary name and then renamed, so a result
+ * file is always complete. Units of a worker that died stay in claimed until
+ * requeue moves them back.
+ */
+public class WorkQueue {
+    public static final String PROBLEM = "problem.txt";
+    // the engines, last entry of problem.txt
+    public static final String DANCING_LINKS = "dlx";
+    public static final String BACKTRACKING = "backtracking";
+
+    private final Path pending;
+    private final Path claimed;
+    private final Path results;
+    private final Path problem;
+
+    public WorkQueue(Path directory) {
+        this.pending = directory.resolve("pending");
+        this.claimed = directory.resolve("claimed");
+        this.results = directory.resolve("results");
+        this.problem = directory.resolve(PROBLEM);
+    }
+
+    /**
+     * Splits the enumeration of a board into the branches at the given depth
+     * and writes them as pending units. The directory should be empty.
+     *
+     * @return the number of units
+     */
+    public int export(int rows, int cols, String pieces, int depth) throws IOException, InterruptedException {
+        Files.createDirectories(pending);
+        Files.createDirectories(claimed);
+        Files.createDirectories(results);
+        int[][] matrix = Example.buildMatrix(rows, cols, toCharacters(pieces));
+        List<int[]> prefixes = new DancingLinks(matrix, new RowPrinter(chosen -> {
+        })).splitPrefixes(depth);
+        for (int i = 0; i < prefixes.size(); i++) {
+            StringBuilder line = new StringBuilder();
+            for (int row : prefixes.get(i)) {
+                line.append(row).append(' ');
+            }
+            writeAtomically(pending.resolve(unitName(i)), line.toString().trim() + "\n");
+        }
+        writeAtomically(problem,
+                rows + " " + cols + " " + pieces + " " + prefixes.size() + " " + DANCING_LINKS + "\n");
+        return prefixes.size();
+    }
+
+    /**
+     * Splits the search of MoreOptimizedBacktrackingSearch for a board into
+     * the branches at the given depth and writes them as pending units. The
+     * directory should be empty.
+     *
+     * @return the number of units
+     */
+    public int exportBacktracking(int rows, int cols, String pieces, int depth) throws IOException {
+        Files.createDirectories(pending);
+        Files.createDirectories(claimed);
+        Files.createDirectories(results);
+        List<Preplacement> units = backtrackingSearch(rows, cols, pieces, null).splitPrefixes(depth);
+        for (int i = 0; i < units.size(); i++) {
+            writeAtomically(pending.resolve(unitName(i)), units.get(i) + "\n");
+        }
+        writeAtomically(problem, rows + " " + cols + " " + pieces + " " + units.size() + " " + BACKTRACKING + "\n");
+        return units.size();
+    }
+
+    private static MoreOptimizedBacktrackingSearch backtrackingSearch(int rows, int cols, String pieces,
+            Preplacement preplacement) {
+        MoreOptimizedBacktrackingSearch search = new MoreOptimizedBacktrackingSearch();
+        search.horiGridSize = rows;
+        search.vertGridSize = cols;
+        search.input = pieces.toCharArray();
+        search.preplacement = preplacement;
+        return search;
+    }
+
+    /**
+     * Claims and solves units until none are pending.
+     *
+     * @param worker        name of the worker, part of the claimed file names
+     * @param keepSolutions true to write the solutions of every unit as well
+     * @return the number of units this worker solved
+     */
+    public int work(String worker, boolean keepSolutions) throws IOException, InterruptedException {
+        String[] header = Files.readString(problem).trim().split(" ");
+        int rows = Integer.parseInt(header[0]);
+        int cols = Integer.parseInt(header[1]);
+        if (isBacktracking(header)) {
+            return workBacktracking(worker, rows, cols, header[2]);
+        }
+        Character[] pieces = toCharacters(header[2]);
+        int[][] matrix = Example.buildMatrix(rows, cols, pieces);
+        int[][] sparseRows = Example.toSparseRows(matrix);
+        int[] types = Example.pieceTypes(pieces);
+        RowSolutionHandler[] current = new RowSolutionHandler[1];
+        DancingLinks dlx = new DancingLinks(matrix, new RowPrinter(chosen -> current[0].handleSolution(chosen)));
+
+        int solved = 0;
+        Path unit;
+        while ((unit = claim(worker)) != null) {
+            String name = unitName(unit);
+            for (String row : Files.readString(unit).trim().split(" ")) {
+                if (!row.isEmpty() && !dlx.forceRow(Integer.parseInt(row))) {
+                    throw new IOException(unit + " forces a row that does not fit");
+                }
+            }
+            long count;
+            if (keepSolutions) {
+                Path temporary = results.resolve(name + ".sol.tmp");
+                try (BinarySolutionWriter writer = new BinarySolutionWriter(temporary, rows, cols, types,
+                        sparseRows)) {
+                    current[0] = writer;
+                    count = dlx.enumerate();
+                }
+                move(temporary, results.resolve(name + ".sol"));
+            } else {
+                current[0] = chosen -> {
+                };
+                count = dlx.enumerate();
+            }
+            dlx.clearForced();
+            writeAtomically(results.resolve(name + ".count"), count + " " + dlx.getNodeCount() + "\n");
+            Files.delete(unit);
+            solved++;
+        }
+        return solved;
+    }
+
+    // work for the backtracking engine, a unit with a solution has count 1
+    private int workBacktracking(String worker, int rows, int cols, String pieces) throws IOException {
+        int solved = 0;
+        Path unit;
+        while ((unit = claim(worker)) != null) {
+            String name = unitName(unit);
+            Preplacement preplacement = Preplacement.parse(rows, cols, Files.readString(unit));
+            MoreOptimizedBacktrackingSearch search = backtrackingSearch(rows, cols, pieces, preplacement);
+            search.search();
+            int[][] solution = search.getSolution();
+            if (solution != null) {
+                StringBuilder text = new StringBuilder();
+                for (int[] row : solution) {
+                    for (int id : row) {
+                        text.append(id < 0 ? '.' : Pieces.idToCharacter(id));
+                    }
+                    text.append('\n');
+                }
+                writeAtomically(results.resolve(name + ".field"), text.toString());
+            }
+            writeAtomically(results.resolve(name + ".count"),
+                    (solution != null ? 1 : 0) + " " + search.getNodeCount() + "\n");
+            Files.delete(unit);
+            solved++;
+        }
+        return solved;
+    }
+
+    private static boolean isBacktracking(String[] header) {
+        return header.length > 4 && header[4].equals(BACKTRACKING);
+    }
+
+    /**
+     * @return the claimed unit, or null if none is pending
+     */
+    private Path claim(String worker) throws IOException {
+        for (Path unit : list(pending)) {
+            if (unit.getFileName().toString().endsWith(".tmp")) {
+                continue;
+            }
+            Path target = claimed.resolve(unit.getFileName() + "." + worker);
+            try {
+                Files.move(unit, target, StandardCopyOption.ATOMIC_MOVE);
+                return target;
+            } catch (NoSuchFileException e) {
+                // another worker was faster
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Moves the claimed units back to pending, for workers that died. Only
+     * call it when no worker is running.
+     *
+     * @return the number of units moved
+     */
+    public int requeue() throws IOException {
+        int moved = 0;
+        for (Path unit : list(claimed)) {
+            move(unit, pending.resolve(unitName(unit)));
+            moved++;
+        }
+        return moved;
+    }
+
+    /**
+     * Adds up the counts of all finished units and joins their solution files,
+     * in unit order, into solutions.sol next to the queue. For the
+     * backtracking engine the first solution found is copied to solution.txt.
+     *
+     * @return the total number of solutions (units with a solution for the
+     *         backtracking engine), or -1 if units are missing
+     */
+    public long reduce() throws IOException {
+        String[] header = Files.readString(problem).trim().split(" ");
+        int units = Integer.parseInt(header[3]);
+        long solutions = 0;
+        long nodes = 0;
+        int finished = 0;
+        List<Path> solutionFiles = new ArrayList<>();
+        for (int i = 0; i < units; i++) {
+            Path count = results.resolve(unitName(i) + ".count");
+            if (!Files.exists(count)) {
+                continue;
+            }
+            String[] values = Files.readString(count).trim().split(" ");
+            solutions += Long.parseLong(values[0]);
+            nodes += Long.parseLong(values[1]);
+            finished++;
+            Path file = results.resolve(unitName(i) + (isBacktracking(header) ? ".field" : ".sol"));
+            if (Files.exists(file)) {
+                solutionFiles.add(file);
+            }
+        }
+        System.out.println(finished + " of " + units + " units finished, " + list(pending).size() + " pending, "
+                + list(claimed).size() + " claimed");
+        if (isBacktracking(header)) {
+            System.out.println(solutions + " units with a solution, " + nodes + " search nodes");
+            if (!solutionFiles.isEmpty()) {
+                String field = Files.readString(solutionFiles.get(0));
+                writeAtomically(problem.resolveSibling("solution.txt"), field);
+                System.out.print(field);
+            }
+            return finished == units ? solutions : -1;
+        }
+        System.out.println(solutions + " solutions, " + nodes + " search nodes");
+        if (!solutionFiles.isEmpty() && solutionFiles.size() == finished) {
+            join(solutionFiles, problem.resolveSibling("solutions.sol"));
+        }
+        return finished == units ? solutions : -1;
+    }
+
+    // Copies the header of the first file and the records of all of them
+    private static void join(List<Path> files, Path target) throws IOException {
+        Path temporary = target.resolveSibling(target.getFileName() + ".tmp");
+        try (FileChannel out = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            for (int i = 0; i < files.size(); i++) {
+                try (FileChannel in = FileChannel.open(files.get(i), StandardOpenOption.READ);
+                        BinarySolutionReader reader = new BinarySolutionReader(files.get(i))) {
+                    long start = i == 0 ? 0 : BinarySolutionWriter.headerSize(reader.getPieceTypes().length);
+                    long size = in.size();
+                    while (start < size) {
+                        start += in.transferTo(start, size - start, out);
+                    }
+                }
+            }
+        }
+        move(temporary, target);
+    }
+
+    private static List<Path> list(Path directory) throws IOException {
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory)) {
+            for (Path file : stream) {
+                files.add(file);
+            }
+        }
+        files.sort(null);
+        return files;
+    }
+
+    private static String unitName(int index) {
+        return String.format("unit-%06d", index);
+    }
+
+    // The unit name of a pending or claimed file
+    private static String unitName(Path file) {
+        String name = file.getFileName().toString();
+        int dot = name.indexOf('.');
+        return dot == -1 ? name : name.substring(0, dot);
+    }
+
+    private static void writeAtomically(Path file, String content) throws IOException {
+        Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+        Files.writeString(temporary, content);
+        move(temporary, file);
+    }
+
+    private static void move(Path from, Path to) throws IOException {
+        try {
+            Files.move(from, to, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(from, to, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private static Character[] toCharacters(String pieces) {
+        Character[] result = new Character[pieces.length()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = pieces.charAt(i);
+        }
+        return result;
+    }
+
+    /**
+     * Main function, the first argument is the directory of the queue:
+     * - dir export rows cols pieces depth [backtracking], e.g. queue export 6 10
+     * XIZTUVWYLPNF 3, with backtracking to split MoreOptimizedBacktrackingSearch
+     * instead of DancingLinks
+     * - dir work [solutions], runs a worker, several can run at the same time
+     * - dir requeue
+     * - dir reduce
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        WorkQueue queue = new WorkQueue(Paths.get(args[0]));
+        long startTime = System.currentTimeMillis();
+        switch (args[1]) {
+            case "export":
+                int units = Arrays.asList(args).contains(BACKTRACKING)
+                        ? queue.exportBacktracking(Integer.parseInt(args[2]), Integer.parseInt(args[3]), args[4],
+                                Integer.parseInt(args[5]))
+                        : queue.export(Integer.parseInt(args[2]), Integer.parseInt(args[3]), args[4],
+                                Integer.parseInt(args[5]));
+                System.out.println(units + " units written");
+                break;
+            case "work":
+                String worker = ManagementFactory.getRuntimeMXBean().getName().replace('.', '-');
+                boolean keepSolutions = Arrays.asList(args).contains("solutions");
+                int solved = queue.work(worker, keepSolutions);
+                System.out.println("Worker " + worker + " solved " + solved + " units");
+                break;
+            case "requeue":
+                System.out.println(queue.requeue() + " units moved back to pending");
+                break;
+            case "reduce":
+                queue.reduce();
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown mode " + args[1]);
+        }
+        System.out.println("Took " + (System.currentTimeMillis() - startTime) + " ms");
+    }
+}
@@ -10,6 +10,9 @@ import java.io.FileNotFoundException;
 import java.io.PrintWriter;
 import java.io.UnsupportedEncodingException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
 
 /**
  * This class contains all the methods that you may need to start developing
@@ -300,48 +303,21 @@ public class PentominoBuilder {
     /**
      * Erase duplicates in a array of matrices
      * The input matrix stays unchanged
+     * Every matrix is turned into a key once and kept only if the key is new, so
+     * the matrices are not compared with each other
      * 
      * @param data an array of matrices
      * @return the array of matrices without duplicates
      */
     public static int[][][] eraseDuplicates(int[][][] data) {
-        // make a counter that counts how many unique matrices there are
-        int counter = 0;
-        // check all matrices of the input
-        for (int i = 0; i < data.length; i++) {
-            // make an adder and set it to 1, if you find a duplicate, set it to 0
-            int adder = 1;
-            // go from the start till the matrix that you are checking now
-            for (int j = 0; j < i; j++) {
-                // check if equal
-                if (isEqual(data[i], data[j])) {
-                    adder = 0;
-                }
-            }
-            counter += adder;
-        }
-        // make an array of matrices with size counter
-        int[][][] returnData = new int[counter][][];
-        // a counter that keeps how many matrices you already added to the new array of
-        // matrices
-        counter = 0;
-        // check all matrices of the input
-        for (int i = 0; i < data.length; i++) {
-            // go from the start till the matrix that you are checking now
-            boolean alreadyExist = false;
-            for (int j = 0; j < i; j++) {
-                if (isEqual(data[i], data[j])) {
-                    alreadyExist = true;
-                }
-            }
-            // if it's not already added, add it to the array
-            if (alreadyExist == false) {
-                returnData[counter] = data[i];
-                // add one to counter, so next time you know where to add something
-                counter++;
+        Set<String> seen = new HashSet<>();
+        ArrayList<int[][]> unique = new ArrayList<>();
+        for (int[][] matrix : data) {
+            if (seen.add(Arrays.deepToString(matrix))) {
+                unique.add(matrix);
             }
         }
-        return returnData;
+        return unique.toArray(new int[0][][]);
     }
 
     /**
@@ -415,6 +391,64 @@ public class PentominoBuilder {
         return returnData;
     }
 
+    /**
+     * Encodes one mutation of a piece in a single int, the format used by
+     * PentominoShapes:
+     * - bits 0 to 24 are the cells of the 5*5 square, row by row (bit i*5+j is
+     * the cell in row i and column j)
+     * - bits 25 to 27 are the number of rows
+     * - bits 28 to 30 are the number of columns
+     * 
+     * @param piece a matrix of at most 5*5 without empty rows and columns
+     * @return the encoded piece
+     */
+    public static int encode(int[][] piece) {
+        int code = piece.length << 25 | piece[0].length << 28;
+        for (int i = 0; i < piece.length; i++) {
+            for (int j = 0; j < piece[i].length; j++) {
+                if (piece[i][j] == 1) {
+                    code |= 1 << (i * 5 + j);
+                }
+            }
+        }
+        return code;
+    }
+
+    /**
+     * Writes the database as the Java source of PentominoShapes, so it is
+     * compiled into the program and no file has to be read at startup.
+     * 
+     * @param fileName the file to write, normally
+     *                 src/pentominoes/PentominoShapes.java
+     */
+    public static void writeShapesClass(String fileName) throws FileNotFoundException, UnsupportedEncodingException {
+        PrintWriter writer = new PrintWriter(fileName, "UTF-8");
+        writer.println("package pentominoes;");
+        writer.println();
+        writer.println("/**");
+        writer.println(" * Generated by PentominoBuilder.writeShapesClass, do not edit.");
+        writer.println(" * Every int is one mutation, see PentominoBuilder.encode for the format.");
+        writer.println(" */");
+        writer.println("final class PentominoShapes {");
+        writer.println("    static final int[][] ORIENTATIONS = {");
+        for (int i = 0; i < database.size(); i++) {
+            StringBuilder line = new StringBuilder("            { ");
+            for (int j = 0; j < database.get(i).length; j++) {
+                if (j > 0) {
+                    line.append(", ");
+                }
+                line.append(String.format("0x%08X", encode(database.get(i)[j])));
+            }
+            writer.println(line.append(" },"));
+        }
+        writer.println("    };");
+        writer.println();
+        writer.println("    private PentominoShapes() {");
+        writer.println("    }");
+        writer.println("}");
+        writer.close();
+    }
+
     /**
      * @param args
      * @throws FileNotFoundException
@@ -422,6 +456,7 @@ public class PentominoBuilder {
      */
     public static void main(String[] args) throws FileNotFoundException, UnsupportedEncodingException {
         makeDatabase();
+        writeShapesClass("src/pentominoes/PentominoShapes.java");
 
         PrintWriter writer = new PrintWriter("pentominos.csv", "UTF-8");
 
@@ -11,8 +11,11 @@ import java.util.ArrayList;
 import java.util.Scanner;
 
 /**
- * This class takes care of reading all pentominoes and their permutations from
- * a CSV
+ * This class gives access to all pentominoes and their permutations. They are
+ * compiled into the program (see PentominoShapes, generated by
+ * PentominoBuilder) so nothing is read from disk at startup and the program
+ * does not depend on the working directory. The same table can still be read
+ * from a CSV file with loadData.
  * Information abpout the structure of the CSV file (also included in
  * pentomino.csv.README)
  * Each line in the CSV file defines one permutation of a pentomino.
@@ -40,11 +43,51 @@ import java.util.Scanner;
  * 0 0 X
  */
 public class PentominoDatabase {
-    // Stores and loads the data on program initialization
-    public static int[][][][] data = loadData("pentominos.csv");
+    // Decoded the first time the class is used
+    public static int[][][][] data = decode(PentominoShapes.ORIENTATIONS);
 
     /**
-     * Loads and decodes the CSV file
+     * Decodes the compiled table of pieces
+     * 
+     * @param orientations per piece ID the encoded mutations (see
+     *                     PentominoBuilder.encode)
+     * @return list of pieces. Dimensions: 1-Piece ID; 2-Mutation; 3-X
+     *         representation; 4-Y representation
+     */
+    static int[][][][] decode(int[][] orientations) {
+        int[][][][] pieces = new int[orientations.length][][][];
+        for (int i = 0; i < orientations.length; i++) {
+            pieces[i] = new int[orientations[i].length][][];
+            for (int j = 0; j < orientations[i].length; j++) {
+                int code = orientations[i][j];
+                int xSize = code >>> 25 & 7;
+                int ySize = code >>> 28 & 7;
+                int[][] piece = new int[xSize][ySize];
+                for (int k = 0; k < xSize; k++) {
+                    for (int l = 0; l < ySize; l++) {
+                        piece[k][l] = code >>> (k * 5 + l) & 1;
+                    }
+                }
+                pieces[i][j] = piece;
+            }
+        }
+        return pieces;
+    }
+
+    /**
+     * Gives the encoded form of a mutation: a 25 bit mask of the 5*5 square
+     * plus the dimensions, see PentominoBuilder.encode
+     * 
+     * @param pentID   ID of the pentomino
+     * @param mutation index of the mutation
+     * @return the encoded mutation
+     */
+    public static int mask(int pentID, int mutation) {
+        return PentominoShapes.ORIENTATIONS[pentID][mutation];
+    }
+
+    /**
+     * Loads and decodes a CSV file in the format described above
      * 
      * @param fileName name of the CVS file to be used
      * @return list of pieces. Dimensions: 1-Piece ID; 2-Mutation; 3-X
@@ -53,7 +96,7 @@ public class PentominoDatabase {
      *                                  location of the file and/or typo in the
      *                                  fileName parameter)
      */
-    private static int[][][][] loadData(String fileName) {
+    public static int[][][][] loadData(String fileName) throws FileNotFoundException {
         // Create a temporary dynamic object to store the data, later to be converted to
         // a static 4D array
         ArrayList<ArrayList<int[][]>> dynamicList = new ArrayList<>();
@@ -61,8 +104,7 @@ public class PentominoDatabase {
         // Open the CSV file
         File file = new File(fileName);
 
-        try {
-            Scanner scanner = new Scanner(file);
+        try (Scanner scanner = new Scanner(file)) {
             while (scanner.hasNextLine()) // For each line in the CSV file
             {
                 // Read the line, and convert the string to a list of numbers
@@ -85,10 +127,6 @@ public class PentominoDatabase {
                 // Add piece to the dynamic list
                 dynamicList.get(dynamicList.size() - 1).add(piece);
             }
-            scanner.close();
-        } catch (FileNotFoundException e) {
-            e.printStackTrace();
-            System.exit(0);
         }
 
         // Arrays index easier than ArrayLists, so convert dynamic list to static list
@@ -100,8 +138,8 @@ public class PentominoDatabase {
     }
 
     /**
-     * Main function used for visualizing and debugging reading the csv file with
-     * pieces
+     * Main function used for visualizing and debugging the table of pieces, prints
+     * it in the CSV format
      * Should not be called while searching for a solution
      */
     public static void main(String[] args) {
@@ -0,0 +1,25 @@
+package pentominoes;
+
+/**
+ * Generated by PentominoBuilder.writeShapesClass, do not edit.
+ * Every int is one mutation, see PentominoBuilder.encode for the format.
+ */
+final class PentominoShapes {
+    static final int[][] ORIENTATIONS = {
+            { 0x360008E2 },
+            { 0x1A108421, 0x5200001F },
+            { 0x36000C46, 0x360010E1, 0x36001843, 0x360004E4 },
+            { 0x36000847, 0x360004E1, 0x36001C42, 0x360010E4 },
+            { 0x26000C23, 0x340000E5, 0x26000C43, 0x340000A7 },
+            { 0x36000427, 0x36001C21, 0x36001C84, 0x36001087 },
+            { 0x36000CC4, 0x360010C3, 0x36000466, 0x36001861 },
+            { 0x28008461, 0x440001E2, 0x28010C42, 0x4400008F, 0x28010862, 0x4400004F, 0x28008C21, 0x440001E4 },
+            { 0x28018421, 0x440001E8, 0x28010843, 0x4400002F, 0x28018842, 0x4400010F, 0x28008423, 0x440001E1 },
+            { 0x26000463, 0x340000E3, 0x26000C62, 0x340000C7, 0x26000863, 0x34000067, 0x26000C61, 0x340000E6 },
+            { 0x28008C42, 0x44000187, 0x28008462, 0x440001C3, 0x28010C21, 0x440000EC, 0x28010861, 0x4400006E },
+            { 0x36000866, 0x360008E1, 0x36000CC2, 0x360010E2, 0x360008C3, 0x360004E2, 0x36001862, 0x360008E4 },
+    };
+
+    private PentominoShapes() {
+    }
+}
@@ -0,0 +1,192 @@
+package pentominoes;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Builds three dimensional pieces (polycubes) and all their rotations, for
+ * filling boxes instead of flat boards.
+ * 
+ * A piece is a list of cubes, every cube is an array {x, y, z}. Tables have
+ * the dimensions: 1-Piece ID; 2-Rotation; 3-Cube; 4-Coordinate. Every rotation
+ * is moved to the corner so its smallest x, y and z are 0, and only distinct
+ * rotations are kept (at most 24, the rotations of a cube).
+ * Reflections are not used, a piece cannot be mirrored in space.
+ */
+public class PolycubeBuilder {
+    public static final int MAX_ORDER = 8;
+
+    /**
+     * The 12 pentominoes as flat pentacubes, with the same IDs as
+     * PentominoDatabase. These are the pieces of the classic 3x4x5, 2x5x6 and
+     * 2x3x10 box puzzles.
+     * 
+     * @return the rotation table of every pentomino
+     */
+    public static int[][][][] flatPentacubes() {
+        int[][][][] pieces = new int[PentominoDatabase.data.length][][][];
+        for (int i = 0; i < pieces.length; i++) {
+            int[][] flat = PentominoDatabase.data[i][0];
+            List<int[]> cubes = new ArrayList<>();
+            for (int x = 0; x < flat.length; x++) {
+                for (int y = 0; y < flat[x].length; y++) {
+                    if (flat[x][y] == 1) {
+                        cubes.add(new int[] { x, y, 0 });
+                    }
+                }
+            }
+            pieces[i] = rotations(cubes.toArray(new int[0][]));
+        }
+        return pieces;
+    }
+
+    /**
+     * Generates all polycubes of order n, where two pieces are the same if one
+     * can be rotated into the other. Mirror images are different pieces, so
+     * there are 29 pentacubes.
+     * 
+     * @param n number of cubes of each piece, between 1 and MAX_ORDER
+     * @return the rotation table of every piece
+     */
+    public static int[][][][] freePolycubes(int n) {
+        if (n < 1 || n > MAX_ORDER) {
+            throw new IllegalArgumentException("Order must be between 1 and " + MAX_ORDER);
+        }
+        // canonical key -> cubes, grown one cube at a time
+        Map<String, int[][]> level = new LinkedHashMap<>();
+        int[][] single = { { 0, 0, 0 } };
+        level.put(canonicalKey(single), single);
+        int[][] directions = { { 1, 0, 0 }, { -1, 0, 0 }, { 0, 1, 0 }, { 0, -1, 0 }, { 0, 0, 1 }, { 0, 0, -1 } };
+
+        for (int order = 2; order <= n; order++) {
+            Map<String, int[][]> next = new LinkedHashMap<>();
+            for (int[][] piece : level.values()) {
+                Set<Long> present = new LinkedHashSet<>();
+                for (int[] cube : piece) {
+                    present.add(pack(cube[0] + 1, cube[1] + 1, cube[2] + 1));
+                }
+                for (int[] cube : piece) {
+                    for (int[] d : directions) {
+                        int[] added = { cube[0] + d[0], cube[1] + d[1], cube[2] + d[2] };
+                        if (present.contains(pack(added[0] + 1, added[1] + 1, added[2] + 1))) {
+                            continue;
+                        }
+                        int[][] grown = Arrays.copyOf(piece, piece.length + 1);
+                        grown[piece.length] = added;
+                        grown = normalize(grown);
+                        next.putIfAbsent(canonicalKey(grown), grown);
+                    }
+                }
+            }
+            level = next;
+        }
+
+        int[][][][] pieces = new int[level.size()][][][];
+        int i = 0;
+        for (int[][] piece : level.values()) {
+            pieces[i++] = rotations(piece);
+        }
+        return pieces;
+    }
+
+    /**
+     * Gives all distinct rotations of a piece. They are found by turning the
+     * piece a quarter around the x, y and z axis until no new rotation
+     * appears.
+     * 
+     * @param cubes the cubes of the piece
+     * @return the rotations, every one moved to the corner
+     */
+    public static int[][][] rotations(int[][] cubes) {
+        Map<String, int[][]> found = new LinkedHashMap<>();
+        List<int[][]> queue = new ArrayList<>();
+        int[][] start = normalize(cubes);
+        found.put(Arrays.deepToString(start), start);
+        queue.add(start);
+        for (int i = 0; i < queue.size(); i++) {
+            for (int axis = 0; axis < 3; axis++) {
+                int[][] turned = normalize(turn(queue.get(i), axis));
+                if (found.putIfAbsent(Arrays.deepToString(turned), turned) == null) {
+                    queue.add(turned);
+                }
+            }
+        }
+        return found.values().toArray(new int[0][][]);
+    }
+
+    // quarter turn around one axis
+    private static int[][] turn(int[][] cubes, int axis) {
+        int[][] result = new int[cubes.length][];
+        for (int i = 0; i < cubes.length; i++) {
+            int x = cubes[i][0];
+            int y = cubes[i][1];
+            int z = cubes[i][2];
+            if (axis == 0) {
+                result[i] = new int[] { x, -z, y };
+            } else if (axis == 1) {
+                result[i] = new int[] { z, y, -x };
+            } else {
+                result[i] = new int[] { -y, x, z };
+            }
+        }
+        return result;
+    }
+
+    // moves the piece to the corner and sorts the cubes, so equal pieces give
+    // equal arrays
+    private static int[][] normalize(int[][] cubes) {
+        int minX = Integer.MAX_VALUE;
+        int minY = Integer.MAX_VALUE;
+        int minZ = Integer.MAX_VALUE;
+        for (int[] cube : cubes) {
+            minX = Math.min(minX, cube[0]);
+            minY = Math.min(minY, cube[1]);
+            minZ = Math.min(minZ, cube[2]);
+        }
+        int[][] result = new int[cubes.length][];
+        for (int i = 0; i < cubes.length; i++) {
+            result[i] = new int[] { cubes[i][0] - minX, cubes[i][1] - minY, cubes[i][2] - minZ };
+        }
+        Arrays.sort(result, (a, b) -> Long.compare(pack(a[0], a[1], a[2]), pack(b[0], b[1], b[2])));
+        return result;
+    }
+
+    private static long pack(int x, int y, int z) {
+        return (long) x << 16 | (long) y << 8 | z;
+    }
+
+    // the smallest of the sorted cube lists of all rotations, equal for pieces
+    // that can be rotated into each other
+    private static String canonicalKey(int[][] cubes) {
+        String best = null;
+        for (int[][] rotation : rotations(cubes)) {
+            String key = Arrays.deepToString(rotation);
+            if (best == null || key.compareTo(best) < 0) {
+                best = key;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Main function used for checking the builder, prints the number of pieces
+     * and rotations per order.
+     */
+    public static void main(String[] args) {
+        for (int order = 1; order <= 6; order++) {
+            long start = System.currentTimeMillis();
+            int[][][][] pieces = freePolycubes(order);
+            int rotations = 0;
+            for (int[][][] piece : pieces) {
+                rotations += piece.length;
+            }
+            System.out.println("Order " + order + ": " + pieces.length + " pieces, " + rotations + " rotations in "
+                    + (System.currentTimeMillis() - start) + " ms");
+        }
+    }
+}
@@ -0,0 +1,251 @@
+package pentominoes;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Generates all free polyominoes of a given order together with their
+ * mutations, in the same format as PentominoDatabase.data.
+ * 
+ * Fixed polyominoes are enumerated with Redelmeier's algorithm, which creates
+ * every fixed polyomino exactly once by growing it from the lowest cell and
+ * only adding cells that were not reachable before. Each one is then reduced
+ * to a canonical key (the smallest bit mask over its 8 rotations and
+ * reflections) and kept if the key is new, so no matrices have to be compared
+ * pairwise.
+ * 
+ * Cells are stored as a bit mask of an n*n square, so orders up to 8 are
+ * supported (369 octominoes).
+ */
+public class PolyominoGenerator {
+    public static final int MAX_ORDER = 8;
+
+    private final int n;
+    // width of the grid used while growing, x is shifted by n - 1
+    private final int width;
+    // cells that were added to the untried set on the current path
+    private final boolean[] reached;
+    private final int[] polyomino;
+    private int size;
+    // canonical key -> cells of the first fixed polyomino found with that key
+    private final Map<Long, int[]> freePolyominoes = new LinkedHashMap<>();
+
+    private PolyominoGenerator(int n) {
+        this.n = n;
+        this.width = 2 * n;
+        this.reached = new boolean[width * n];
+        this.polyomino = new int[n];
+    }
+
+    /**
+     * Generates all free polyominoes of order n
+     * 
+     * @param n number of cells of each piece, between 1 and MAX_ORDER
+     * @return list of pieces. Dimensions: 1-Piece ID; 2-Mutation; 3-X
+     *         representation; 4-Y representation
+     */
+    public static int[][][][] freePolyominoes(int n) {
+        if (n < 1 || n > MAX_ORDER) {
+            throw new IllegalArgumentException("Order must be between 1 and " + MAX_ORDER);
+        }
+        PolyominoGenerator generator = new PolyominoGenerator(n);
+        generator.grow();
+
+        int[][][][] pieces = new int[generator.freePolyominoes.size()][][][];
+        int i = 0;
+        for (int[] cells : generator.freePolyominoes.values()) {
+            pieces[i++] = mutations(cells, n);
+        }
+        return pieces;
+    }
+
+    /**
+     * Gives all distinct rotations and reflections of one piece.
+     * 
+     * @param piece a matrix with 1 on the cells of the piece
+     * @return the mutations, each without empty rows or columns
+     */
+    public static int[][][] mutations(int[][] piece) {
+        int count = 0;
+        for (int[] row : piece) {
+            for (int value : row) {
+                count += value;
+            }
+        }
+        if (count > MAX_ORDER) {
+            throw new IllegalArgumentException("Pieces can have at most " + MAX_ORDER + " cells");
+        }
+        int[] cells = new int[count];
+        int k = 0;
+        for (int i = 0; i < piece.length; i++) {
+            for (int j = 0; j < piece[i].length; j++) {
+                if (piece[i][j] == 1) {
+                    cells[k++] = pack(i, j);
+                }
+            }
+        }
+        return mutations(cells, count);
+    }
+
+    // Redelmeier's algorithm: grow from the origin, cell (x, y) is allowed if
+    // y > 0 or (y == 0 and x >= 0), so every fixed polyomino has a unique
+    // lowest cell
+    private void grow() {
+        int origin = index(0, 0);
+        reached[origin] = true;
+        grow(new int[] { origin }, 1);
+    }
+
+    private void grow(int[] untried, int untriedCount) {
+        int[] next = new int[untriedCount + 4 * n];
+        while (untriedCount > 0) {
+            int cell = untried[--untriedCount];
+            polyomino[size++] = cell;
+
+            if (size == n) {
+                emit();
+            } else {
+                System.arraycopy(untried, 0, next, 0, untriedCount);
+                int nextCount = untriedCount;
+                int x = cell % width - (n - 1);
+                int y = cell / width;
+                int[] added = new int[4];
+                int addedCount = 0;
+                int[][] neighbours = { { x + 1, y }, { x - 1, y }, { x, y + 1 }, { x, y - 1 } };
+                for (int[] neighbour : neighbours) {
+                    int nx = neighbour[0];
+                    int ny = neighbour[1];
+                    if (ny < 0 || ny >= n || (ny == 0 && nx < 0) || nx <= -n || nx >= n) {
+                        continue;
+                    }
+                    int index = index(nx, ny);
+                    if (!reached[index]) {
+                        reached[index] = true;
+                        added[addedCount++] = index;
+                        next[nextCount++] = index;
+                    }
+                }
+                grow(next.clone(), nextCount);
+                for (int i = 0; i < addedCount; i++) {
+                    reached[added[i]] = false;
+                }
+            }
+            size--;
+        }
+    }
+
+    private int index(int x, int y) {
+        return y * width + x + n - 1;
+    }
+
+    private void emit() {
+        int[] cells = new int[n];
+        for (int i = 0; i < n; i++) {
+            cells[i] = pack(polyomino[i] / width, polyomino[i] % width);
+        }
+        long key = canonicalKey(cells, n);
+        if (!freePolyominoes.containsKey(key)) {
+            freePolyominoes.put(key, cells);
+        }
+    }
+
+    // a cell is stored as row << 8 | column
+    private static int pack(int row, int col) {
+        return row << 8 | col;
+    }
+
+    /**
+     * Applies one of the 8 symmetries of the square and moves the cells to the
+     * upper left corner.
+     */
+    private static int[] transform(int[] cells, int symmetry) {
+        int[] rows = new int[cells.length];
+        int[] cols = new int[cells.length];
+        int minRow = Integer.MAX_VALUE;
+        int minCol = Integer.MAX_VALUE;
+        for (int i = 0; i < cells.length; i++) {
+            int r = cells[i] >> 8;
+            int c = cells[i] & 0xFF;
+            // reflect first, then rotate 90 degrees the given number of times
+            if (symmetry >= 4) {
+                c = -c;
+            }
+            for (int k = 0; k < symmetry % 4; k++) {
+                int t = r;
+                r = c;
+                c = -t;
+            }
+            rows[i] = r;
+            cols[i] = c;
+            minRow = Math.min(minRow, r);
+            minCol = Math.min(minCol, c);
+        }
+        int[] result = new int[cells.length];
+        for (int i = 0; i < cells.length; i++) {
+            result[i] = pack(rows[i] - minRow, cols[i] - minCol);
+        }
+        return result;
+    }
+
+    private static long mask(int[] normalized, int n) {
+        long mask = 0;
+        for (int cell : normalized) {
+            mask |= 1L << ((cell >> 8) * n + (cell & 0xFF));
+        }
+        return mask;
+    }
+
+    private static long canonicalKey(int[] cells, int n) {
+        long best = Long.MAX_VALUE;
+        for (int s = 0; s < 8; s++) {
+            long mask = mask(transform(cells, s), n);
+            if (Long.compareUnsigned(mask, best) < 0) {
+                best = mask;
+            }
+        }
+        return best;
+    }
+
+    private static int[][][] mutations(int[] cells, int n) {
+        Set<Long> seen = new HashSet<>();
+        ArrayList<int[][]> result = new ArrayList<>();
+        for (int s = 0; s < 8; s++) {
+            int[] normalized = transform(cells, s);
+            if (seen.add(mask(normalized, n))) {
+                int rows = 0;
+                int cols = 0;
+                for (int cell : normalized) {
+                    rows = Math.max(rows, (cell >> 8) + 1);
+                    cols = Math.max(cols, (cell & 0xFF) + 1);
+                }
+                int[][] piece = new int[rows][cols];
+                for (int cell : normalized) {
+                    piece[cell >> 8][cell & 0xFF] = 1;
+                }
+                result.add(piece);
+            }
+        }
+        return result.toArray(new int[0][][]);
+    }
+
+    /**
+     * Main function used for checking the generator, prints the number of free
+     * polyominoes and mutations per order and how long it took.
+     */
+    public static void main(String[] args) {
+        for (int order = 1; order <= MAX_ORDER; order++) {
+            long start = System.nanoTime();
+            int[][][][] pieces = freePolyominoes(order);
+            long end = System.nanoTime();
+            int mutations = 0;
+            for (int[][][] piece : pieces) {
+                mutations += piece.length;
+            }
+            System.out.println("Order " + order + ": " + pieces.length + " pieces, " + mutations + " mutations in "
+                    + (end - start) / 1000 + " us");
+        }
+    }
+}
@@ -0,0 +1,605 @@
+package sat;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A small conflict driven clause learning SAT solver in the style of
+ * MiniSat, so the tiling searches can prove that a board can not be tiled
+ * without walking the whole search tree.
+ *
+ * - Two watched literals per clause, a clause is only looked at when one of
+ * its watches becomes false.
+ * - Every conflict is analysed to its first unique implication point, the
+ * learnt clause is shortened by dropping literals implied by the others, and
+ * the search jumps back to the second highest level in it.
+ * - Variables are picked by VSIDS activity (bumped when they take part in a
+ * conflict, all decayed a little after every conflict) from a binary heap,
+ * with the value they had last time (phase saving).
+ * - Restarts follow the Luby sequence, learnt clauses with a high literal
+ * block distance (number of decision levels in them) and low activity are
+ * thrown away now and then.
+ *
+ * Variables are numbered from 1 and literals given as in DIMACS: v for true,
+ * -v for false. Inside, literal 2 * (v - 1) is v and 2 * (v - 1) + 1 is -v.
+ */
+public class CdclSolver {
+    private static final byte TRUE = 1;
+    private static final byte FALSE = -1;
+    private static final double VAR_DECAY = 0.95;
+    private static final double CLAUSE_DECAY = 0.999;
+    private static final int RESTART_UNIT = 100;
+
+    static final class Clause {
+        final int[] lits;
+        final boolean learnt;
+        int lbd;
+        double activity;
+        boolean deleted;
+
+        Clause(int[] lits, boolean learnt) {
+            this.lits = lits;
+            this.learnt = learnt;
+        }
+    }
+
+    private final int variables;
+    // per literal: TRUE, FALSE or 0 for unassigned
+    private final byte[] value;
+    // per variable
+    private final int[] level;
+    private final Clause[] reason;
+    private final boolean[] phase;
+    private final double[] activity;
+    private final boolean[] seen;
+    // per literal the clauses that watch it
+    private final Clause[][] watches;
+    private final int[] watchCount;
+
+    private final int[] trail;
+    private int trailSize;
+    private int propagated;
+    // trail size at the start of every decision level
+    private final int[] levelStart;
+    private int decisionLevel;
+
+    // max heap of the variables by activity
+    private final int[] heap;
+    private final int[] heapPos;
+    private int heapSize;
+    private double varIncrement = 1;
+    private double clauseIncrement = 1;
+
+    private final List<Clause> learnts = new ArrayList<>();
+    private double maxLearnts;
+    private int originalClauses;
+    // false once the clauses are known to be unsatisfiable
+    private boolean ok = true;
+    private boolean[] model;
+
+    private long conflicts;
+    private long decisions;
+    private long propagations;
+    private int restarts;
+    // give up after this many conflicts, 0 for no limit
+    public long conflictLimit;
+    private volatile boolean cancelled;
+
+    /**
+     * @param variables number of variables, they are 1 to variables
+     */
+    public CdclSolver(int variables) {
+        this.variables = variables;
+        value = new byte[2 * variables];
+        level = new int[variables];
+        reason = new Clause[variables];
+        phase = new boolean[variables];
+        activity = new double[variables];
+        seen = new boolean[variables];
+        watches = new Clause[2 * variables][];
+        watchCount = new int[2 * variables];
+        for (int l = 0; l < watches.length; l++) {
+            watches[l] = new Clause[4];
+        }
+        trail = new int[variables];
+        levelStart = new int[variables + 1];
+        heap = new int[variables];
+        heapPos = new int[variables];
+        for (int v = 0; v < variables; v++) {
+            heap[v] = v;
+            heapPos[v] = v;
+        }
+        heapSize = variables;
+    }
+
+    /**
+     * Adds a clause. Must not be called while solve runs.
+     *
+     * @param literals DIMACS literals
+     * @return false if the clauses are unsatisfiable now
+     */
+    public boolean addClause(int... literals) {
+        if (!ok) {
+            return false;
+        }
+        int[] lits = new int[literals.length];
+        for (int i = 0; i < literals.length; i++) {
+            int v = Math.abs(literals[i]);
+            if (v == 0 || v > variables) {
+                throw new IllegalArgumentException("Variable " + v + " does not exist");
+            }
+            lits[i] = 2 * (v - 1) + (literals[i] < 0 ? 1 : 0);
+        }
+        Arrays.sort(lits);
+        // drop false and repeated literals, skip satisfied clauses and tautologies
+        int n = 0;
+        for (int i = 0; i < lits.length; i++) {
+            int lit = lits[i];
+            if (value[lit] == TRUE || (i > 0 && lit == (lits[i - 1] ^ 1))) {
+                return true;
+            }
+            if (value[lit] != FALSE && (n == 0 || lits[n - 1] != lit)) {
+                lits[n++] = lit;
+            }
+        }
+        originalClauses++;
+        if (n == 0) {
+            ok = false;
+        } else if (n == 1) {
+            assign(lits[0], null);
+            ok = propagate() == null;
+        } else {
+            attach(new Clause(Arrays.copyOf(lits, n), false));
+        }
+        return ok;
+    }
+
+    /**
+     * Searches for an assignment that makes all clauses true.
+     *
+     * @return true if there is one (see getValue), false if there is none, or
+     *         null if the search was cancelled or ran out of conflicts
+     */
+    public Boolean solve() {
+        model = null;
+        cancelled = false;
+        if (!ok) {
+            return false;
+        }
+        maxLearnts = Math.max(originalClauses / 3.0, 1000);
+        while (true) {
+            Boolean result = search(RESTART_UNIT * luby(restarts));
+            if (result != null) {
+                return result;
+            }
+            if (cancelled || (conflictLimit > 0 && conflicts >= conflictLimit)) {
+                return null;
+            }
+            restarts++;
+        }
+    }
+
+    // Searches until a result or until the conflict budget of this restart is used
+    private Boolean search(long budget) {
+        long conflictsHere = 0;
+        while (true) {
+            Clause conflict = propagate();
+            if (conflict != null) {
+                conflicts++;
+                conflictsHere++;
+                if (decisionLevel == 0) {
+                    ok = false;
+                    return false;
+                }
+                int[] learnt = analyze(conflict);
+                int lbd = blockDistance(learnt);
+                cancelUntil(backjumpLevel(learnt));
+                if (learnt.length == 1) {
+                    assign(learnt[0], null);
+                } else {
+                    Clause c = new Clause(learnt, true);
+                    c.lbd = lbd;
+                    learnts.add(c);
+                    attach(c);
+                    bumpClause(c);
+                    assign(learnt[0], c);
+                }
+                varIncrement /= VAR_DECAY;
+                clauseIncrement /= CLAUSE_DECAY;
+            } else {
+                if (conflictsHere >= budget || cancelled || (conflictLimit > 0 && conflicts >= conflictLimit)) {
+                    cancelUntil(0);
+                    return null;
+                }
+                if (learnts.size() >= maxLearnts + trailSize) {
+                    reduceLearnts();
+                }
+                int next = pickBranchLiteral();
+                if (next < 0) {
+                    model = new boolean[variables];
+                    for (int v = 0; v < variables; v++) {
+                        model[v] = value[2 * v] == TRUE;
+                    }
+                    cancelUntil(0);
+                    return true;
+                }
+                decisions++;
+                levelStart[decisionLevel++] = trailSize;
+                assign(next, null);
+            }
+        }
+    }
+
+    private void assign(int lit, Clause why) {
+        int v = lit >> 1;
+        value[lit] = TRUE;
+        value[lit ^ 1] = FALSE;
+        level[v] = decisionLevel;
+        reason[v] = why;
+        trail[trailSize++] = lit;
+    }
+
+    private void attach(Clause c) {
+        watch(c.lits[0], c);
+        watch(c.lits[1], c);
+    }
+
+    private void watch(int lit, Clause c) {
+        if (watchCount[lit] == watches[lit].length) {
+            watches[lit] = Arrays.copyOf(watches[lit], watchCount[lit] * 2);
+        }
+        watches[lit][watchCount[lit]++] = c;
+    }
+
+    /**
+     * Assigns everything the assigned literals imply.
+     *
+     * @return a clause with all literals false, or null
+     */
+    private Clause propagate() {
+        while (propagated < trailSize) {
+            int falseLit = trail[propagated++] ^ 1;
+            propagations++;
+            Clause[] list = watches[falseLit];
+            int count = watchCount[falseLit];
+            int i = 0;
+            int j = 0;
+            while (i < count) {
+                Clause c = list[i++];
+                if (c.deleted) {
+                    continue;
+                }
+                int[] lits = c.lits;
+                // keep the false watch in lits[1]
+                if (lits[0] == falseLit) {
+                    lits[0] = lits[1];
+                    lits[1] = falseLit;
+                }
+                if (value[lits[0]] == TRUE) {
+                    list[j++] = c;
+                    continue;
+                }
+                boolean moved = false;
+                for (int k = 2; k < lits.length; k++) {
+                    if (value[lits[k]] != FALSE) {
+                        lits[1] = lits[k];
+                        lits[k] = falseLit;
+                        watch(lits[1], c);
+                        moved = true;
+                        break;
+                    }
+                }
+                if (moved) {
+                    continue;
+                }
+                list[j++] = c;
+                if (value[lits[0]] == FALSE) {
+                    while (i < count) {
+                        list[j++] = list[i++];
+                    }
+                    watchCount[falseLit] = j;
+                    propagated = trailSize;
+                    return c;
+                }
+                assign(lits[0], c);
+            }
+            watchCount[falseLit] = j;
+        }
+        return null;
+    }
+
+    /**
+     * Walks back from a conflict to the first unique implication point.
+     *
+     * @return the learnt clause, the literal it asserts first
+     */
+    private int[] analyze(Clause conflict) {
+        int[] learnt = new int[decisionLevel + 1];
+        int size = 1;
+        int open = 0;
+        int lit = -1;
+        int index = trailSize - 1;
+        Clause c = conflict;
+        do {
+            if (c.learnt) {
+                bumpClause(c);
+            }
+            for (int k = lit < 0 ? 0 : 1; k < c.lits.length; k++) {
+                int q = c.lits[k];
+                int v = q >> 1;
+                if (!seen[v] && level[v] > 0) {
+                    seen[v] = true;
+                    bumpVariable(v);
+                    if (level[v] >= decisionLevel) {
+                        open++;
+                    } else {
+                        if (size == learnt.length) {
+                            learnt = Arrays.copyOf(learnt, size * 2);
+                        }
+                        learnt[size++] = q;
+                    }
+                }
+            }
+            while (!seen[trail[index] >> 1]) {
+                index--;
+            }
+            lit = trail[index--];
+            c = reason[lit >> 1];
+            seen[lit >> 1] = false;
+            open--;
+        } while (open > 0);
+        learnt[0] = lit ^ 1;
+
+        // drop literals whose reason only has literals of the clause
+        int[] all = Arrays.copyOf(learnt, size);
+        int kept = 1;
+        for (int i = 1; i < size; i++) {
+            Clause why = reason[learnt[i] >> 1];
+            boolean needed = why == null;
+            for (int k = 1; !needed && k < why.lits.length; k++) {
+                int v = why.lits[k] >> 1;
+                needed = !seen[v] && level[v] > 0;
+            }
+            if (needed) {
+                learnt[kept++] = learnt[i];
+            }
+        }
+        for (int i = 1; i < size; i++) {
+            seen[all[i] >> 1] = false;
+        }
+        return Arrays.copyOf(learnt, kept);
+    }
+
+    // Puts the literal of the highest level after the first one into lits[1]
+    private int backjumpLevel(int[] learnt) {
+        if (learnt.length == 1) {
+            return 0;
+        }
+        int best = 1;
+        for (int i = 2; i < learnt.length; i++) {
+            if (level[learnt[i] >> 1] > level[learnt[best] >> 1]) {
+                best = i;
+            }
+        }
+        int lit = learnt[best];
+        learnt[best] = learnt[1];
+        learnt[1] = lit;
+        return level[lit >> 1];
+    }
+
+    private int blockDistance(int[] lits) {
+        int count = 0;
+        boolean[] levels = new boolean[decisionLevel + 1];
+        for (int lit : lits) {
+            int l = level[lit >> 1];
+            if (!levels[l]) {
+                levels[l] = true;
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private void cancelUntil(int target) {
+        if (decisionLevel <= target) {
+            return;
+        }
+        for (int i = trailSize - 1; i >= levelStart[target]; i--) {
+            int lit = trail[i];
+            int v = lit >> 1;
+            phase[v] = (lit & 1) == 0;
+            value[lit] = 0;
+            value[lit ^ 1] = 0;
+            reason[v] = null;
+            if (heapPos[v] < 0) {
+                heapInsert(v);
+            }
+        }
+        trailSize = levelStart[target];
+        propagated = trailSize;
+        decisionLevel = target;
+    }
+
+    private int pickBranchLiteral() {
+        while (heapSize > 0) {
+            int v = heapRemoveMax();
+            if (value[2 * v] == 0) {
+                return 2 * v + (phase[v] ? 0 : 1);
+            }
+        }
+        return -1;
+    }
+
+    // Throws away the less useful half of the learnt clauses
+    private void reduceLearnts() {
+        learnts.sort((a, b) -> a.lbd != b.lbd ? Integer.compare(a.lbd, b.lbd)
+                : Double.compare(b.activity, a.activity));
+        int keep = learnts.size() / 2;
+        List<Clause> kept = new ArrayList<>();
+        for (int i = 0; i < learnts.size(); i++) {
+            Clause c = learnts.get(i);
+            boolean locked = reason[c.lits[0] >> 1] == c && value[c.lits[0]] == TRUE;
+            if (i < keep || c.lbd <= 2 || locked) {
+                kept.add(c);
+            } else {
+                c.deleted = true;
+            }
+        }
+        learnts.clear();
+        learnts.addAll(kept);
+        maxLearnts *= 1.1;
+    }
+
+    private void bumpVariable(int v) {
+        activity[v] += varIncrement;
+        if (activity[v] > 1e100) {
+            for (int u = 0; u < variables; u++) {
+                activity[u] *= 1e-100;
+            }
+            varIncrement *= 1e-100;
+        }
+        if (heapPos[v] >= 0) {
+            siftUp(heapPos[v]);
+        }
+    }
+
+    private void bumpClause(Clause c) {
+        c.activity += clauseIncrement;
+        if (c.activity > 1e20) {
+            for (Clause l : learnts) {
+                l.activity *= 1e-20;
+            }
+            clauseIncrement *= 1e-20;
+        }
+    }
+
+    private void heapInsert(int v) {
+        heap[heapSize] = v;
+        heapPos[v] = heapSize;
+        siftUp(heapSize++);
+    }
+
+    private int heapRemoveMax() {
+        int top = heap[0];
+        heapPos[top] = -1;
+        int last = heap[--heapSize];
+        if (heapSize > 0) {
+            heap[0] = last;
+            heapPos[last] = 0;
+            siftDown(0);
+        }
+        return top;
+    }
+
+    private void siftUp(int i) {
+        int v = heap[i];
+        while (i > 0) {
+            int parent = (i - 1) >> 1;
+            if (activity[heap[parent]] >= activity[v]) {
+                break;
+            }
+            heap[i] = heap[parent];
+            heapPos[heap[i]] = i;
+            i = parent;
+        }
+        heap[i] = v;
+        heapPos[v] = i;
+    }
+
+    private void siftDown(int i) {
+        int v = heap[i];
+        while (2 * i + 1 < heapSize) {
+            int child = 2 * i + 1;
+            if (child + 1 < heapSize && activity[heap[child + 1]] > activity[heap[child]]) {
+                child++;
+            }
+            if (activity[heap[child]] <= activity[v]) {
+                break;
+            }
+            heap[i] = heap[child];
+            heapPos[heap[i]] = i;
+            i = child;
+        }
+        heap[i] = v;
+        heapPos[v] = i;
+    }
+
+    // 1, 1, 2, 1, 1, 2, 4, 1, 1, 2, 1, 1, 2, 4, 8, ...
+    static long luby(int i) {
+        int size = 1;
+        int power = 0;
+        while (size < i + 1) {
+            power++;
+            size = 2 * size + 1;
+        }
+        while (size - 1 != i) {
+            size = (size - 1) >> 1;
+            power--;
+            i = i % size;
+        }
+        return 1L << power;
+    }
+
+    /**
+     * @return the value of a variable in the assignment found by the last
+     *         solve call that returned true
+     */
+    public boolean getValue(int variable) {
+        return model[variable - 1];
+    }
+
+    /**
+     * Stops a running solve call as soon as possible, it returns null then.
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    public int getVariableCount() {
+        return variables;
+    }
+
+    public long getConflicts() {
+        return conflicts;
+    }
+
+    public long getDecisions() {
+        return decisions;
+    }
+
+    public long getPropagations() {
+        return propagations;
+    }
+
+    public int getRestarts() {
+        return restarts;
+    }
+
+    /**
+     * Main function. Solves a DIMACS file and prints the result in the usual
+     * format of SAT solvers.
+     */
+    public static void main(String[] args) throws IOException {
+        long startTime = System.currentTimeMillis();
+        CnfFormula formula = CnfFormula.readDimacs(Paths.get(args[0]));
+        CdclSolver solver = formula.toSolver();
+        Boolean result = solver.solve();
+        System.out.println("c " + solver.getConflicts() + " conflicts, " + solver.getDecisions() + " decisions, "
+                + solver.getRestarts() + " restarts in " + (System.currentTimeMillis() - startTime) + " ms");
+        if (result == null) {
+            System.out.println("s UNKNOWN");
+        } else if (!result) {
+            System.out.println("s UNSATISFIABLE");
+        } else {
+            System.out.println("s SATISFIABLE");
+            StringBuilder line = new StringBuilder("v");
+            for (int v = 1; v <= solver.getVariableCount(); v++) {
+                line.append(' ').append(solver.getValue(v) ? v : -v);
+            }
+            System.out.println(line.append(" 0"));
+        }
+    }
+}
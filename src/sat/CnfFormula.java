@@ -0,0 +1,223 @@
+package sat;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A formula in conjunctive normal form: a list of clauses over variables
+ * numbered from 1, literals as in DIMACS (v or -v). Besides plain clauses it
+ * has the cardinality constraints the encoders need, and it can be written to
+ * and read from DIMACS files to compare with other solvers.
+ */
+public class CnfFormula {
+    // lists up to this long get all pairs for at most one, longer ones are
+    // split into groups of this size
+    private static final int GROUP_SIZE = 6;
+
+    private int variables;
+    private final List<int[]> clauses = new ArrayList<>();
+
+    public CnfFormula() {
+    }
+
+    /**
+     * @param variables number of variables used from the start
+     */
+    public CnfFormula(int variables) {
+        this.variables = variables;
+    }
+
+    /**
+     * @return a new variable
+     */
+    public int newVariable() {
+        return ++variables;
+    }
+
+    public void addClause(int... literals) {
+        for (int lit : literals) {
+            variables = Math.max(variables, Math.abs(lit));
+        }
+        clauses.add(literals);
+    }
+
+    /**
+     * At most one of the literals is true. Short lists get a clause for every
+     * pair. Longer ones are split into groups with a clause for every pair
+     * inside a group and a commander variable per group that every literal
+     * of the group implies, then at most one commander may be true. That
+     * keeps the number of clauses linear, and unlike a ladder a true literal
+     * reaches the others in a few steps, which propagates much faster.
+     */
+    public void atMostOne(int[] literals) {
+        int n = literals.length;
+        if (n <= GROUP_SIZE) {
+            for (int i = 0; i < n; i++) {
+                for (int j = i + 1; j < n; j++) {
+                    addClause(-literals[i], -literals[j]);
+                }
+            }
+            return;
+        }
+        int groups = (n + GROUP_SIZE - 1) / GROUP_SIZE;
+        int[] commanders = new int[groups];
+        for (int g = 0; g < groups; g++) {
+            int[] group = Arrays.copyOfRange(literals, g * GROUP_SIZE, Math.min(n, (g + 1) * GROUP_SIZE));
+            atMostOne(group);
+            commanders[g] = newVariable();
+            for (int lit : group) {
+                addClause(-lit, commanders[g]);
+            }
+        }
+        atMostOne(commanders);
+    }
+
+    /**
+     * At most k of the literals are true, with Sinz's sequential counter:
+     * helper variables s(i, j) are true if at least j of the first i + 1
+     * literals are.
+     */
+    public void atMostK(int[] literals, int k) {
+        int n = literals.length;
+        if (k >= n) {
+            return;
+        }
+        if (k <= 0) {
+            for (int lit : literals) {
+                addClause(-lit);
+            }
+            return;
+        }
+        if (k == 1) {
+            atMostOne(literals);
+            return;
+        }
+        int[] previous = new int[k + 1];
+        previous[1] = newVariable();
+        addClause(-literals[0], previous[1]);
+        for (int j = 2; j <= k; j++) {
+            previous[j] = newVariable();
+            addClause(-previous[j]);
+        }
+        for (int i = 1; i < n - 1; i++) {
+            int[] s = new int[k + 1];
+            for (int j = 1; j <= k; j++) {
+                s[j] = newVariable();
+                addClause(-previous[j], s[j]);
+            }
+            addClause(-literals[i], s[1]);
+            for (int j = 2; j <= k; j++) {
+                addClause(-literals[i], -previous[j - 1], s[j]);
+            }
+            addClause(-literals[i], -previous[k]);
+            previous = s;
+        }
+        addClause(-literals[n - 1], -previous[k]);
+    }
+
+    /**
+     * At least k of the literals are true, as at most n - k of them false.
+     */
+    public void atLeastK(int[] literals, int k) {
+        if (k <= 0) {
+            return;
+        }
+        if (k == 1) {
+            addClause(literals.clone());
+            return;
+        }
+        if (k > literals.length) {
+            addClause();
+            return;
+        }
+        int[] negated = new int[literals.length];
+        for (int i = 0; i < literals.length; i++) {
+            negated[i] = -literals[i];
+        }
+        atMostK(negated, literals.length - k);
+    }
+
+    public void exactlyK(int[] literals, int k) {
+        atMostK(literals, k);
+        atLeastK(literals, k);
+    }
+
+    public int getVariableCount() {
+        return variables;
+    }
+
+    public int getClauseCount() {
+        return clauses.size();
+    }
+
+    public List<int[]> getClauses() {
+        return clauses;
+    }
+
+    /**
+     * @return a solver with all clauses of the formula
+     */
+    public CdclSolver toSolver() {
+        CdclSolver solver = new CdclSolver(variables);
+        for (int[] clause : clauses) {
+            if (!solver.addClause(clause)) {
+                break;
+            }
+        }
+        return solver;
+    }
+
+    /**
+     * Writes the formula in the DIMACS CNF format that other SAT solvers read.
+     */
+    public void writeDimacs(Path file) throws IOException {
+        try (BufferedWriter out = Files.newBufferedWriter(file)) {
+            out.write("p cnf " + variables + " " + clauses.size() + "\n");
+            StringBuilder line = new StringBuilder();
+            for (int[] clause : clauses) {
+                line.setLength(0);
+                for (int lit : clause) {
+                    line.append(lit).append(' ');
+                }
+                out.write(line.append("0\n").toString());
+            }
+        }
+    }
+
+    /**
+     * Reads a DIMACS CNF file.
+     */
+    public static CnfFormula readDimacs(Path file) throws IOException {
+        CnfFormula formula = new CnfFormula();
+        List<Integer> clause = new ArrayList<>();
+        try (BufferedReader in = Files.newBufferedReader(file)) {
+            String line;
+            while ((line = in.readLine()) != null) {
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("c") || line.startsWith("%")) {
+                    continue;
+                }
+                if (line.startsWith("p")) {
+                    formula.variables = Integer.parseInt(line.split("\\s+")[2]);
+                    continue;
+                }
+                for (String token : line.split("\\s+")) {
+                    int lit = Integer.parseInt(token);
+                    if (lit == 0) {
+                        formula.addClause(clause.stream().mapToInt(i -> i).toArray());
+                        clause.clear();
+                    } else {
+                        clause.add(lit);
+                    }
+                }
+            }
+        }
+        return formula;
+    }
+}
@@ -0,0 +1,92 @@
+package sat;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import common.UI;
+import search.PlacementIndex;
+
+/**
+ * Search engine that encodes the board with TilingEncoder and hands it to
+ * the CdclSolver. Used like the backtracking searches: set the board size and
+ * the pieces, then call search.
+ *
+ * Backtracking has to walk the whole tree to show that pieces do not fit,
+ * clause learning often proves that much faster, so this engine is meant for
+ * instances that are probably unsatisfiable.
+ */
+public class SatSearch {
+
+    public int horiGridSize;
+    public int vertGridSize;
+    public char[] input;
+    // also write the formula to this DIMACS file, null for none
+    public Path dimacsFile;
+    // give up after this many conflicts, 0 for no limit
+    public long conflictLimit;
+
+    // Create the UI object
+    public UI ui;
+
+    // the tiling found by the last search, null if there was none
+    private int[][] solution;
+
+    public void search() {
+        long startTime = System.currentTimeMillis();
+        PlacementIndex index = PlacementIndex.forPentominoes(horiGridSize, vertGridSize, input);
+        TilingEncoder encoder = new TilingEncoder(index);
+        if (dimacsFile != null) {
+            try {
+                encoder.formula.writeDimacs(dimacsFile);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        CdclSolver solver = encoder.formula.toSolver();
+        solver.conflictLimit = conflictLimit;
+        Boolean result = solver.solve();
+        long endTime = System.currentTimeMillis();
+
+        solution = Boolean.TRUE.equals(result) ? encoder.decode(solver) : null;
+        if (solution != null) {
+            System.out.println("Solution found");
+            if (ui != null) {
+                ui.setState(solution);
+            }
+        } else if (result == null) {
+            System.out.println("Gave up after " + solver.getConflicts() + " conflicts");
+        } else {
+            System.out.println("No solution found");
+        }
+        System.out.println(encoder.formula.getVariableCount() + " variables, " + encoder.formula.getClauseCount()
+                + " clauses, " + solver.getConflicts() + " conflicts, " + solver.getRestarts() + " restarts");
+        System.out.println("Search took " + (endTime - startTime) + " ms");
+    }
+
+    /**
+     * @return the tiling found by the last search as field[x][y] piece IDs,
+     *         -1 for empty cells, or null if none was found
+     */
+    public int[][] getSolution() {
+        return solution;
+    }
+
+    /**
+     * Main function. Arguments: board size and pieces, e.g. 6 10 XIZTUVWYLPNF,
+     * and optionally a file to write the formula to in DIMACS format.
+     */
+    public static void main(String[] args) {
+        SatSearch search = new SatSearch();
+        search.horiGridSize = args.length > 1 ? Integer.parseInt(args[0]) : 6;
+        search.vertGridSize = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+        search.input = (args.length > 2 ? args[2] : "XIZTUVWYLPNF").toUpperCase().toCharArray();
+        if (args.length > 3) {
+            search.dimacsFile = Paths.get(args[3]);
+        }
+        search.ui = new UI(search.horiGridSize, search.vertGridSize, 50);
+        System.out.println("Starting search...");
+        search.search();
+    }
+}
@@ -0,0 +1,79 @@
+package sat;
+
+import java.util.Arrays;
+
+import search.PlacementIndex;
+
+/**
+ * Turns a tiling problem into CNF. Placement p of the PlacementIndex is
+ * variable p + 1, true if the piece lies there.
+ *
+ * - Every cell is covered at most once, and at least once when the pieces
+ * exactly fill the board.
+ * - Every type is used exactly as often as there are pieces of it, exactly
+ * one placement for a single piece.
+ *
+ * The helper variables of the cardinality constraints come after the
+ * placement variables.
+ */
+public class TilingEncoder {
+    public final PlacementIndex index;
+    public final CnfFormula formula;
+    // true if the pieces cover the board exactly, otherwise cells may stay empty
+    public final boolean exactFill;
+
+    public TilingEncoder(PlacementIndex index) {
+        this.index = index;
+        formula = new CnfFormula(index.placementCount());
+        int area = 0;
+        for (int t = 0; t < index.typeIDs.length; t++) {
+            area += index.typeCount[t] * index.area(t);
+        }
+        exactFill = area == index.rows * index.cols;
+        if (area > index.rows * index.cols) {
+            // can never fit, the empty clause says so
+            formula.addClause();
+        }
+        for (int c = 0; c < index.rows * index.cols; c++) {
+            int[] lits = variables(index.cellPlacements[c]);
+            if (exactFill) {
+                formula.addClause(lits);
+            }
+            formula.atMostOne(lits);
+        }
+        for (int t = 0; t < index.typeIDs.length; t++) {
+            formula.exactlyK(variables(index.typePlacements[t]), index.typeCount[t]);
+        }
+    }
+
+    public static int variable(int placement) {
+        return placement + 1;
+    }
+
+    private static int[] variables(int[] placements) {
+        int[] lits = new int[placements.length];
+        for (int i = 0; i < placements.length; i++) {
+            lits[i] = variable(placements[i]);
+        }
+        return lits;
+    }
+
+    /**
+     * @return the field of the tiling the solver found, field[x][y] the
+     *         piece ID or -1 for an empty cell
+     */
+    public int[][] decode(CdclSolver solver) {
+        int[][] field = new int[index.rows][index.cols];
+        for (int[] row : field) {
+            Arrays.fill(row, -1);
+        }
+        for (int p = 0; p < index.placementCount(); p++) {
+            if (solver.getValue(variable(p))) {
+                for (int c : index.placementCells[p]) {
+                    field[c / index.cols][c % index.cols] = index.typeIDs[index.placementType[p]];
+                }
+            }
+        }
+        return field;
+    }
+}
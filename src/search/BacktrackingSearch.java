@@ -5,6 +5,10 @@ package search;
  * @version 2022.0
  */
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Scanner;
 
@@ -18,7 +22,16 @@ public class BacktrackingSearch {
 	public static final int horizontalGridSize = 5;
 	public static final int verticalGridSize = 3;
 
-	public static boolean[][][][] bigmemo;
+	// Board states that are known to have no solution, with the next input
+	// index as the remaining pieces. 2^tableSizeLog2 buckets
+	public static TranspositionTable table;
+	public static int tableSizeLog2 = 16;
+	// Loaded before and saved after the search if not null
+	public static Path tableFile;
+
+	// Zobrist hash of the occupied cells and the number of search nodes
+	private static long hash;
+	private static long nodes;
 
 	// public static final char[] input = { 'W', 'Y', 'I', 'T', 'Z', 'L', 'N', 'F',
 	// 'P', 'V'};
@@ -37,18 +50,23 @@ public class BacktrackingSearch {
 	public static void search() {
 		getUserInput();
 
-		boolean[][][][] memoTable = new boolean[12][12][12][12];
-		// Initialize the memoization table with false values (not solved)
-		for (int i = 0; i < 12; i++) {
-			for (int j = 0; j < 12; j++) {
-				for (int k = 0; k < 12; k++) {
-					for (int l = 0; l < 12; l++) {
-						memoTable[i][j][k][l] = false;
-					}
+		long problemKey = horizontalGridSize * 31L + verticalGridSize;
+		for (char c : input) {
+			problemKey = problemKey * 31 + c;
+		}
+		table = new TranspositionTable(horizontalGridSize * verticalGridSize, input.size(), 0, tableSizeLog2,
+				problemKey);
+		if (tableFile != null && Files.exists(tableFile)) {
+			try {
+				if (table.load(tableFile)) {
+					System.out.println("Loaded known states from " + tableFile);
 				}
+			} catch (IOException e) {
+				System.out.println("Could not read " + tableFile + ": " + e.getMessage());
 			}
 		}
-		bigmemo = memoTable;
+		hash = 0;
+		nodes = 0;
 		// Initialize an empty board
 		int[][] field = new int[horizontalGridSize][verticalGridSize];
 
@@ -62,6 +80,14 @@ public class BacktrackingSearch {
 		// Start the basic search
 		// basicSearch(field);
 		recursiveSearch(field, 0);
+		table.printStatistics();
+		if (tableFile != null) {
+			try {
+				table.save(tableFile);
+			} catch (IOException e) {
+				System.out.println("Could not write " + tableFile + ": " + e.getMessage());
+			}
+		}
 	}
 
 	/*
@@ -70,8 +96,9 @@ public class BacktrackingSearch {
 	 * to explore all the possible configurations. It takes the game grid and the
 	 * index of the pentominoe as parameters, returns "true" if a solution has been
 	 * found
-	 * and "false" otherwise. It uses the memoization table to keep track of states
-	 * that have already been solved to avoid redundant work. When a dead end is
+	 * and "false" otherwise. It uses the transposition table to keep track of
+	 * states (occupied cells and next pentomino) that have already been searched
+	 * without a solution, so they are never searched again. When a dead end is
 	 * reached,
 	 * it backtracks and continues to explore other possibilities.
 	 */
@@ -97,6 +124,10 @@ public class BacktrackingSearch {
 			return true; // If a solution has been found, the UI is updated accordingly and the method
 							// returns "true".
 		}
+		long state = hash ^ table.pieceKey(inputIndex, 0); // The occupied cells and the next pentominoe.
+		if (table.isFailure(state))
+			return false; // This state has been searched before and has no solution.
+		long startNodes = nodes++;
 		int pentID = characterToID(input.get(inputIndex)); // Retrieves the ID of a pentominoe.
 		int mutation = PentominoDatabase.data[pentID].length; // Retrieves the amount of possible mutations of a
 																// pentominoe.
@@ -107,12 +138,9 @@ public class BacktrackingSearch {
 				for (int k = 0; k < field[j].length; k++) {
 					if (canPlace(field, piece, j, k)) { // Calls the canPlace method to check if a piece can be placed
 														// in a given position
-						if (isSolved(pentID, mutation, j, k))
-							return true; // Calls the isSolved method to check if a state has been memoized, and returns
-											// "true" if it has.
 						addPiece(field, piece, pentID, j, k); // Calls the addPiece method to add a pentominoe to the
 																// grid.
-						memoize(pentID, i, j, k, true); // Memoizes the state as solved.
+						hash ^= pieceHash(piece, j, k); // Adds the covered cells to the hash of the state.
 						ui.setState(field); // Updates the UI.
 						if (recursiveSearch(field, inputIndex + 1)) {
 							return true; /*
@@ -122,22 +150,29 @@ public class BacktrackingSearch {
 						}
 						removePiece(field, piece, j, k); // If the recursive call doesn't return "true", the pentominoe
 															// is removed from the grid.
+						hash ^= pieceHash(piece, j, k);
 					}
 				}
 			}
 		}
+		table.storeFailure(state, nodes - startNodes); // Remembers that this state has no solution.
 		return false; // If no placement for the pentominoe is found and the state does not lead to a
 						// solution, the method returns "false".
 	}
 
-	public static boolean isSolved(int pentID, int mutation, int row, int col) {
-		// Check if a state has been memoized (solved)
-		return bigmemo[pentID][mutation][row][col];
-	}
-
-	public static void memoize(int pentID, int mutation, int row, int col, boolean solved) {
-		// Store the result of solving a state in the memoization table
-		bigmemo[pentID][mutation][row][col] = solved;
+	/**
+	 * @return the XOR of the Zobrist keys of the cells the piece covers
+	 */
+	private static long pieceHash(int[][] piece, int row, int col) {
+		long result = 0;
+		for (int i = 0; i < piece.length; i++) {
+			for (int j = 0; j < piece[i].length; j++) {
+				if (piece[i][j] == 1) {
+					result ^= table.cellKey((row + i) * verticalGridSize + col + j);
+				}
+			}
+		}
+		return result;
 	}
 
 	public static void getUserInput() {
@@ -267,9 +302,14 @@ public class BacktrackingSearch {
 	}
 
 	/**
-	 * Main function. Needs to be executed to start the basic search algorithm
+	 * Main function. Needs to be executed to start the basic search algorithm.
+	 * An optional argument names the file that keeps the known states between
+	 * runs
 	 */
 	public static void main(String[] args) {
+		if (args.length > 0) {
+			tableFile = Paths.get(args[0]);
+		}
 		search();
 	}
 }
@@ -8,12 +8,16 @@ package search;
 import java.util.Random;
 
 import common.UI;
-import pentominoes.PentominoDatabase;
 
 /**
  * This class includes the methods to support the search of a solution.
  */
 public class BasicSearch {
+    // results of one attempt
+    private static final int FOUND = 0;
+    private static final int FAILED = 1;
+    private static final int OUT_OF_NODES = 2;
+
     public int horizontalGridSize;
     public int verticalGridSize;
     public UI ui;
@@ -21,6 +25,21 @@ public class BasicSearch {
     // public static final char[] input = { 'W', 'Y', 'I', 'T', 'Z', 'L', 'N', 'F',
     // 'P', 'V'};
     public char[] input = { 'P', 'T', 'X', 'U', 'L', 'V', 'N', 'W', 'Z', 'F', 'Y', 'I' };
+    // Same seed, same board and same input give the same solution
+    public long seed = new Random().nextLong();
+    // Search nodes per unit of the Luby sequence
+    public long restartBase = 100;
+    // Give up after this many restarts, -1 to keep going until a solution
+    public int maxRestarts = -1;
+    // Pieces fixed in place and blocked cells, null for none. The fixed pieces
+    // have to be part of input, the search places the others.
+    public Preplacement preplacement;
+
+    private int[][] solution;
+    private int restarts;
+    private long nodes;
+    // nodes left in the running attempt
+    private long nodeBudget;
 
     /**
      * Helper function which starts a basic search algorithm
@@ -36,130 +55,190 @@ public class BasicSearch {
                 field[i][j] = -1;
             }
         }
+        // start from the board with the fixed pieces and blocked cells filled in
+        if (preplacement != null) {
+            field = preplacement.field();
+        }
         // Start the basic search
         basicSearch(field);
     }
 
     /**
-     * Get as input the character representation of a pentomino and translate it
-     * into its corresponding numerical value (ID)
+     * Randomized search with restarts. Every attempt is a backtracking search
+     * that fills the empty cell with the fewest possible placements first and
+     * tries the placements covering it in a random order. An attempt gives up
+     * after a number of search nodes given by the Luby sequence (1, 1, 2, 1,
+     * 1, 2, 4, 1, ...) times restartBase, and the next attempt starts over
+     * with other random choices. A search that got stuck in a bad part of the
+     * tree is abandoned soon, and because the limits keep growing, a board
+     * with a solution is always solved in the end.
+     * 
+     * The pieces do not all have to be used, the board has to be filled.
      * 
-     * @param character a character representating a pentomino
-     * @return the corresponding ID (numerical value)
+     * @param field a matrix representing the board to be fulfilled with pentominoes
      */
-    private static int characterToID(char character) {
-        int pentID = -1;
-        if (character == 'X') {
-            pentID = 0;
-        } else if (character == 'I') {
-            pentID = 1;
-        } else if (character == 'Z') {
-            pentID = 2;
-        } else if (character == 'T') {
-            pentID = 3;
-        } else if (character == 'U') {
-            pentID = 4;
-        } else if (character == 'V') {
-            pentID = 5;
-        } else if (character == 'W') {
-            pentID = 6;
-        } else if (character == 'Y') {
-            pentID = 7;
-        } else if (character == 'L') {
-            pentID = 8;
-        } else if (character == 'P') {
-            pentID = 9;
-        } else if (character == 'N') {
-            pentID = 10;
-        } else if (character == 'F') {
-            pentID = 11;
+    private void basicSearch(int[][] field) {
+        Random random = new Random(seed);
+        char[] pieces = preplacement != null ? preplacement.remainingPieces(input) : input;
+        PlacementIndex index = PlacementIndex.forPentominoes(horizontalGridSize, verticalGridSize, pieces);
+        long startTime = System.currentTimeMillis();
+        solution = null;
+        restarts = 0;
+        nodes = 0;
+
+        for (int attempt = 1; maxRestarts < 0 || restarts <= maxRestarts; attempt++) {
+            PlacementState state = new PlacementState(index);
+            if (preplacement != null) {
+                preplacement.fill(state);
+            }
+            nodeBudget = luby(attempt) * restartBase;
+            Random attemptRandom = new Random(random.nextLong());
+            int result = randomSearch(field, state, attemptRandom);
+            if (result == FOUND) {
+                solution = field;
+                long endTime = System.currentTimeMillis();
+                // display the field
+                if (ui != null) {
+                    ui.setState(field);
+                }
+                System.out.println("Solution found after " + restarts + " restarts and " + nodes + " nodes in "
+                        + (endTime - startTime) + " ms (seed " + seed + ")");
+                return;
+            }
+            if (result == FAILED) {
+                // the whole tree was searched within the limit
+                break;
+            }
+            restarts++;
         }
-        return pentID;
+        System.out.println("No solution found after " + restarts + " restarts and " + nodes + " nodes");
     }
 
     /**
-     * Basic implementation of a search algorithm. It is not a bruto force
-     * algorithms (it does not check all the posssible combinations)
-     * but randomly takes possible combinations and positions to find a possible
-     * solution.
-     * The solution is not necessarily the most efficient one
-     * This algorithm can be very time-consuming
+     * One attempt of the randomized backtracking search.
      * 
-     * @param field a matrix representing the board to be fulfilled with pentominoes
+     * @return FOUND when the field is filled, FAILED when this part of the
+     *         tree has no solution, OUT_OF_NODES when the attempt ran out of
+     *         search nodes
      */
-    private void basicSearch(int[][] field) {
-        Random random = new Random();
-        boolean solutionFound = false;
+    private int randomSearch(int[][] field, PlacementState state, Random random) {
+        if (state.getEmptyCells() == 0) {
+            return FOUND;
+        }
+        if (nodeBudget-- <= 0) {
+            return OUT_OF_NODES;
+        }
+        nodes++;
+        PlacementIndex index = state.index;
 
-        while (!solutionFound) {
-            solutionFound = true;
+        // the empty cell with the fewest placements, ties are broken at random
+        int cell = -1;
+        int best = Integer.MAX_VALUE;
+        int ties = 0;
+        for (int c = 0; c < horizontalGridSize * verticalGridSize; c++) {
+            if (state.isFilled(c)) {
+                continue;
+            }
+            int options = state.getCellOptions(c);
+            if (options < best) {
+                best = options;
+                cell = c;
+                ties = 1;
+            } else if (options == best && random.nextInt(++ties) == 0) {
+                cell = c;
+            }
+        }
+        if (best == 0) {
+            return FAILED;
+        }
 
-            // Empty board again to find a solution
-            for (int i = 0; i < field.length; i++) {
-                for (int j = 0; j < field[i].length; j++) {
-                    field[i][j] = -1;
-                }
+        int[] options = new int[best];
+        int count = 0;
+        for (int p : index.cellPlacements[cell]) {
+            if (state.isPossible(p)) {
+                options[count++] = p;
             }
+        }
+        boolean outOfNodes = false;
+        for (int i = 0; i < count; i++) {
+            // pick one of the placements that were not tried yet
+            int j = i + random.nextInt(count - i);
+            int p = options[j];
+            options[j] = options[i];
 
-            // Put all pentominoes with random rotation/flipping on a random position on the
-            // board
-            for (int i = 0; i < input.length; i++) {
-
-                // Choose a pentomino and randomly rotate/flip it
-                int pentID = characterToID(input[i]);
-                int mutation = random.nextInt(PentominoDatabase.data[pentID].length);
-                int[][] pieceToPlace = PentominoDatabase.data[pentID][mutation];
-
-                // Randomly generate a position to put the pentomino on the board
-                int x;
-                int y;
-                if (horizontalGridSize < pieceToPlace.length) {
-                    // this particular rotation of the piece is too long for the field
-                    x = -1;
-                } else if (horizontalGridSize == pieceToPlace.length) {
-                    // this particular rotation of the piece fits perfectly into the width of the
-                    // field
-                    x = 0;
-                } else {
-                    // there are multiple possibilities where to place the piece without leaving the
-                    // field
-                    x = random.nextInt(horizontalGridSize - pieceToPlace.length + 1);
-                }
+            int type = index.placementType[p];
+            int[][] pieceToPlace = index.typeMutations[type][index.placementMutation[p]];
+            int x = index.placementX[p];
+            int y = index.placementY[p];
+            state.place(p);
+            addPiece(field, pieceToPlace, index.typeIDs[type], x, y);
 
-                if (verticalGridSize < pieceToPlace[0].length) {
-                    // this particular rotation of the piece is too high for the field
-                    y = -1;
-                } else if (verticalGridSize == pieceToPlace[0].length) {
-                    // this particular rotation of the piece fits perfectly into the height of the
-                    // field
-                    y = 0;
-                } else {
-                    // there are multiple possibilities where to place the piece without leaving the
-                    // field
-                    y = random.nextInt(verticalGridSize - pieceToPlace[0].length + 1);
-                }
+            int result = randomSearch(field, state, random);
+            if (result == FOUND) {
+                return FOUND;
+            }
+            removePiece(field, pieceToPlace, x, y);
+            state.unplace(p);
+            if (result == OUT_OF_NODES) {
+                outOfNodes = true;
+                break;
+            }
+        }
+        return outOfNodes ? OUT_OF_NODES : FAILED;
+    }
 
-                // If there is a possibility to place the piece on the field, do it
-                if (x >= 0 && y >= 0) {
-                    addPiece(field, pieceToPlace, pentID, x, y);
-                }
+    /**
+     * @param i position in the sequence, from 1
+     * @return the i-th element of the Luby sequence 1, 1, 2, 1, 1, 2, 4, 1, ...
+     */
+    static long luby(int i) {
+        int k = 1;
+        while ((1L << k) - 1 < i) {
+            k++;
+        }
+        while (true) {
+            if (i == (1L << k) - 1) {
+                return 1L << (k - 1);
             }
-            // Check whether complete field is filled
-
-            // draft 1
-            for (int i = 0; i < field.length; i++) {
-                for (int j = 0; j < field[i].length; j++) {
-                    if (field[i][j] == -1) {
-                        solutionFound = false;
-                    }
-                }
+            // i lies in the repeated first half of the sequence up to 2^k - 1
+            i -= (1 << (k - 1)) - 1;
+            k = 1;
+            while ((1L << k) - 1 < i) {
+                k++;
             }
+        }
+    }
 
-            if (solutionFound) {
-                // display the field
-                ui.setState(field);
-                System.out.println("Solution found");
-                break;
+    /**
+     * @return the field of the last search, or null if it found no solution
+     */
+    public int[][] getSolution() {
+        return solution;
+    }
+
+    /**
+     * @return the number of restarts of the last search
+     */
+    public int getRestarts() {
+        return restarts;
+    }
+
+    /**
+     * @return the number of search nodes of the last search, over all attempts
+     */
+    public long getNodeCount() {
+        return nodes;
+    }
+
+    /**
+     * Removes a pentomino from the field again
+     */
+    private static void removePiece(int[][] field, int[][] piece, int x, int y) {
+        for (int i = 0; i < piece.length; i++) {
+            for (int j = 0; j < piece[i].length; j++) {
+                if (piece[i][j] == 1) {
+                    field[x + i][y + j] = -1;
+                }
             }
         }
     }
@@ -190,12 +269,16 @@ public class BasicSearch {
     }
 
     /**
-     * Main function. Needs to be executed to start the basic search algorithm
+     * Main function. Needs to be executed to start the basic search algorithm,
+     * an optional argument is the seed
      */
     public static void main(String[] args) {
         BasicSearch search = new BasicSearch();
         search.horizontalGridSize = 5;
         search.verticalGridSize = 6;
+        if (args.length > 0) {
+            search.seed = Long.parseLong(args[0]);
+        }
         // Static UI class to display the board
         search.ui = new UI(search.horizontalGridSize, search.verticalGridSize, 50);
         search.search();
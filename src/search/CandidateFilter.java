@@ -0,0 +1,198 @@
+package search;
+
+import java.util.Arrays;
+
+/**
+ * Finds all pieces that fit on the first empty cell of the board (the anchor)
+ * in one pass over a table of bit masks, instead of a canPlace call per
+ * mutation.
+ *
+ * The board is kept as one long per row x, with bit y + 4 set for a filled
+ * cell. The 4 bits below the board and all bits above it are set, as are the
+ * rows below the board, so pieces never need a bounds check. The 9x5 cells
+ * around an anchor (4 columns to each side, 4 rows down) fit into a single
+ * long, the window, with 9 bits per row. Every mutation of every type,
+ * anchored at its first cell, is a mask in the same layout, and it fits
+ * exactly when mask & window == 0.
+ *
+ * This class tests the masks one by one. If the jdk.incubator.vector module
+ * is present and the src-vector source root was compiled, create returns a
+ * VectorCandidateFilter that tests a whole vector of masks at once. For the
+ * 63 pentomino mutations that made the searches of CandidateFilterBenchmark
+ * 10 to 40 percent faster on an AVX-512 machine; most of the gain over
+ * canPlace comes from the masks themselves.
+ */
+public class CandidateFilter {
+    // columns to the left of the anchor in the window
+    static final int MARGIN = 4;
+    static final int WINDOW_WIDTH = 9;
+    static final int WINDOW_ROWS = 5;
+    private static final long WINDOW_ROW = (1L << WINDOW_WIDTH) - 1;
+    // the widest board whose rows fit into a long with the margins
+    public static final int MAX_COLS = 64 - 2 * MARGIN;
+
+    // number of candidates, the type of each and its mask
+    public final int size;
+    public final int[] candidateType;
+    public final long[] candidateMask;
+    // number of longs of a bit set with one bit per candidate
+    public final int words;
+    // the masks tested, all bits set for types that are used up. The length is
+    // a multiple of 8 so vector passes need no tail.
+    protected final long[] active;
+    private final int[] typeStart;
+    private final long[] scratch;
+
+    /**
+     * @param shapes  mutations of every piece ID, e.g. PentominoDatabase.data
+     * @param typeIDs the piece IDs of the types, each once
+     */
+    public CandidateFilter(int[][][][] shapes, int[] typeIDs) {
+        int total = 0;
+        int[][][][] anchored = new int[typeIDs.length][][][];
+        for (int t = 0; t < typeIDs.length; t++) {
+            anchored[t] = Pieces.anchoredMutations(shapes[typeIDs[t]]);
+            total += anchored[t].length;
+        }
+        size = total;
+        words = (size + 63) / 64;
+        scratch = new long[words];
+        candidateType = new int[size];
+        candidateMask = new long[size];
+        active = new long[(size + 7) / 8 * 8];
+        Arrays.fill(active, -1L);
+        typeStart = new int[typeIDs.length + 1];
+        int i = 0;
+        for (int t = 0; t < typeIDs.length; t++) {
+            typeStart[t] = i;
+            for (int[][] mutation : anchored[t]) {
+                long mask = 0;
+                for (int[] cell : mutation) {
+                    if (cell[0] >= WINDOW_ROWS || Math.abs(cell[1]) > MARGIN) {
+                        throw new IllegalArgumentException("Pieces have to fit into 5x5 cells");
+                    }
+                    mask |= 1L << (cell[0] * WINDOW_WIDTH + MARGIN + cell[1]);
+                }
+                candidateType[i] = t;
+                candidateMask[i] = mask;
+                active[i] = mask;
+                i++;
+            }
+        }
+        typeStart[typeIDs.length] = size;
+    }
+
+    /**
+     * @return the vector filter if the jdk.incubator.vector module was added
+     *         to the JVM (--add-modules jdk.incubator.vector), otherwise this
+     *         scalar one
+     */
+    public static CandidateFilter create(int[][][][] shapes, int[] typeIDs) {
+        if (ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent()) {
+            try {
+                return (CandidateFilter) Class.forName("search.VectorCandidateFilter")
+                        .getConstructor(int[][][][].class, int[].class).newInstance(shapes, typeIDs);
+            } catch (ReflectiveOperationException | LinkageError e) {
+                // fall back to the scalar filter
+            }
+        }
+        return new CandidateFilter(shapes, typeIDs);
+    }
+
+    /**
+     * Switches the candidates of a type off once all its pieces are placed,
+     * and on again.
+     */
+    public void setAvailable(int type, boolean available) {
+        for (int i = typeStart[type]; i < typeStart[type + 1]; i++) {
+            active[i] = available ? candidateMask[i] : -1L;
+        }
+    }
+
+    /**
+     * Finds the candidates that fit into a window, as a bit set: candidate i
+     * fits if bit i % 64 of fits[i / 64] is set. Without branches per
+     * candidate this is much faster than building a list.
+     *
+     * @param window the cells around the anchor, see window
+     * @param fits   receives the bit set, at least words long
+     */
+    public void fits(long window, long[] fits) {
+        for (int w = 0; w < words; w++) {
+            long bits = 0;
+            int base = w * 64;
+            int end = Math.min(size - base, 64);
+            for (int i = 0; i < end; i++) {
+                bits |= ((active[base + i] & window) == 0 ? 1L : 0L) << i;
+            }
+            fits[w] = bits;
+        }
+    }
+
+    /**
+     * Lists the candidates that fit into a window.
+     *
+     * @param window the cells around the anchor, see window
+     * @param out    receives the candidate numbers, at least size long
+     * @return the number of candidates written to out
+     */
+    public int filter(long window, int[] out) {
+        fits(window, scratch);
+        int count = 0;
+        for (int w = 0; w < words; w++) {
+            for (long bits = scratch[w]; bits != 0; bits &= bits - 1) {
+                out[count++] = w * 64 + Long.numberOfTrailingZeros(bits);
+            }
+        }
+        return count;
+    }
+
+    /**
+     * @return the bits of the last word of a fits bit set that belong to
+     *         candidates
+     */
+    protected long lastWordMask() {
+        int used = size - (words - 1) * 64;
+        return used == 64 ? -1L : (1L << used) - 1;
+    }
+
+    /**
+     * @return the rows of an empty board in the layout described above
+     */
+    public static long[] emptyBoard(int rows, int cols) {
+        if (cols > MAX_COLS) {
+            throw new IllegalArgumentException("Boards can be at most " + MAX_COLS + " cells wide");
+        }
+        long[] board = new long[rows + WINDOW_ROWS - 1];
+        long outside = ~(((1L << cols) - 1) << MARGIN);
+        for (int x = 0; x < board.length; x++) {
+            board[x] = x < rows ? outside : -1L;
+        }
+        return board;
+    }
+
+    /**
+     * @return the 9x5 cells with the anchor (x, y) in the fifth column of the
+     *         first row
+     */
+    public static long window(long[] board, int x, int y) {
+        long window = 0;
+        for (int r = 0; r < WINDOW_ROWS; r++) {
+            window |= (board[x + r] >>> y & WINDOW_ROW) << (r * WINDOW_WIDTH);
+        }
+        return window;
+    }
+
+    /**
+     * Fills or empties the cells of a candidate mask anchored at (x, y).
+     */
+    public static void toggle(long[] board, long mask, int x, int y) {
+        for (int r = 0; r < WINDOW_ROWS; r++) {
+            board[x + r] ^= (mask >>> (r * WINDOW_WIDTH) & WINDOW_ROW) << y;
+        }
+    }
+
+    public static boolean isFilled(long[] board, int x, int y) {
+        return (board[x] >>> (y + MARGIN) & 1) != 0;
+    }
+}
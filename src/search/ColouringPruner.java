@@ -0,0 +1,180 @@
+package search;
+
+import java.util.Arrays;
+
+/**
+ * Prunes with a colouring of the board. Every placement of a piece covers a
+ * number of cells of every colour, e.g. on a checkerboard the X always covers
+ * 1 or 4 black cells and the other pentominoes 2 or 3. So the remaining
+ * pieces together cover at least the sum of their minimums and at most the
+ * sum of their maximums of every colour. If the empty cells of a colour are
+ * outside that range the board can not be filled.
+ * 
+ * The empty cells and the sums per colour are updated on every place and
+ * remove, so a check costs one comparison per colour.
+ */
+public class ColouringPruner implements Pruner {
+    private final int colours;
+    private final int[] cellColour;
+    // fewest and most cells of every colour a piece ID can cover on this board
+    private final int[][] minCover;
+    private final int[][] maxCover;
+
+    private final int[] emptyOfColour;
+    private final int[] sumMin;
+    private final int[] sumMax;
+    private int emptyCells;
+    private int remainingArea;
+
+    /**
+     * @param rows       size of the field in x
+     * @param cols       size of the field in y
+     * @param cellColour colour of every cell (x * cols + y), from 0 to colours - 1
+     * @param colours    number of colours
+     * @param shapes     mutations of every piece ID, e.g. PentominoDatabase.data
+     * @param pieceIDs   ID of every piece that still has to be placed
+     */
+    public ColouringPruner(int rows, int cols, int[] cellColour, int colours, int[][][][] shapes, int[] pieceIDs) {
+        this.colours = colours;
+        this.cellColour = cellColour;
+        minCover = new int[shapes.length][];
+        maxCover = new int[shapes.length][];
+        emptyOfColour = new int[colours];
+        sumMin = new int[colours];
+        sumMax = new int[colours];
+
+        for (int colour : cellColour) {
+            emptyOfColour[colour]++;
+        }
+        emptyCells = cellColour.length;
+
+        for (int id : pieceIDs) {
+            if (minCover[id] == null) {
+                computeCover(rows, cols, shapes, id);
+            }
+            for (int k = 0; k < colours; k++) {
+                sumMin[k] += minCover[id][k];
+                sumMax[k] += maxCover[id][k];
+            }
+            for (int[] row : shapes[id][0]) {
+                for (int value : row) {
+                    remainingArea += value;
+                }
+            }
+        }
+    }
+
+    // Tries every mutation at every position to find the range per colour
+    private void computeCover(int rows, int cols, int[][][][] shapes, int id) {
+        int[] min = new int[colours];
+        int[] max = new int[colours];
+        Arrays.fill(min, Integer.MAX_VALUE);
+        int[] count = new int[colours];
+        boolean any = false;
+        for (int[][] piece : shapes[id]) {
+            for (int x = 0; x + piece.length <= rows; x++) {
+                for (int y = 0; y + piece[0].length <= cols; y++) {
+                    Arrays.fill(count, 0);
+                    for (int i = 0; i < piece.length; i++) {
+                        for (int j = 0; j < piece[i].length; j++) {
+                            if (piece[i][j] == 1) {
+                                count[cellColour[(x + i) * cols + y + j]]++;
+                            }
+                        }
+                    }
+                    for (int k = 0; k < colours; k++) {
+                        min[k] = Math.min(min[k], count[k]);
+                        max[k] = Math.max(max[k], count[k]);
+                    }
+                    any = true;
+                }
+            }
+        }
+        if (!any) {
+            // the piece does not fit anywhere, no number of cells is enough
+            Arrays.fill(min, rows * cols + 1);
+        }
+        minCover[id] = min;
+        maxCover[id] = max;
+    }
+
+    /**
+     * Colours the board like a checkerboard
+     */
+    public static ColouringPruner checkerboard(int rows, int cols, int[][][][] shapes, int[] pieceIDs) {
+        int[] colour = new int[rows * cols];
+        for (int x = 0; x < rows; x++) {
+            for (int y = 0; y < cols; y++) {
+                colour[x * cols + y] = (x + y) % 2;
+            }
+        }
+        return new ColouringPruner(rows, cols, colour, 2, shapes, pieceIDs);
+    }
+
+    /**
+     * Colours the board in stripes, the colour of a cell is its x (or y)
+     * modulo the number of colours
+     * 
+     * @param alongX true to colour by x, false to colour by y
+     */
+    public static ColouringPruner stripes(int rows, int cols, int colours, boolean alongX, int[][][][] shapes,
+            int[] pieceIDs) {
+        int[] colour = new int[rows * cols];
+        for (int x = 0; x < rows; x++) {
+            for (int y = 0; y < cols; y++) {
+                colour[x * cols + y] = (alongX ? x : y) % colours;
+            }
+        }
+        return new ColouringPruner(rows, cols, colour, colours, shapes, pieceIDs);
+    }
+
+    public void place(int type, int[] cells) {
+        for (int c : cells) {
+            emptyOfColour[cellColour[c]]--;
+        }
+        for (int k = 0; k < colours; k++) {
+            sumMin[k] -= minCover[type][k];
+            sumMax[k] -= maxCover[type][k];
+        }
+        emptyCells -= cells.length;
+        remainingArea -= cells.length;
+    }
+
+    public void remove(int type, int[] cells) {
+        for (int c : cells) {
+            emptyOfColour[cellColour[c]]++;
+        }
+        for (int k = 0; k < colours; k++) {
+            sumMin[k] += minCover[type][k];
+            sumMax[k] += maxCover[type][k];
+        }
+        emptyCells += cells.length;
+        remainingArea += cells.length;
+    }
+
+    public void fill(int[] cells) {
+        for (int c : cells) {
+            emptyOfColour[cellColour[c]]--;
+        }
+        emptyCells -= cells.length;
+    }
+
+    public void unfill(int[] cells) {
+        for (int c : cells) {
+            emptyOfColour[cellColour[c]]++;
+        }
+        emptyCells += cells.length;
+    }
+
+    public boolean isFeasible() {
+        // when the pieces fill the board exactly every empty cell is covered, so
+        // the maximums matter too, otherwise only the minimums
+        boolean exact = emptyCells == remainingArea;
+        for (int k = 0; k < colours; k++) {
+            if (emptyOfColour[k] < sumMin[k] || (exact && emptyOfColour[k] > sumMax[k])) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
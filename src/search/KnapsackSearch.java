@@ -0,0 +1,331 @@
+package search;
+// Branch-and-bound search for the best packing when an exact tiling is not possible
+
+// Instead of demanding that every cell is covered, the search looks for the
+// placement of a subset of the pieces that covers the most cells, or that
+// earns the most value when every piece has a value.
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Scanner;
+
+import common.UI;
+import pentominoes.PentominoDatabase;
+
+public class KnapsackSearch {
+
+    public int horiGridSize;
+    public int vertGridSize;
+    public char[] input;
+    // value of every input piece, null means every piece is worth its area.
+    // Copies of a pentomino may have different values.
+    public int[] values;
+    // cells that can not be used, may be null
+    public boolean[][] blocked;
+    // stop after this many search nodes and keep the best packing found so far
+    public long nodeLimit = Long.MAX_VALUE;
+    // print the result of every search
+    public boolean verbose = true;
+
+    // Create the UI object
+    public UI ui;
+
+    // the pieces grouped by type
+    private int[] typeIDs;
+    private int[] typeCount;
+    private int[] typeValue;
+    private int[] typeArea;
+    // the type of the same pentomino with the next higher value, -1 if none
+    private int[] betterCopy;
+    // types sorted by value per cell, best first, used for the bound
+    private int[] byDensity;
+    // per type and mutation the cells relative to the first cell (x major)
+    private int[][][][] anchored;
+
+    private int[][] field;
+    private int value;
+    private long nodes;
+    private volatile boolean cancelled;
+
+    private int bestValue = -1;
+    private int[][] bestField;
+    private long startTime;
+
+    /**
+     * Runs the search until the best packing is proven or the node limit is
+     * reached.
+     * 
+     * @return the best field found, with the pentomino ID on every used cell and
+     *         -1 on the others
+     */
+    public int[][] search() {
+        prepare();
+        field = new int[horiGridSize][vertGridSize];
+        for (int[] row : field) {
+            Arrays.fill(row, -1);
+        }
+        int freeCells = 0;
+        for (int x = 0; x < horiGridSize; x++) {
+            for (int y = 0; y < vertGridSize; y++) {
+                if (!isBlocked(x, y)) {
+                    freeCells++;
+                }
+            }
+        }
+        value = 0;
+        nodes = 0;
+        cancelled = false;
+        bestValue = -1;
+        startTime = System.currentTimeMillis();
+
+        int rootBound = upperBound(freeCells);
+        branch(0, freeCells, rootBound);
+
+        long endTime = System.currentTimeMillis();
+        if (verbose) {
+            System.out.println("Best value " + bestValue + " of at most " + rootBound + " after " + nodes
+                    + " nodes in " + (endTime - startTime) + " ms");
+        }
+        return getBestField();
+    }
+
+    // Groups the input by pentomino and value and precomputes the mutations
+    // relative to their first cell. Copies of a pentomino with different
+    // values become different types.
+    private void prepare() {
+        // the pieces as {ID, value}, by ID and the most valuable first
+        int[][] pieces = new int[input.length][];
+        for (int i = 0; i < input.length; i++) {
+            pieces[i] = new int[] { Pieces.characterToID(input[i]), values == null ? 5 : values[i] };
+        }
+        Arrays.sort(pieces, (a, b) -> a[0] != b[0] ? Integer.compare(a[0], b[0]) : Integer.compare(b[1], a[1]));
+        List<int[]> groups = new ArrayList<>();
+        for (int[] piece : pieces) {
+            int[] last = groups.isEmpty() ? null : groups.get(groups.size() - 1);
+            if (last != null && last[0] == piece[0] && last[1] == piece[1]) {
+                last[2]++;
+            } else {
+                groups.add(new int[] { piece[0], piece[1], 1 });
+            }
+        }
+        int types = groups.size();
+        typeIDs = new int[types];
+        typeCount = new int[types];
+        typeValue = new int[types];
+        typeArea = new int[types];
+        betterCopy = new int[types];
+        anchored = new int[types][][][];
+        for (int t = 0; t < types; t++) {
+            typeIDs[t] = groups.get(t)[0];
+            typeValue[t] = groups.get(t)[1];
+            typeCount[t] = groups.get(t)[2];
+            betterCopy[t] = t > 0 && typeIDs[t - 1] == typeIDs[t] ? t - 1 : -1;
+            anchored[t] = Pieces.anchoredMutations(PentominoDatabase.data[typeIDs[t]]);
+            typeArea[t] = anchored[t][0].length;
+        }
+        Integer[] order = new Integer[types];
+        for (int i = 0; i < types; i++) {
+            order[i] = i;
+        }
+        // value per cell, compared without division
+        Arrays.sort(order, (a, b) -> Integer.compare(typeValue[b] * typeArea[a], typeValue[a] * typeArea[b]));
+        byDensity = Arrays.stream(order).mapToInt(i -> i).toArray();
+    }
+
+    /**
+     * Admissible bound for what the remaining pieces can still add: a
+     * fractional knapsack over the free cells, taking the pieces with the most
+     * value per cell first. It never underestimates, because no packing can
+     * use more cells than are free or more pieces than are left.
+     * 
+     * @param freeCells cells that are not decided yet
+     * @return the most value the remaining pieces could add
+     */
+    private int upperBound(int freeCells) {
+        int bound = 0;
+        int capacity = freeCells;
+        for (int t : byDensity) {
+            if (capacity <= 0) {
+                break;
+            }
+            int area = typeCount[t] * typeArea[t];
+            if (area <= capacity) {
+                bound += typeCount[t] * typeValue[t];
+                capacity -= area;
+            } else {
+                // only part of this type fits, round the fraction up
+                bound += (typeValue[t] * capacity + typeArea[t] - 1) / typeArea[t];
+                capacity = 0;
+            }
+        }
+        return value + bound;
+    }
+
+    /**
+     * Decides the cells in order. The first undecided cell is either covered by
+     * a piece that starts there, or left empty.
+     * 
+     * @param position  index (x * vertGridSize + y) of the first cell that may
+     *                  be undecided
+     * @param freeCells number of undecided cells from position on
+     * @param rootBound the bound of the whole problem, reaching it ends the
+     *                  search
+     */
+    private void branch(int position, int freeCells, int rootBound) {
+        nodes++;
+        if (value > bestValue) {
+            improve();
+        }
+        if (cancelled || nodes >= nodeLimit || bestValue == rootBound) {
+            return;
+        }
+        if (upperBound(freeCells) <= bestValue) {
+            return; // this branch can not beat the best packing
+        }
+        int cells = horiGridSize * vertGridSize;
+        while (position < cells && (field[position / vertGridSize][position % vertGridSize] != -1
+                || isBlocked(position / vertGridSize, position % vertGridSize))) {
+            position++;
+        }
+        if (position == cells) {
+            return;
+        }
+        int x = position / vertGridSize;
+        int y = position % vertGridSize;
+
+        for (int t : byDensity) {
+            if (typeCount[t] == 0 || hasBetterCopy(t)) {
+                continue;
+            }
+            for (int[][] cellsOfMutation : anchored[t]) {
+                if (fits(cellsOfMutation, x, y)) {
+                    place(cellsOfMutation, x, y, typeIDs[t]);
+                    typeCount[t]--;
+                    value += typeValue[t];
+                    branch(position + 1, freeCells - typeArea[t], rootBound);
+                    value -= typeValue[t];
+                    typeCount[t]++;
+                    place(cellsOfMutation, x, y, -1);
+                }
+            }
+        }
+        // leave this cell empty
+        branch(position + 1, freeCells - 1, rootBound);
+    }
+
+    // True if a more valuable copy of the same pentomino is left. It fits
+    // wherever this one does, so the cheaper copies are only used after it.
+    private boolean hasBetterCopy(int t) {
+        for (int b = betterCopy[t]; b != -1; b = betterCopy[b]) {
+            if (typeCount[b] > 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean isBlocked(int x, int y) {
+        return blocked != null && blocked[x][y];
+    }
+
+    private boolean fits(int[][] cells, int x, int y) {
+        for (int[] cell : cells) {
+            int cx = x + cell[0];
+            int cy = y + cell[1];
+            if (cx >= horiGridSize || cy < 0 || cy >= vertGridSize || field[cx][cy] != -1 || isBlocked(cx, cy)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void place(int[][] cells, int x, int y, int id) {
+        for (int[] cell : cells) {
+            field[x + cell[0]][y + cell[1]] = id;
+        }
+    }
+
+    // Stores the current packing as the best one and shows it
+    private synchronized void improve() {
+        bestValue = value;
+        bestField = new int[horiGridSize][];
+        for (int i = 0; i < horiGridSize; i++) {
+            bestField[i] = field[i].clone();
+        }
+        if (ui != null) {
+            ui.setState(bestField);
+        }
+    }
+
+    /**
+     * Can be called at any time, also from another thread while the search is
+     * running.
+     * 
+     * @return a copy of the best field found so far, or null before the search
+     *         started
+     */
+    public synchronized int[][] getBestField() {
+        if (bestField == null) {
+            return null;
+        }
+        int[][] copy = new int[bestField.length][];
+        for (int i = 0; i < bestField.length; i++) {
+            copy[i] = bestField[i].clone();
+        }
+        return copy;
+    }
+
+    /**
+     * @return the value of the best packing found so far
+     */
+    public synchronized int getBestValue() {
+        return bestValue;
+    }
+
+    /**
+     * Stops a running search, the best packing found so far stays available.
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    public void getUserInput() {
+        Scanner scanner = new Scanner(System.in);
+
+        System.out.println("Enter the horizontal grid size:");
+        horiGridSize = Integer.parseInt(scanner.nextLine().trim());
+        System.out.println("Enter the vertical grid size:");
+        vertGridSize = Integer.parseInt(scanner.nextLine().trim());
+
+        System.out.println("Enter pentomino letters separated by commas (e.g., X, U, I):");
+        List<String> lettersList = Arrays.asList(scanner.nextLine().toUpperCase().split(","));
+        input = new char[lettersList.size()];
+        for (int i = 0; i < lettersList.size(); i++) {
+            input[i] = lettersList.get(i).trim().charAt(0);
+        }
+
+        System.out.println("Enter the value of every pentomino separated by commas, or nothing to cover the most cells:");
+        String valuesStr = scanner.nextLine().trim();
+        if (!valuesStr.isEmpty()) {
+            String[] parts = valuesStr.split(",");
+            values = new int[input.length];
+            for (int i = 0; i < input.length; i++) {
+                values[i] = Integer.parseInt(parts[i].trim());
+            }
+        }
+        scanner.close();
+
+        ui = new UI(horiGridSize, vertGridSize, 60);
+    }
+
+    /**
+     * Main function. Needs to be executed to start the search algorithm
+     */
+    public static void main(String[] args) {
+        KnapsackSearch search = new KnapsackSearch();
+        search.getUserInput();
+        System.out.println("Starting search...");
+        search.search();
+    }
+}
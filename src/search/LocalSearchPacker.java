@@ -0,0 +1,469 @@
+package search;
+// Anytime local search for boards that are too large for the exact searches
+
+// Starts from a greedy packing and then keeps improving it: a random window
+// of the board is cleared, together with every piece that reaches into it,
+// and the freed cells are packed again by KnapsackSearch with the removed
+// pieces and a few unused ones. The new packing of the window replaces the
+// old one if it covers more cells, or covers fewer with a probability that
+// drops over time (simulated annealing). Every core runs its own chain, the
+// best packing of all chains is shared and a chain that falls behind
+// continues from it.
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import common.UI;
+import pentominoes.PentominoDatabase;
+
+public class LocalSearchPacker {
+
+    public int horiGridSize;
+    public int vertGridSize;
+    public char[] input;
+    // run time of the search in ms
+    public long timeLimit = 10_000;
+    // size of the cleared window in cells, in both directions
+    public int windowSize = 5;
+    // unused pieces offered to the window on top of the removed ones
+    public int extraPieces = 4;
+    // search nodes of KnapsackSearch per window
+    public long windowNodeLimit = 2_000;
+    // temperature at the start and at the end, in covered cells
+    public double startTemperature = 2.0;
+    public double endTemperature = 0.05;
+    // a chain that is behind the shared best continues from it after this
+    // many moves
+    public int syncInterval = 500;
+    public int threads = Runtime.getRuntime().availableProcessors();
+    public long seed = new Random().nextLong();
+
+    // Create the UI object
+    public UI ui;
+
+    private static final String LETTERS = "XIZTUVWYLPNF";
+
+    // per pentomino ID the mutations relative to their first cell
+    private int[][][][] anchored;
+    private int[] totalCount;
+
+    private int bestValue;
+    private int[][] bestField;
+    private long moves;
+    private long accepted;
+    private long deadline;
+    private long startTime;
+    private volatile boolean cancelled;
+
+    /**
+     * Runs the chains until the time limit or cancel.
+     *
+     * @return the best packing found, with the pentomino ID on every used cell
+     *         and -1 on the others
+     */
+    public int[][] search() {
+        anchored = new int[PentominoDatabase.data.length][][][];
+        for (int id = 0; id < anchored.length; id++) {
+            anchored[id] = Pieces.anchoredMutations(PentominoDatabase.data[id]);
+        }
+        totalCount = new int[PentominoDatabase.data.length];
+        for (char c : input) {
+            totalCount[Pieces.characterToID(c)]++;
+        }
+        bestValue = -1;
+        bestField = null;
+        moves = 0;
+        accepted = 0;
+        cancelled = false;
+        startTime = System.currentTimeMillis();
+        deadline = startTime + timeLimit;
+
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        for (int i = 0; i < threads; i++) {
+            Chain chain = new Chain(new Random(seed + i));
+            pool.execute(chain::run);
+        }
+        pool.shutdown();
+        try {
+            while (!pool.awaitTermination(100, TimeUnit.MILLISECONDS)) {
+                // wait for the chains
+            }
+        } catch (InterruptedException e) {
+            cancelled = true;
+            Thread.currentThread().interrupt();
+        }
+
+        long endTime = System.currentTimeMillis();
+        System.out.println("Best packing covers " + bestValue + " of " + horiGridSize * vertGridSize + " cells after "
+                + moves + " moves (" + accepted + " accepted) on " + threads + " threads in "
+                + (endTime - startTime) + " ms");
+        return getBestField();
+    }
+
+    /**
+     * Can be called at any time, also from another thread while the search is
+     * running.
+     *
+     * @return a copy of the best field found so far, or null before the first
+     *         packing
+     */
+    public synchronized int[][] getBestField() {
+        if (bestField == null) {
+            return null;
+        }
+        return copy(bestField);
+    }
+
+    /**
+     * @return the number of cells the best packing so far covers
+     */
+    public synchronized int getBestValue() {
+        return bestValue;
+    }
+
+    /**
+     * Stops a running search, the best packing found so far stays available.
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    // Offers the packing of a chain as the new best one
+    private synchronized void offer(int value, int[][] field) {
+        if (value > bestValue) {
+            bestValue = value;
+            bestField = copy(field);
+            if (ui != null) {
+                ui.setState(bestField);
+            }
+        }
+    }
+
+    private synchronized void count(long chainMoves, long chainAccepted) {
+        moves += chainMoves;
+        accepted += chainAccepted;
+    }
+
+    private static int[][] copy(int[][] field) {
+        int[][] result = new int[field.length][];
+        for (int i = 0; i < field.length; i++) {
+            result[i] = field[i].clone();
+        }
+        return result;
+    }
+
+    /**
+     * One annealing chain with its own packing. The pieces on the board are
+     * numbered, owner holds the number of the piece on every cell.
+     */
+    private class Chain {
+        private final Random random;
+        private final int[][] field = new int[horiGridSize][vertGridSize];
+        private final int[][] owner = new int[horiGridSize][vertGridSize];
+        private final List<int[]> pieceCells = new ArrayList<>();
+        private final List<Integer> pieceType = new ArrayList<>();
+        private final int[] available = totalCount.clone();
+        private int value;
+
+        Chain(Random random) {
+            this.random = random;
+            for (int x = 0; x < horiGridSize; x++) {
+                Arrays.fill(field[x], -1);
+                Arrays.fill(owner[x], -1);
+            }
+        }
+
+        void run() {
+            greedy();
+            offer(value, field);
+            long chainMoves = 0;
+            long chainAccepted = 0;
+            long now = System.currentTimeMillis();
+            while (!cancelled && now < deadline) {
+                double progress = (double) (now - startTime) / timeLimit;
+                double temperature = startTemperature * Math.pow(endTemperature / startTemperature, progress);
+                if (move(temperature)) {
+                    chainAccepted++;
+                    offer(value, field);
+                }
+                chainMoves++;
+                if (chainMoves % syncInterval == 0) {
+                    int[][] best;
+                    synchronized (LocalSearchPacker.this) {
+                        best = bestValue > value ? copy(bestField) : null;
+                    }
+                    if (best != null) {
+                        load(best);
+                    }
+                }
+                now = System.currentTimeMillis();
+            }
+            count(chainMoves, chainAccepted);
+        }
+
+        // Fills the cells in order with the first piece that fits
+        private void greedy() {
+            for (int x = 0; x < horiGridSize; x++) {
+                for (int y = 0; y < vertGridSize; y++) {
+                    if (field[x][y] != -1) {
+                        continue;
+                    }
+                    for (int id = 0; id < available.length && field[x][y] == -1; id++) {
+                        if (available[id] == 0) {
+                            continue;
+                        }
+                        for (int[][] mutation : anchored[id]) {
+                            int[] cells = cellsAt(mutation, x, y);
+                            if (cells != null) {
+                                place(id, cells);
+                                break;
+                            }
+                        }
+                    }
+                }
+            }
+        }
+
+        /**
+         * Clears a random window and packs it again.
+         *
+         * @return true if the new packing was accepted
+         */
+        private boolean move(double temperature) {
+            int x0 = random.nextInt(Math.max(1, horiGridSize - windowSize + 1));
+            int y0 = random.nextInt(Math.max(1, vertGridSize - windowSize + 1));
+            int x1 = Math.min(horiGridSize, x0 + windowSize);
+            int y1 = Math.min(vertGridSize, y0 + windowSize);
+
+            // the pieces reaching into the window and the cells they free
+            List<Integer> removed = new ArrayList<>();
+            boolean[][] free = new boolean[horiGridSize][vertGridSize];
+            int minX = x0, minY = y0, maxX = x1 - 1, maxY = y1 - 1;
+            int oldValue = 0;
+            for (int x = x0; x < x1; x++) {
+                for (int y = y0; y < y1; y++) {
+                    free[x][y] = true;
+                    int piece = owner[x][y];
+                    if (piece != -1 && !removed.contains(piece)) {
+                        removed.add(piece);
+                        for (int cell : pieceCells.get(piece)) {
+                            int cx = cell / vertGridSize;
+                            int cy = cell % vertGridSize;
+                            free[cx][cy] = true;
+                            minX = Math.min(minX, cx);
+                            maxX = Math.max(maxX, cx);
+                            minY = Math.min(minY, cy);
+                            maxY = Math.max(maxY, cy);
+                        }
+                        oldValue += pieceCells.get(piece).length;
+                    }
+                }
+            }
+
+            // the removed pieces and some unused ones
+            List<Character> pieces = new ArrayList<>();
+            for (int piece : removed) {
+                pieces.add(LETTERS.charAt(pieceType.get(piece)));
+            }
+            int[] left = available.clone();
+            for (int i = 0; i < extraPieces; i++) {
+                int id = randomAvailable(left);
+                if (id == -1) {
+                    break;
+                }
+                left[id]--;
+                pieces.add(LETTERS.charAt(id));
+            }
+            if (pieces.isEmpty()) {
+                return false;
+            }
+
+            KnapsackSearch window = new KnapsackSearch();
+            window.horiGridSize = maxX - minX + 1;
+            window.vertGridSize = maxY - minY + 1;
+            window.blocked = new boolean[window.horiGridSize][window.vertGridSize];
+            for (int x = minX; x <= maxX; x++) {
+                for (int y = minY; y <= maxY; y++) {
+                    boolean usable = free[x][y] && (field[x][y] == -1 || removed.contains(owner[x][y]));
+                    window.blocked[x - minX][y - minY] = !usable;
+                }
+            }
+            window.input = new char[pieces.size()];
+            for (int i = 0; i < window.input.length; i++) {
+                window.input[i] = pieces.get(i);
+            }
+            window.nodeLimit = windowNodeLimit;
+            window.verbose = false;
+            int[][] packed = window.search();
+            int delta = window.getBestValue() - oldValue;
+
+            if (delta < 0 && random.nextDouble() >= Math.exp(delta / temperature)) {
+                return false;
+            }
+            for (int piece : removed) {
+                remove(piece);
+            }
+            for (int[] placed : segment(packed, minX, minY)) {
+                place(placed[0], Arrays.copyOfRange(placed, 1, placed.length));
+            }
+            return true;
+        }
+
+        private int randomAvailable(int[] left) {
+            int total = 0;
+            for (int count : left) {
+                total += count;
+            }
+            if (total == 0) {
+                return -1;
+            }
+            int pick = random.nextInt(total);
+            for (int id = 0; id < left.length; id++) {
+                pick -= left[id];
+                if (pick < 0) {
+                    return id;
+                }
+            }
+            return -1;
+        }
+
+        /**
+         * Splits a packed window back into pieces. The field only holds the
+         * pentomino ID per cell, so neighbouring pieces of the same type are
+         * told apart by a small backtracking search over their mutations.
+         *
+         * @return per piece its ID followed by its cells on the board
+         */
+        private List<int[]> segment(int[][] packed, int offsetX, int offsetY) {
+            List<int[]> result = new ArrayList<>();
+            boolean[][] used = new boolean[packed.length][packed[0].length];
+            if (!segment(packed, used, 0, offsetX, offsetY, result)) {
+                throw new IllegalStateException("Packing can not be split into pieces");
+            }
+            return result;
+        }
+
+        private boolean segment(int[][] packed, boolean[][] used, int position, int offsetX, int offsetY,
+                List<int[]> result) {
+            int width = packed[0].length;
+            int cells = packed.length * width;
+            while (position < cells
+                    && (packed[position / width][position % width] == -1 || used[position / width][position % width])) {
+                position++;
+            }
+            if (position == cells) {
+                return true;
+            }
+            int x = position / width;
+            int y = position % width;
+            int id = packed[x][y];
+            for (int[][] mutation : anchored[id]) {
+                boolean fits = true;
+                for (int[] cell : mutation) {
+                    int cx = x + cell[0];
+                    int cy = y + cell[1];
+                    if (cx >= packed.length || cy < 0 || cy >= width || packed[cx][cy] != id || used[cx][cy]) {
+                        fits = false;
+                        break;
+                    }
+                }
+                if (!fits) {
+                    continue;
+                }
+                int[] placed = new int[mutation.length + 1];
+                placed[0] = id;
+                for (int k = 0; k < mutation.length; k++) {
+                    used[x + mutation[k][0]][y + mutation[k][1]] = true;
+                    placed[k + 1] = (offsetX + x + mutation[k][0]) * vertGridSize + offsetY + y + mutation[k][1];
+                }
+                result.add(placed);
+                if (segment(packed, used, position + 1, offsetX, offsetY, result)) {
+                    return true;
+                }
+                result.remove(result.size() - 1);
+                for (int[] cell : mutation) {
+                    used[x + cell[0]][y + cell[1]] = false;
+                }
+            }
+            return false;
+        }
+
+        // Replaces the packing of this chain by a copy of another one
+        private void load(int[][] other) {
+            for (int piece = 0; piece < pieceCells.size(); piece++) {
+                if (pieceCells.get(piece) != null) {
+                    remove(piece);
+                }
+            }
+            pieceCells.clear();
+            pieceType.clear();
+            for (int[] placed : segment(other, 0, 0)) {
+                place(placed[0], Arrays.copyOfRange(placed, 1, placed.length));
+            }
+        }
+
+        /**
+         * @return the cells of the mutation with its first cell at (x, y), or
+         *         null if it does not fit
+         */
+        private int[] cellsAt(int[][] mutation, int x, int y) {
+            int[] cells = new int[mutation.length];
+            for (int k = 0; k < mutation.length; k++) {
+                int cx = x + mutation[k][0];
+                int cy = y + mutation[k][1];
+                if (cx >= horiGridSize || cy < 0 || cy >= vertGridSize || field[cx][cy] != -1) {
+                    return null;
+                }
+                cells[k] = cx * vertGridSize + cy;
+            }
+            return cells;
+        }
+
+        private void place(int id, int[] cells) {
+            int piece = pieceCells.size();
+            pieceCells.add(cells);
+            pieceType.add(id);
+            for (int cell : cells) {
+                field[cell / vertGridSize][cell % vertGridSize] = id;
+                owner[cell / vertGridSize][cell % vertGridSize] = piece;
+            }
+            available[id]--;
+            value += cells.length;
+        }
+
+        private void remove(int piece) {
+            int[] cells = pieceCells.get(piece);
+            for (int cell : cells) {
+                field[cell / vertGridSize][cell % vertGridSize] = -1;
+                owner[cell / vertGridSize][cell % vertGridSize] = -1;
+            }
+            available[pieceType.get(piece)]++;
+            value -= cells.length;
+            pieceCells.set(piece, null);
+        }
+    }
+
+    /**
+     * Main function. Packs a board of the given size (default 50 50) with as
+     * many sets of the 12 pentominoes as cover it, for the given number of
+     * seconds (default 10)
+     */
+    public static void main(String[] args) {
+        LocalSearchPacker packer = new LocalSearchPacker();
+        packer.horiGridSize = args.length > 1 ? Integer.parseInt(args[0]) : 50;
+        packer.vertGridSize = args.length > 1 ? Integer.parseInt(args[1]) : 50;
+        packer.timeLimit = args.length > 2 ? Long.parseLong(args[2]) * 1000 : 10_000;
+        int sets = (packer.horiGridSize * packer.vertGridSize + 59) / 60;
+        packer.input = new char[sets * 12];
+        for (int i = 0; i < packer.input.length; i++) {
+            packer.input[i] = LETTERS.charAt(i % 12);
+        }
+        packer.ui = new UI(packer.horiGridSize, packer.vertGridSize, Math.max(10, 600 / packer.horiGridSize));
+        packer.search();
+    }
+}
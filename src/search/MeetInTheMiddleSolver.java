@@ -0,0 +1,657 @@
+package search;
+// Meet-in-the-middle solver for long boards
+
+// The board is cut in two halves at a middle column. Every tiling splits in
+// one way into the pieces whose first cell (in column order) lies in the left
+// half and the others, which lie completely in the right half. The left
+// pieces cover the left half and stick out into a band of columns behind the
+// cut; the right pieces cover the rest of the right half and leave exactly
+// those band cells free. Both halves are enumerated on their own and counted
+// per signature: the band cells the left half covers and the pieces it uses.
+// The tilings of the board are then the left and right tilings with the same
+// band and complementary pieces, which is a hash join of the two tables.
+//
+// When a table has more entries than fit in memory, it is written to
+// partition files by hash and the join runs partition by partition.
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Scanner;
+
+import common.UI;
+import pentominoes.PentominoDatabase;
+
+public class MeetInTheMiddleSolver {
+
+    public int horiGridSize;
+    public int vertGridSize;
+    public char[] input;
+    // entries a table may hold in memory before it is written to disk
+    public int maxEntries = 1 << 20;
+    // number of partition files per side when spilling, a power of 2
+    public int partitions = 16;
+    // where the partition files go, null for a temporary directory
+    public Path spillDirectory;
+
+    // Create the UI object
+    public UI ui;
+
+    // bits per type in the used pieces part of a signature
+    private static final int COUNT_BITS = 3;
+
+    // the board is searched with the short side as height, cells are numbered
+    // column * height + row
+    private int height;
+    private int length;
+    private boolean transposed;
+    private int middle;
+    private int band;
+    private int bandBits;
+
+    private int[] typeIDs;
+    private int[] typeCount;
+    private long allUsed;
+    // placements by their first and by their last cell in column order
+    private int[][][] forward;
+    private int[][] forwardType;
+    private int[][][] backward;
+    private int[][] backwardType;
+
+    private boolean[] covered;
+    private boolean[] leftForLeft;
+    private int[] used;
+    private int[] owner;
+
+    private Map<Long, Long> table;
+    private Path spillRoot;
+    private boolean leftSpilled;
+    private boolean rightSpilled;
+    private long leftTilings;
+    private long rightTilings;
+    private long spilledRecords;
+
+    // set while looking for the halves of one solution
+    private long target = -1;
+    private boolean found;
+
+    /**
+     * Counts the tilings of the board, mirrored and rotated tilings count as
+     * different ones.
+     *
+     * @return the number of tilings
+     */
+    public long count() {
+        long startTime = System.currentTimeMillis();
+        long result;
+        try {
+            result = prepare() ? join() : 0;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            deleteSpillFiles();
+        }
+        long endTime = System.currentTimeMillis();
+        System.out.println(result + " solutions from " + leftTilings + " left and " + rightTilings
+                + " right half tilings, " + spilledRecords + " records spilled, in " + (endTime - startTime) + " ms");
+        return result;
+    }
+
+    /**
+     * Looks for one tiling: joins the halves, then enumerates both halves again
+     * until they match the first signature that has tilings on both sides.
+     *
+     * @return the field with the pentomino ID on every cell, or null if there
+     *         is no tiling
+     */
+    public int[][] search() {
+        long startTime = System.currentTimeMillis();
+        int[][] result = null;
+        try {
+            if (prepare()) {
+                long key = firstMatch();
+                if (key != -1) {
+                    result = solution(key);
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            deleteSpillFiles();
+        }
+        long endTime = System.currentTimeMillis();
+        if (result == null) {
+            System.out.println("No solution found");
+            return null;
+        }
+        System.out.println("Found a solution in " + (endTime - startTime) + " ms");
+        if (ui != null) {
+            ui.setState(result);
+        }
+        return result;
+    }
+
+    /**
+     * @return the number of tilings of the left half found by the last run
+     */
+    public long getLeftTilings() {
+        return leftTilings;
+    }
+
+    /**
+     * @return the number of tilings of the right half found by the last run
+     */
+    public long getRightTilings() {
+        return rightTilings;
+    }
+
+    /**
+     * @return the number of table entries the last run wrote to disk
+     */
+    public long getSpilledRecords() {
+        return spilledRecords;
+    }
+
+    /**
+     * Groups the pieces and builds the placements.
+     *
+     * @return false if the pieces do not have the area of the board
+     */
+    private boolean prepare() {
+        transposed = horiGridSize > vertGridSize;
+        height = Math.min(horiGridSize, vertGridSize);
+        length = Math.max(horiGridSize, vertGridSize);
+
+        int[] countByID = new int[PentominoDatabase.data.length];
+        for (char c : input) {
+            countByID[Pieces.characterToID(c)]++;
+        }
+        List<Integer> ids = new ArrayList<>();
+        for (int id = 0; id < countByID.length; id++) {
+            if (countByID[id] > 0) {
+                ids.add(id);
+            }
+        }
+        typeIDs = ids.stream().mapToInt(i -> i).toArray();
+        typeCount = new int[typeIDs.length];
+        allUsed = 0;
+        int area = 0;
+        int longest = 1;
+        for (int t = 0; t < typeIDs.length; t++) {
+            typeCount[t] = countByID[typeIDs[t]];
+            if (typeCount[t] >= 1 << COUNT_BITS) {
+                throw new IllegalArgumentException("At most " + ((1 << COUNT_BITS) - 1) + " pieces of one type");
+            }
+            allUsed |= (long) typeCount[t] << (t * COUNT_BITS);
+            for (int[][] mutation : PentominoDatabase.data[typeIDs[t]]) {
+                longest = Math.max(longest, mutation[0].length);
+            }
+            area += typeCount[t] * Pieces.anchoredMutations(PentominoDatabase.data[typeIDs[t]])[0].length;
+        }
+        middle = length / 2;
+        band = Math.min(longest - 1, length - middle);
+        bandBits = band * height;
+        if (bandBits + typeIDs.length * COUNT_BITS > 63) {
+            throw new IllegalArgumentException("Board too high or too many piece types for a 64 bit signature");
+        }
+
+        buildPlacements();
+        int cells = height * length;
+        covered = new boolean[cells];
+        leftForLeft = new boolean[cells];
+        used = new int[typeIDs.length];
+        owner = new int[cells];
+        leftTilings = 0;
+        rightTilings = 0;
+        spilledRecords = 0;
+        leftSpilled = false;
+        rightSpilled = false;
+        spillRoot = null;
+        return area == cells;
+    }
+
+    // Lists every placement on the board by its first and its last cell
+    private void buildPlacements() {
+        int cells = height * length;
+        List<List<int[]>> first = new ArrayList<>();
+        List<List<Integer>> firstType = new ArrayList<>();
+        List<List<int[]>> last = new ArrayList<>();
+        List<List<Integer>> lastType = new ArrayList<>();
+        for (int c = 0; c < cells; c++) {
+            first.add(new ArrayList<>());
+            firstType.add(new ArrayList<>());
+            last.add(new ArrayList<>());
+            lastType.add(new ArrayList<>());
+        }
+        for (int t = 0; t < typeIDs.length; t++) {
+            int size = Pieces.anchoredMutations(PentominoDatabase.data[typeIDs[t]])[0].length;
+            for (int[][] mutation : PentominoDatabase.data[typeIDs[t]]) {
+                // the mutation is stored as [row][column]
+                for (int row = 0; row + mutation.length <= height; row++) {
+                    for (int column = 0; column + mutation[0].length <= length; column++) {
+                        int[] placed = new int[size];
+                        int k = 0;
+                        for (int j = 0; j < mutation[0].length; j++) {
+                            for (int i = 0; i < mutation.length; i++) {
+                                if (mutation[i][j] == 1) {
+                                    placed[k++] = (column + j) * height + row + i;
+                                }
+                            }
+                        }
+                        // the cells are in column order
+                        first.get(placed[0]).add(placed);
+                        firstType.get(placed[0]).add(t);
+                        last.get(placed[placed.length - 1]).add(placed);
+                        lastType.get(placed[placed.length - 1]).add(t);
+                    }
+                }
+            }
+        }
+        forward = new int[cells][][];
+        forwardType = new int[cells][];
+        backward = new int[cells][][];
+        backwardType = new int[cells][];
+        for (int c = 0; c < cells; c++) {
+            forward[c] = first.get(c).toArray(new int[0][]);
+            forwardType[c] = firstType.get(c).stream().mapToInt(i -> i).toArray();
+            backward[c] = last.get(c).toArray(new int[0][]);
+            backwardType[c] = lastType.get(c).stream().mapToInt(i -> i).toArray();
+        }
+    }
+
+    private long usedCode() {
+        long code = 0;
+        for (int t = 0; t < used.length; t++) {
+            code |= (long) used[t] << (t * COUNT_BITS);
+        }
+        return code;
+    }
+
+    /**
+     * Fills the left half cell by cell in column order, every empty cell is
+     * the first cell of a new piece.
+     */
+    private void left(int cell) throws IOException {
+        if (found) {
+            return;
+        }
+        int end = middle * height;
+        while (cell < end && covered[cell]) {
+            cell++;
+        }
+        if (cell == end) {
+            long profile = 0;
+            for (int b = 0; b < bandBits; b++) {
+                if (covered[end + b]) {
+                    profile |= 1L << b;
+                }
+            }
+            long key = usedCode() << bandBits | profile;
+            leftTilings++;
+            if (target == -1) {
+                add(key, 1, true);
+            } else if (key == target) {
+                found = true;
+            }
+            return;
+        }
+        for (int k = 0; k < forward[cell].length; k++) {
+            int t = forwardType[cell][k];
+            int[] placed = forward[cell][k];
+            if (used[t] == typeCount[t] || !isFree(placed)) {
+                continue;
+            }
+            setCovered(placed, true, t);
+            used[t]++;
+            left(cell + 1);
+            used[t]--;
+            if (found) {
+                return;
+            }
+            setCovered(placed, false, t);
+        }
+    }
+
+    /**
+     * Fills the right half cell by cell from the end, every empty cell is the
+     * last cell of a new piece, or in the band a cell left to the left half.
+     */
+    private void right(int cell) throws IOException {
+        if (found) {
+            return;
+        }
+        int start = middle * height;
+        while (cell >= start && covered[cell]) {
+            cell--;
+        }
+        if (cell < start) {
+            long profile = 0;
+            for (int b = 0; b < bandBits; b++) {
+                if (leftForLeft[start + b]) {
+                    profile |= 1L << b;
+                }
+            }
+            // the left half has to use the pieces the right half does not
+            long key = (allUsed - usedCode()) << bandBits | profile;
+            rightTilings++;
+            if (target == -1) {
+                add(key, 1, false);
+            } else if (key == target) {
+                found = true;
+            }
+            return;
+        }
+        for (int k = 0; k < backward[cell].length; k++) {
+            int t = backwardType[cell][k];
+            int[] placed = backward[cell][k];
+            if (used[t] == typeCount[t] || placed[0] < start || !isFree(placed)) {
+                continue;
+            }
+            setCovered(placed, true, t);
+            used[t]++;
+            right(cell - 1);
+            used[t]--;
+            if (found) {
+                return;
+            }
+            setCovered(placed, false, t);
+        }
+        if (cell < start + bandBits) {
+            covered[cell] = true;
+            leftForLeft[cell] = true;
+            right(cell - 1);
+            if (found) {
+                return;
+            }
+            leftForLeft[cell] = false;
+            covered[cell] = false;
+        }
+    }
+
+    private boolean isFree(int[] placed) {
+        for (int c : placed) {
+            if (covered[c]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void setCovered(int[] placed, boolean value, int type) {
+        for (int c : placed) {
+            covered[c] = value;
+            owner[c] = typeIDs[type];
+        }
+    }
+
+    private void resetBoard() {
+        Arrays.fill(covered, false);
+        Arrays.fill(leftForLeft, false);
+        Arrays.fill(used, 0);
+    }
+
+    // Adds a count to the table of the side that is being enumerated
+    private void add(long key, long count, boolean leftSide) throws IOException {
+        table.merge(key, count, Long::sum);
+        if (table.size() >= maxEntries) {
+            spill(leftSide);
+        }
+    }
+
+    /**
+     * Enumerates both halves and sums left count times right count over the
+     * signatures they share.
+     */
+    private long join() throws IOException {
+        table = new HashMap<>();
+        resetBoard();
+        left(0);
+        Map<Long, Long> leftTable = table;
+        if (leftSpilled) {
+            spill(true);
+            leftTable = null;
+        }
+
+        table = new HashMap<>();
+        resetBoard();
+        right(height * length - 1);
+        if (leftTable != null && !rightSpilled) {
+            return dot(leftTable, table);
+        }
+        if (leftTable != null) {
+            // the left table fits, only the right one went to disk
+            spillTable(leftTable, true);
+            leftSpilled = true;
+        }
+        spill(false);
+
+        long total = 0;
+        for (int p = 0; p < partitions; p++) {
+            total = Math.addExact(total, dot(readPartition(p, true), readPartition(p, false)));
+        }
+        return total;
+    }
+
+    private static long dot(Map<Long, Long> left, Map<Long, Long> right) {
+        long total = 0;
+        for (Map.Entry<Long, Long> entry : right.entrySet()) {
+            Long count = left.get(entry.getKey());
+            if (count != null) {
+                total = Math.addExact(total, Math.multiplyExact(count, entry.getValue()));
+            }
+        }
+        return total;
+    }
+
+    /**
+     * @return the first signature with tilings of both halves, or -1
+     */
+    private long firstMatch() throws IOException {
+        table = new HashMap<>();
+        resetBoard();
+        left(0);
+        Map<Long, Long> leftTable = table;
+        if (leftSpilled) {
+            spill(true);
+            leftTable = null;
+        }
+        table = new HashMap<>();
+        resetBoard();
+        right(height * length - 1);
+        if (leftTable != null && !rightSpilled) {
+            for (Long key : table.keySet()) {
+                if (leftTable.containsKey(key)) {
+                    return key;
+                }
+            }
+            return -1;
+        }
+        if (leftTable != null) {
+            spillTable(leftTable, true);
+            leftSpilled = true;
+        }
+        spill(false);
+        for (int p = 0; p < partitions; p++) {
+            Map<Long, Long> left = readPartition(p, true);
+            for (Long key : readPartition(p, false).keySet()) {
+                if (left.containsKey(key)) {
+                    return key;
+                }
+            }
+        }
+        return -1;
+    }
+
+    // Enumerates both halves again until they reach the signature
+    private int[][] solution(long key) throws IOException {
+        int[] ownerOfCell = new int[height * length];
+        target = key;
+        try {
+            resetBoard();
+            found = false;
+            left(0);
+            int end = middle * height;
+            System.arraycopy(owner, 0, ownerOfCell, 0, end);
+            for (int c = end; c < ownerOfCell.length; c++) {
+                ownerOfCell[c] = covered[c] ? owner[c] : -1;
+            }
+            resetBoard();
+            found = false;
+            right(height * length - 1);
+            for (int c = end; c < ownerOfCell.length; c++) {
+                if (!leftForLeft[c]) {
+                    ownerOfCell[c] = owner[c];
+                }
+            }
+        } finally {
+            target = -1;
+            found = false;
+        }
+        int[][] field = new int[horiGridSize][vertGridSize];
+        for (int column = 0; column < length; column++) {
+            for (int row = 0; row < height; row++) {
+                int id = ownerOfCell[column * height + row];
+                if (transposed) {
+                    field[column][row] = id;
+                } else {
+                    field[row][column] = id;
+                }
+            }
+        }
+        return field;
+    }
+
+    private void spill(boolean leftSide) throws IOException {
+        spillTable(table, leftSide);
+        table.clear();
+        if (leftSide) {
+            leftSpilled = true;
+        } else {
+            rightSpilled = true;
+        }
+    }
+
+    // Appends the entries to the partition files of one side
+    private void spillTable(Map<Long, Long> entries, boolean leftSide) throws IOException {
+        if (spillRoot == null) {
+            spillRoot = spillDirectory != null ? Files.createDirectories(spillDirectory)
+                    : Files.createTempDirectory("mitm");
+        }
+        DataOutputStream[] outs = new DataOutputStream[partitions];
+        try {
+            for (int p = 0; p < partitions; p++) {
+                outs[p] = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(
+                        partitionFile(p, leftSide), StandardOpenOption.CREATE, StandardOpenOption.APPEND)));
+            }
+            for (Map.Entry<Long, Long> entry : entries.entrySet()) {
+                DataOutputStream out = outs[partition(entry.getKey())];
+                out.writeLong(entry.getKey());
+                out.writeLong(entry.getValue());
+                spilledRecords++;
+            }
+        } finally {
+            for (DataOutputStream out : outs) {
+                if (out != null) {
+                    out.close();
+                }
+            }
+        }
+    }
+
+    private Map<Long, Long> readPartition(int p, boolean leftSide) throws IOException {
+        Map<Long, Long> entries = new HashMap<>();
+        Path file = partitionFile(p, leftSide);
+        if (!Files.exists(file)) {
+            return entries;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            while (true) {
+                long key;
+                try {
+                    key = in.readLong();
+                } catch (EOFException e) {
+                    break;
+                }
+                entries.merge(key, in.readLong(), Long::sum);
+            }
+        }
+        return entries;
+    }
+
+    private int partition(long key) {
+        key *= 0x9E3779B97F4A7C15L;
+        return (int) (key >>> 40) & (partitions - 1);
+    }
+
+    private Path partitionFile(int p, boolean leftSide) {
+        return spillRoot.resolve((leftSide ? "left-" : "right-") + p + ".bin");
+    }
+
+    private void deleteSpillFiles() {
+        if (spillRoot == null) {
+            return;
+        }
+        for (int p = 0; p < partitions; p++) {
+            try {
+                Files.deleteIfExists(partitionFile(p, true));
+                Files.deleteIfExists(partitionFile(p, false));
+            } catch (IOException e) {
+                System.out.println("Could not delete " + partitionFile(p, true) + ": " + e.getMessage());
+            }
+        }
+        if (spillDirectory == null) {
+            try {
+                Files.deleteIfExists(spillRoot);
+            } catch (IOException e) {
+                System.out.println("Could not delete " + spillRoot + ": " + e.getMessage());
+            }
+        }
+        spillRoot = null;
+    }
+
+    public void getUserInput() {
+        Scanner scanner = new Scanner(System.in);
+
+        System.out.println("Enter the horizontal grid size:");
+        horiGridSize = Integer.parseInt(scanner.nextLine().trim());
+        System.out.println("Enter the vertical grid size:");
+        vertGridSize = Integer.parseInt(scanner.nextLine().trim());
+
+        System.out.println("Enter pentomino letters separated by commas (e.g., X, U, I):");
+        List<String> lettersList = Arrays.asList(scanner.nextLine().toUpperCase().split(","));
+        input = new char[lettersList.size()];
+        for (int i = 0; i < lettersList.size(); i++) {
+            input[i] = lettersList.get(i).trim().charAt(0);
+        }
+        scanner.close();
+
+        ui = new UI(horiGridSize, vertGridSize, 60);
+    }
+
+    /**
+     * Main function. Needs to be executed to start the search algorithm, with
+     * the argument "count" it counts all tilings instead of showing one
+     */
+    public static void main(String[] args) {
+        MeetInTheMiddleSolver solver = new MeetInTheMiddleSolver();
+        solver.getUserInput();
+        System.out.println("Starting search...");
+        if (args.length > 0 && args[0].equals("count")) {
+            solver.count();
+        } else {
+            solver.search();
+        }
+    }
+}
@@ -4,6 +4,7 @@ package search;
 // Optimizations: Recursive backtrack search, dead spot detection, constant time access to pentomino IDs
 // Made by: Max Gurbanli
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Scanner;
@@ -19,6 +20,21 @@ public class MoreOptimizedBacktrackingSearch {
     public int horiGridSize;
     public int vertGridSize;
     public char[] input;
+    // Branch on the most constrained piece or cell instead of the input order
+    public boolean dynamicOrdering = true;
+    // Pieces fixed in place and blocked cells, null for none. The fixed pieces
+    // have to be part of input, the search places the others.
+    public Preplacement preplacement;
+    // Checks run after every placement, null for Pruner.standardPruners. With a
+    // preplacement they are for the pieces left to place, search fills the
+    // preplaced cells in
+    public List<Pruner> pruners;
+    // Remember failed states of the dynamic ordering search, 2^tableSizeLog2
+    // buckets
+    public boolean useTranspositionTable = true;
+    public int tableSizeLog2 = 16;
+    // print the statistics of the transposition table after every search
+    public boolean verbose = false;
 
     // This key-value store maps a pentomino letter to its ID
     // This is used to get the ID of a pentomino in constant time compared to using
@@ -42,15 +58,29 @@ public class MoreOptimizedBacktrackingSearch {
     // Create the UI object
     public UI ui;
 
+    // the pieces the running search still has to place
+    private char[] pieces;
+
+    // the pruners of the running search
+    private List<Pruner> activePruners;
+    // failed states of the running search and the hash of the current state
+    private TranspositionTable table;
+    private long stateHash;
+    private long nodes;
+    // the placements on the way to the current node of the dynamic ordering
+    // search
+    private int[] path;
+    private int depth;
+    // while splitting into work units: the depth of the units and the units
+    // found so far, otherwise null
+    private int splitDepth;
+    private List<Preplacement> units;
+    // the tiling found by the last search, null if there was none
+    private int[][] solution;
+
     public void search() {
-        int[][] field = new int[horiGridSize][vertGridSize];
-        for (int i = 0; i < field.length; i++) {
-            for (int j = 0; j < field[i].length; j++) {
-                field[i][j] = -1;
-            }
-        }
         long startTime = System.currentTimeMillis();
-        boolean foundSolution = optimizedRecursiveSearch(field, 0, ui);
+        boolean foundSolution = run();
         long endTime = System.currentTimeMillis();
         if (foundSolution) {
             System.out.println("Solution found");
@@ -60,6 +90,108 @@ public class MoreOptimizedBacktrackingSearch {
         System.out.println("Found a solution in " + (endTime - startTime) + " ms");
     }
 
+    /**
+     * Splits the dynamic ordering search into work units, the branches at
+     * the given depth that the pruners let through. A unit is the
+     * preplacement of this search plus the placements on the way to its
+     * branch, so a search with the unit as preplacement searches just that
+     * branch. Every solution lies in one of the units (see
+     * dancinglinks.WorkQueue).
+     *
+     * @param depth number of placements per unit
+     * @return the units, in search order
+     */
+    public List<Preplacement> splitPrefixes(int depth) {
+        splitDepth = depth;
+        units = new ArrayList<>();
+        try {
+            run();
+            return units;
+        } finally {
+            units = null;
+        }
+    }
+
+    /**
+     * @return the tiling found by the last search as field[x][y] piece IDs,
+     *         or null if none was found
+     */
+    public int[][] getSolution() {
+        return solution;
+    }
+
+    /**
+     * @return the number of nodes the last dynamic ordering search visited
+     */
+    public long getNodeCount() {
+        return nodes;
+    }
+
+    // Runs the search, also for splitPrefixes
+    private boolean run() {
+        int[][] field = new int[horiGridSize][vertGridSize];
+        for (int i = 0; i < field.length; i++) {
+            for (int j = 0; j < field[i].length; j++) {
+                field[i][j] = -1;
+            }
+        }
+        // start from the board with the fixed pieces and blocked cells filled in
+        pieces = input;
+        if (preplacement != null) {
+            field = preplacement.field();
+            pieces = preplacement.remainingPieces(input);
+        }
+        int[] pieceIDs = new int[pieces.length];
+        for (int i = 0; i < pieces.length; i++) {
+            pieceIDs[i] = pentominoKeyToID.get(pieces[i]);
+        }
+        activePruners = pruners != null ? pruners
+                : Pruner.standardPruners(horiGridSize, vertGridSize, PentominoDatabase.data, pieceIDs);
+        if (preplacement != null) {
+            preplacement.fill(activePruners);
+        }
+        boolean foundSolution;
+        try {
+            if (units != null && !dynamicOrdering) {
+                throw new IllegalStateException("Only the dynamic ordering search can be split");
+            }
+            if (dynamicOrdering) {
+                PlacementIndex index = PlacementIndex.forPentominoes(horiGridSize, vertGridSize, pieces);
+                PlacementState state = new PlacementState(index);
+                if (preplacement != null) {
+                    preplacement.fill(state);
+                }
+                table = null;
+                // a unit that is cut off would be stored as a failure
+                if (useTranspositionTable && units == null) {
+                    int maxCount = 0;
+                    for (int count : index.typeCount) {
+                        maxCount = Math.max(maxCount, count);
+                    }
+                    table = new TranspositionTable(horiGridSize * vertGridSize, index.typeCount.length, maxCount,
+                            tableSizeLog2, 0);
+                    stateHash = table.piecesKey(index.typeCount);
+                }
+                nodes = 0;
+                path = new int[pieces.length];
+                depth = 0;
+                foundSolution = orderedRecursiveSearch(field, state);
+                if (table != null && verbose) {
+                    table.printStatistics();
+                }
+            } else {
+                foundSolution = optimizedRecursiveSearch(field, 0, ui);
+            }
+        } finally {
+            // user pruners are used again by the next search
+            if (preplacement != null) {
+                preplacement.unfill(activePruners);
+            }
+        }
+        solution = foundSolution ? field : null;
+        return foundSolution;
+    }
+
     /**
      * Performs an optimized recursive search.
      * Iterates through all possible mutations of the pentomino and tries to place
@@ -75,11 +207,11 @@ public class MoreOptimizedBacktrackingSearch {
      * @return true if a solution is found, false otherwise
      */
     private boolean optimizedRecursiveSearch(int[][] field, int pentominoIndex, UI ui) {
-        if (pentominoIndex == input.length) {
+        if (pentominoIndex == pieces.length) {
             return true; // all pentominos have been placed, the solution is found
         }
 
-        int pentominoID = pentominoKeyToID.get(input[pentominoIndex]);
+        int pentominoID = pentominoKeyToID.get(pieces[pentominoIndex]);
 
         for (int mutation = 0; mutation < PentominoDatabase.data[pentominoID].length; mutation++) {
             int[][] pieceToPlace = PentominoDatabase.data[pentominoID][mutation];
@@ -94,8 +226,13 @@ public class MoreOptimizedBacktrackingSearch {
                             ui.setState(field);
                         }
 
-                        if (!hasDeadSpot(field) && optimizedRecursiveSearch(field, pentominoIndex + 1, ui)) {
-                            return true; // Found a solution
+                        int[] cells = cellsOf(pieceToPlace, x, y);
+                        boolean found = placeInPruners(pentominoID, cells) && !hasDeadSpot(field)
+                                && optimizedRecursiveSearch(field, pentominoIndex + 1, ui);
+                        // also on success, so the pruners are empty for the next search
+                        removeFromPruners(pentominoID, cells);
+                        if (found) {
+                            return true; // Found a solution, the field keeps it
                         }
 
                         removePiece(field, pieceToPlace, x, y); // Backtrack
@@ -106,6 +243,151 @@ public class MoreOptimizedBacktrackingSearch {
         return false; // Couldn't place this pentomino
     }
 
+    /**
+     * Performs a recursive search with dynamic ordering.
+     * Instead of placing the pentominoes in input order, every step branches on
+     * whichever remaining pentomino or empty cell has the fewest possible
+     * placements. The counts are kept up to date by the PlacementState while
+     * placing and removing pieces, so they are never recomputed. A cell or
+     * pentomino without any possible placement ends the branch at once.
+     * If a dead spot is found on the field, the method backtracks.
+     * 
+     * @param field a matrix representing the board to be fulfilled with
+     *              pentominoes
+     * @param state the placements that are still possible
+     * @return true if a solution is found, false otherwise
+     */
+    private boolean orderedRecursiveSearch(int[][] field, PlacementState state) {
+        int[] options = state.mostConstrained();
+        if (units != null && (options == null || (depth == splitDepth && options.length > 0))) {
+            units.add(unit(state.index));
+            return false; // the branch is a work unit, it is not searched here
+        }
+        if (options == null) {
+            return true; // all pentominos have been placed, the solution is found
+        }
+        if (table != null && table.isFailure(stateHash)) {
+            return false; // this state was searched before without a solution
+        }
+        long startNodes = nodes++;
+        PlacementIndex index = state.index;
+
+        for (int p : options) {
+            if (!state.isPossible(p)) {
+                continue;
+            }
+            int type = index.placementType[p];
+            int[][] pieceToPlace = index.typeMutations[type][index.placementMutation[p]];
+            int x = index.placementX[p];
+            int y = index.placementY[p];
+
+            long change = hashChange(state, p);
+            state.place(p);
+            stateHash ^= change;
+            addPiece(field, pieceToPlace, index.typeIDs[type], x, y);
+
+            if (ui != null) {
+                ui.setState(field);
+            }
+
+            int[] cells = index.placementCells[p];
+            path[depth++] = p;
+            boolean found = placeInPruners(index.typeIDs[type], cells) && !hasDeadSpot(field)
+                    && orderedRecursiveSearch(field, state);
+            // also on success, so the pruners are empty for the next search
+            removeFromPruners(index.typeIDs[type], cells);
+            if (found) {
+                return true; // Found a solution, the field keeps it
+            }
+            depth--;
+
+            removePiece(field, pieceToPlace, x, y); // Backtrack
+            state.unplace(p);
+            stateHash ^= change;
+        }
+        if (table != null) {
+            table.storeFailure(stateHash, nodes - startNodes);
+        }
+        return false; // No placement of the chosen piece or cell works
+    }
+
+    /**
+     * @return the preplacement of the search plus the placements on the path
+     */
+    private Preplacement unit(PlacementIndex index) {
+        Preplacement unit = preplacement != null
+                ? Preplacement.parse(horiGridSize, vertGridSize, preplacement.toString())
+                : new Preplacement(horiGridSize, vertGridSize);
+        for (int i = 0; i < depth; i++) {
+            int p = path[i];
+            unit.force(Pieces.idToCharacter(index.typeIDs[index.placementType[p]]), index.placementMutation[p],
+                    index.placementX[p], index.placementY[p]);
+        }
+        return unit;
+    }
+
+    /**
+     * @return what placing p changes in the hash of the state, placing and
+     *         removing it again are both one XOR with this value
+     */
+    private long hashChange(PlacementState state, int p) {
+        if (table == null) {
+            return 0;
+        }
+        PlacementIndex index = state.index;
+        int type = index.placementType[p];
+        int left = state.getRemaining(type);
+        long change = table.pieceKey(type, left) ^ table.pieceKey(type, left - 1);
+        for (int c : index.placementCells[p]) {
+            change ^= table.cellKey(c);
+        }
+        return change;
+    }
+
+    /**
+     * Tells every pruner about a placed pentomino
+     * 
+     * @param pentominoID ID of the placed pentomino
+     * @param cells       the cells it covers
+     * @return false if one of the pruners rejects the board
+     */
+    private boolean placeInPruners(int pentominoID, int[] cells) {
+        for (Pruner pruner : activePruners) {
+            pruner.place(pentominoID, cells);
+        }
+        for (Pruner pruner : activePruners) {
+            if (!pruner.isFeasible()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Tells every pruner that the last placed pentomino was removed
+     */
+    private void removeFromPruners(int pentominoID, int[] cells) {
+        for (int i = activePruners.size() - 1; i >= 0; i--) {
+            activePruners.get(i).remove(pentominoID, cells);
+        }
+    }
+
+    /**
+     * @return the cells (x * vertGridSize + y) a piece covers at a position
+     */
+    private int[] cellsOf(int[][] piece, int x, int y) {
+        int[] cells = new int[5];
+        int k = 0;
+        for (int i = 0; i < piece.length; i++) {
+            for (int j = 0; j < piece[i].length; j++) {
+                if (piece[i][j] == 1) {
+                    cells[k++] = (x + i) * vertGridSize + y + j;
+                }
+            }
+        }
+        return cells;
+    }
+
     /**
      * Checks if the given field has a dead spot, i.e. a region of empty cells that
      * is not a multiple of 5 in size.
@@ -284,6 +566,7 @@ public class MoreOptimizedBacktrackingSearch {
         // TESTING CODE
         MoreOptimizedBacktrackingSearch search = new MoreOptimizedBacktrackingSearch();
         search.getUserInput();
+        search.verbose = true;
         // search.horiGridSize = 5;
         // search.vertGridSize = 12;
         // search.input = new char[] { 'X', 'I', 'Z', 'T', 'U', 'V', 'W', 'Y', 'L', 'P',
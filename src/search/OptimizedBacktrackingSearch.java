@@ -19,6 +19,11 @@ public class OptimizedBacktrackingSearch {
     public int horiGridSize;
     public int vertGridSize;
     public char[] input;
+    // Branch on the most constrained piece or cell instead of the input order
+    public boolean dynamicOrdering = true;
+    // Pieces fixed in place and blocked cells, null for none. The fixed pieces
+    // have to be part of input, the search places the others.
+    public Preplacement preplacement;
 
     // This key-value store maps a pentomino letter to its ID
     // This is used to get the ID of a pentomino in constant time compared to using
@@ -42,6 +47,9 @@ public class OptimizedBacktrackingSearch {
     // Create the UI object
     public UI ui;
 
+    // the pieces the running search still has to place
+    private char[] pieces;
+
     public void search() {
         int[][] field = new int[horiGridSize][vertGridSize];
         for (int i = 0; i < field.length; i++) {
@@ -49,8 +57,23 @@ public class OptimizedBacktrackingSearch {
                 field[i][j] = -1;
             }
         }
+        // start from the board with the fixed pieces and blocked cells filled in
+        pieces = input;
+        if (preplacement != null) {
+            field = preplacement.field();
+            pieces = preplacement.remainingPieces(input);
+        }
         long startTime = System.currentTimeMillis();
-        boolean foundSolution = optimizedRecursiveSearch(field, 0, ui);
+        boolean foundSolution;
+        if (dynamicOrdering) {
+            PlacementState state = new PlacementState(PlacementIndex.forPentominoes(horiGridSize, vertGridSize, pieces));
+            if (preplacement != null) {
+                preplacement.fill(state);
+            }
+            foundSolution = orderedRecursiveSearch(field, state);
+        } else {
+            foundSolution = optimizedRecursiveSearch(field, 0, ui);
+        }
         long endTime = System.currentTimeMillis();
         if (foundSolution) {
             System.out.println("Solution found");
@@ -75,11 +98,11 @@ public class OptimizedBacktrackingSearch {
      * @return true if a solution is found, false otherwise
      */
     private boolean optimizedRecursiveSearch(int[][] field, int pentominoIndex, UI ui) {
-        if (pentominoIndex == input.length) {
+        if (pentominoIndex == pieces.length) {
             return true; // all pentominos have been placed, the solution is found
         }
 
-        int pentominoID = pentominoKeyToID.get(input[pentominoIndex]);
+        int pentominoID = pentominoKeyToID.get(pieces[pentominoIndex]);
 
         for (int mutation = 0; mutation < PentominoDatabase.data[pentominoID].length; mutation++) {
             int[][] pieceToPlace = PentominoDatabase.data[pentominoID][mutation];
@@ -106,6 +129,48 @@ public class OptimizedBacktrackingSearch {
         return false; // Couldn't place this pentomino
     }
 
+    /**
+     * Performs a recursive search with dynamic ordering.
+     * Instead of placing the pentominoes in input order, every step branches on
+     * whichever remaining pentomino or empty cell has the fewest possible
+     * placements. The counts are kept up to date by the PlacementState while
+     * placing and removing pieces, so they are never recomputed. A cell or
+     * pentomino without any possible placement ends the branch at once.
+     * 
+     * @param field a matrix representing the board to be fulfilled with
+     *              pentominoes
+     * @param state the placements that are still possible
+     * @return true if a solution is found, false otherwise
+     */
+    private boolean orderedRecursiveSearch(int[][] field, PlacementState state) {
+        int[] options = state.mostConstrained();
+        if (options == null) {
+            return true; // all pentominos have been placed, the solution is found
+        }
+        PlacementIndex index = state.index;
+
+        for (int p : options) {
+            if (!state.isPossible(p)) {
+                continue;
+            }
+            int type = index.placementType[p];
+            int[][] pieceToPlace = index.typeMutations[type][index.placementMutation[p]];
+            int x = index.placementX[p];
+            int y = index.placementY[p];
+
+            state.place(p);
+            addPiece(field, pieceToPlace, index.typeIDs[type], x, y);
+
+            if (orderedRecursiveSearch(field, state)) {
+                return true; // Found a solution
+            }
+
+            removePiece(field, pieceToPlace, x, y); // Backtrack
+            state.unplace(p);
+        }
+        return false; // No placement of the chosen piece or cell works
+    }
+
     /**
      * Checks if the given field has a dead spot, i.e. a single empty cell
      * surrounded by full cells.
@@ -0,0 +1,92 @@
+package search;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Helpers shared by the search algorithms for turning pentomino letters and
+ * mutations into the forms they search with.
+ */
+public class Pieces {
+
+    // This key-value store maps a pentomino letter to its ID
+    private static final Map<Character, Integer> pentominoKeyToID = new HashMap<>();
+    static {
+        pentominoKeyToID.put('X', 0);
+        pentominoKeyToID.put('I', 1);
+        pentominoKeyToID.put('Z', 2);
+        pentominoKeyToID.put('T', 3);
+        pentominoKeyToID.put('U', 4);
+        pentominoKeyToID.put('V', 5);
+        pentominoKeyToID.put('W', 6);
+        pentominoKeyToID.put('Y', 7);
+        pentominoKeyToID.put('L', 8);
+        pentominoKeyToID.put('P', 9);
+        pentominoKeyToID.put('N', 10);
+        pentominoKeyToID.put('F', 11);
+    }
+
+    /**
+     * @param character a character representating a pentomino
+     * @return the corresponding ID in PentominoDatabase
+     * @throws IllegalArgumentException if the character is not a pentomino
+     */
+    public static int characterToID(char character) {
+        Integer id = pentominoKeyToID.get(Character.toUpperCase(character));
+        if (id == null) {
+            throw new IllegalArgumentException("Unknown pentomino " + character);
+        }
+        return id;
+    }
+
+    /**
+     * @param id an ID of PentominoDatabase
+     * @return the letter of the pentomino
+     */
+    public static char idToCharacter(int id) {
+        for (Map.Entry<Character, Integer> entry : pentominoKeyToID.entrySet()) {
+            if (entry.getValue() == id) {
+                return entry.getKey();
+            }
+        }
+        throw new IllegalArgumentException("Unknown pentomino ID " + id);
+    }
+
+    /**
+     * Lists the cells of every mutation relative to its first cell, the
+     * occupied cell with the smallest x and then the smallest y. A piece that
+     * has to cover a given empty cell first can then be placed by adding the
+     * offsets to that cell.
+     * 
+     * @param mutations the mutations of one piece, as in PentominoDatabase.data
+     * @return per mutation the offsets {dx, dy} of its cells, the first one is
+     *         always {0, 0}
+     */
+    public static int[][][] anchoredMutations(int[][][] mutations) {
+        int[][][] result = new int[mutations.length][][];
+        for (int m = 0; m < mutations.length; m++) {
+            int[][] piece = mutations[m];
+            int count = 0;
+            for (int[] row : piece) {
+                for (int value : row) {
+                    count += value;
+                }
+            }
+            result[m] = new int[count][];
+            int k = 0;
+            int anchorY = -1;
+            for (int i = 0; i < piece.length; i++) {
+                for (int j = 0; j < piece[i].length; j++) {
+                    if (piece[i][j] == 1) {
+                        if (anchorY == -1) {
+                            // the first row of a mutation is never empty
+                            anchorY = j;
+                        }
+                        result[m][k++] = new int[] { i, j - anchorY };
+                    }
+                }
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,188 @@
+package search;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import pentominoes.PentominoDatabase;
+
+/**
+ * Lists every placement of every piece type on a board once, so the searches
+ * can work with placement numbers instead of scanning the field.
+ * 
+ * A cell is numbered x * cols + y, where x indexes field[x] and y field[x][y]
+ * as in the other search classes. Pieces of the same type are grouped, the
+ * number of pieces of a type is its count.
+ */
+public class PlacementIndex {
+    public final int rows;
+    public final int cols;
+    // ID in the shape table of every type, and how many pieces of it there are
+    public final int[] typeIDs;
+    public final int[] typeCount;
+    // the mutations of every type as in PentominoDatabase.data
+    public final int[][][][] typeMutations;
+
+    // per placement: its type, mutation, position and sorted cells
+    public final int[] placementType;
+    public final int[] placementMutation;
+    public final int[] placementX;
+    public final int[] placementY;
+    public final int[][] placementCells;
+
+    // placements covering every cell and placements of every type
+    public final int[][] cellPlacements;
+    public final int[][] typePlacements;
+
+    /**
+     * @param rows     size of the field in x
+     * @param cols     size of the field in y
+     * @param shapes   mutations of every piece ID, e.g. PentominoDatabase.data
+     * @param pieceIDs ID of every input piece, may repeat
+     */
+    public PlacementIndex(int rows, int cols, int[][][][] shapes, int[] pieceIDs) {
+        this.rows = rows;
+        this.cols = cols;
+
+        int[] sorted = pieceIDs.clone();
+        Arrays.sort(sorted);
+        ArrayList<Integer> ids = new ArrayList<>();
+        ArrayList<Integer> counts = new ArrayList<>();
+        for (int id : sorted) {
+            if (!ids.isEmpty() && ids.get(ids.size() - 1) == id) {
+                counts.set(counts.size() - 1, counts.get(counts.size() - 1) + 1);
+            } else {
+                ids.add(id);
+                counts.add(1);
+            }
+        }
+        typeIDs = ids.stream().mapToInt(i -> i).toArray();
+        typeCount = counts.stream().mapToInt(i -> i).toArray();
+        typeMutations = new int[typeIDs.length][][][];
+
+        ArrayList<int[]> info = new ArrayList<>();
+        ArrayList<int[]> cells = new ArrayList<>();
+        for (int t = 0; t < typeIDs.length; t++) {
+            typeMutations[t] = shapes[typeIDs[t]];
+            for (int m = 0; m < typeMutations[t].length; m++) {
+                int[][] piece = typeMutations[t][m];
+                for (int x = 0; x + piece.length <= rows; x++) {
+                    for (int y = 0; y + piece[0].length <= cols; y++) {
+                        info.add(new int[] { t, m, x, y });
+                        cells.add(cellsOf(piece, x, y));
+                    }
+                }
+            }
+        }
+        int count = info.size();
+        placementType = new int[count];
+        placementMutation = new int[count];
+        placementX = new int[count];
+        placementY = new int[count];
+        placementCells = cells.toArray(new int[0][]);
+        for (int p = 0; p < count; p++) {
+            placementType[p] = info.get(p)[0];
+            placementMutation[p] = info.get(p)[1];
+            placementX[p] = info.get(p)[2];
+            placementY[p] = info.get(p)[3];
+        }
+
+        int[] perCell = new int[rows * cols];
+        int[] perType = new int[typeIDs.length];
+        for (int p = 0; p < count; p++) {
+            perType[placementType[p]]++;
+            for (int c : placementCells[p]) {
+                perCell[c]++;
+            }
+        }
+        cellPlacements = new int[rows * cols][];
+        for (int c = 0; c < perCell.length; c++) {
+            cellPlacements[c] = new int[perCell[c]];
+        }
+        typePlacements = new int[typeIDs.length][];
+        for (int t = 0; t < perType.length; t++) {
+            typePlacements[t] = new int[perType[t]];
+        }
+        Arrays.fill(perCell, 0);
+        Arrays.fill(perType, 0);
+        for (int p = 0; p < count; p++) {
+            int t = placementType[p];
+            typePlacements[t][perType[t]++] = p;
+            for (int c : placementCells[p]) {
+                cellPlacements[c][perCell[c]++] = p;
+            }
+        }
+    }
+
+    /**
+     * Index of the pentominoes given by letter
+     * 
+     * @param rows  size of the field in x
+     * @param cols  size of the field in y
+     * @param input pentomino letters, may repeat
+     * @return the index
+     */
+    public static PlacementIndex forPentominoes(int rows, int cols, char[] input) {
+        int[] ids = new int[input.length];
+        for (int i = 0; i < input.length; i++) {
+            ids[i] = Pieces.characterToID(input[i]);
+        }
+        return new PlacementIndex(rows, cols, PentominoDatabase.data, ids);
+    }
+
+    private int[] cellsOf(int[][] piece, int x, int y) {
+        int count = 0;
+        for (int[] row : piece) {
+            for (int value : row) {
+                count += value;
+            }
+        }
+        int[] result = new int[count];
+        int k = 0;
+        for (int i = 0; i < piece.length; i++) {
+            for (int j = 0; j < piece[i].length; j++) {
+                if (piece[i][j] == 1) {
+                    result[k++] = (x + i) * cols + y + j;
+                }
+            }
+        }
+        return result;
+    }
+
+    public int placementCount() {
+        return placementType.length;
+    }
+
+    /**
+     * @return the total number of pieces
+     */
+    public int pieceCount() {
+        int total = 0;
+        for (int count : typeCount) {
+            total += count;
+        }
+        return total;
+    }
+
+    /**
+     * @param type a type index
+     * @return the number of cells of a piece of that type
+     */
+    public int area(int type) {
+        return typePlacements[type].length == 0 ? cellsOf(typeMutations[type][0], 0, 0).length
+                : placementCells[typePlacements[type][0]].length;
+    }
+
+    /**
+     * Looks up a placement
+     * 
+     * @return the placement number, or -1 if it does not exist on this board
+     */
+    public int find(int type, int mutation, int x, int y) {
+        for (int p : typePlacements[type]) {
+            if (placementMutation[p] == mutation && placementX[p] == x && placementY[p] == y) {
+                return p;
+            }
+        }
+        return -1;
+    }
+}
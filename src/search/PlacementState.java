@@ -0,0 +1,199 @@
+package search;
+
+/**
+ * The state of a search over a PlacementIndex: which cells are filled, how
+ * many pieces of every type are left and which placements are still
+ * possible.
+ * 
+ * For every empty cell and every type the number of possible placements is
+ * kept up to date while placing and removing pieces, so the most constrained
+ * choice can be found without trying placements again. A placement is
+ * possible while nothing blocks it; the number of blockers (filled cells it
+ * needs, or its type being used up) is counted per placement, so removing a
+ * piece exactly undoes placing it. Pieces have to be removed in the reverse
+ * order they were placed.
+ */
+public class PlacementState {
+    public final PlacementIndex index;
+
+    private final int[] blockers;
+    private final int[] cellOptions;
+    private final int[] typeOptions;
+    private final int[] remaining;
+    private final boolean[] filled;
+    private int emptyCells;
+    private int remainingArea;
+    private int piecesLeft;
+
+    public PlacementState(PlacementIndex index) {
+        this.index = index;
+        blockers = new int[index.placementCount()];
+        cellOptions = new int[index.rows * index.cols];
+        typeOptions = new int[index.typeIDs.length];
+        remaining = index.typeCount.clone();
+        filled = new boolean[index.rows * index.cols];
+        emptyCells = index.rows * index.cols;
+        for (int c = 0; c < cellOptions.length; c++) {
+            cellOptions[c] = index.cellPlacements[c].length;
+        }
+        for (int t = 0; t < typeOptions.length; t++) {
+            typeOptions[t] = index.typePlacements[t].length;
+            remainingArea += remaining[t] * index.area(t);
+            piecesLeft += remaining[t];
+        }
+    }
+
+    /**
+     * Puts a piece on the board. The placement has to be possible.
+     * 
+     * @param p placement number
+     */
+    public void place(int p) {
+        int type = index.placementType[p];
+        for (int c : index.placementCells[p]) {
+            fill(c);
+        }
+        remaining[type]--;
+        remainingArea -= index.placementCells[p].length;
+        piecesLeft--;
+        if (remaining[type] == 0) {
+            for (int q : index.typePlacements[type]) {
+                block(q);
+            }
+        }
+    }
+
+    /**
+     * Takes a piece off the board again, the reverse of place.
+     * 
+     * @param p placement number
+     */
+    public void unplace(int p) {
+        int type = index.placementType[p];
+        if (remaining[type] == 0) {
+            for (int q : index.typePlacements[type]) {
+                unblock(q);
+            }
+        }
+        remaining[type]++;
+        remainingArea += index.placementCells[p].length;
+        piecesLeft++;
+        for (int c : index.placementCells[p]) {
+            empty(c);
+        }
+    }
+
+    /**
+     * Marks a cell as filled without a piece, e.g. a cell outside the board.
+     * Undo with empty.
+     */
+    public void fill(int cell) {
+        filled[cell] = true;
+        emptyCells--;
+        for (int q : index.cellPlacements[cell]) {
+            block(q);
+        }
+    }
+
+    /**
+     * The reverse of fill.
+     */
+    public void empty(int cell) {
+        for (int q : index.cellPlacements[cell]) {
+            unblock(q);
+        }
+        filled[cell] = false;
+        emptyCells++;
+    }
+
+    private void block(int q) {
+        if (blockers[q]++ == 0) {
+            for (int c : index.placementCells[q]) {
+                cellOptions[c]--;
+            }
+            typeOptions[index.placementType[q]]--;
+        }
+    }
+
+    private void unblock(int q) {
+        if (--blockers[q] == 0) {
+            for (int c : index.placementCells[q]) {
+                cellOptions[c]++;
+            }
+            typeOptions[index.placementType[q]]++;
+        }
+    }
+
+    public boolean isPossible(int p) {
+        return blockers[p] == 0;
+    }
+
+    public boolean isFilled(int cell) {
+        return filled[cell];
+    }
+
+    public int getRemaining(int type) {
+        return remaining[type];
+    }
+
+    public int getPiecesLeft() {
+        return piecesLeft;
+    }
+
+    public int getEmptyCells() {
+        return emptyCells;
+    }
+
+    /**
+     * @return the number of possible placements covering a cell
+     */
+    public int getCellOptions(int cell) {
+        return cellOptions[cell];
+    }
+
+    /**
+     * @return the number of possible placements of a type
+     */
+    public int getTypeOptions(int type) {
+        return typeOptions[type];
+    }
+
+    /**
+     * Finds the most constrained choice: the remaining piece type or the empty
+     * cell with the fewest possible placements. Cells are only considered
+     * when the pieces exactly fill the empty cells, otherwise a cell may stay
+     * empty.
+     * 
+     * @return the placements to branch over (check isPossible for each), an
+     *         empty array if some piece or cell can not be placed or covered
+     *         any more, or null if all pieces are placed
+     */
+    public int[] mostConstrained() {
+        if (piecesLeft == 0) {
+            return null;
+        }
+        int best = Integer.MAX_VALUE;
+        int[] options = null;
+        if (remainingArea == emptyCells) {
+            for (int c = 0; c < cellOptions.length; c++) {
+                if (!filled[c] && cellOptions[c] < best) {
+                    best = cellOptions[c];
+                    options = index.cellPlacements[c];
+                    if (best == 0) {
+                        return new int[0];
+                    }
+                }
+            }
+        }
+        for (int t = 0; t < typeOptions.length; t++) {
+            if (remaining[t] > 0 && typeOptions[t] < best) {
+                best = typeOptions[t];
+                options = index.typePlacements[t];
+                if (best == 0) {
+                    return new int[0];
+                }
+            }
+        }
+        return options;
+    }
+}
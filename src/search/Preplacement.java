@@ -0,0 +1,258 @@
+package search;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import pentominoes.PentominoDatabase;
+
+/**
+ * Pieces fixed in place and blocked cells of a puzzle, e.g. "the X must be in
+ * the centre". The searches start from a board where these cells are already
+ * filled and only place the other pieces, so every constraint makes the
+ * search smaller.
+ *
+ * Positions are as in the searches: a mutation of PentominoDatabase.data
+ * placed with its top left corner at field[x][y], cells numbered
+ * x * cols + y.
+ *
+ * Can be written as text, entries separated by spaces:
+ * - X0@2,4 puts mutation 0 of the X at x = 2, y = 4
+ * - X0@c puts it in the centre of the board (rounded down)
+ * - #3,3 blocks the cell x = 3, y = 3
+ */
+public class Preplacement {
+    // value of a blocked cell in a field
+    public static final int BLOCKED = -2;
+
+    public final int rows;
+    public final int cols;
+    // piece ID, mutation, x and y of every fixed piece
+    private final List<int[]> forced = new ArrayList<>();
+    private final List<Integer> blocked = new ArrayList<>();
+    private final int[][] field;
+
+    public Preplacement(int rows, int cols) {
+        this.rows = rows;
+        this.cols = cols;
+        field = new int[rows][cols];
+        for (int[] row : field) {
+            Arrays.fill(row, -1);
+        }
+    }
+
+    /**
+     * Reads the text form described above.
+     */
+    public static Preplacement parse(int rows, int cols, String text) {
+        Preplacement preplacement = new Preplacement(rows, cols);
+        for (String entry : text.trim().split("\\s+")) {
+            if (entry.isEmpty()) {
+                continue;
+            }
+            try {
+                if (entry.charAt(0) == '#') {
+                    String[] position = entry.substring(1).split(",");
+                    preplacement.block(Integer.parseInt(position[0]), Integer.parseInt(position[1]));
+                    continue;
+                }
+                int at = entry.indexOf('@');
+                char piece = Character.toUpperCase(entry.charAt(0));
+                int mutation = Integer.parseInt(entry.substring(1, at));
+                String position = entry.substring(at + 1);
+                if (position.equals("c")) {
+                    preplacement.forceCentred(piece, mutation);
+                } else {
+                    String[] xy = position.split(",");
+                    preplacement.force(piece, mutation, Integer.parseInt(xy[0]), Integer.parseInt(xy[1]));
+                }
+            } catch (NumberFormatException | IndexOutOfBoundsException e) {
+                throw new IllegalArgumentException("Can not read " + entry, e);
+            }
+        }
+        return preplacement;
+    }
+
+    /**
+     * Blocks a cell, no piece may cover it.
+     */
+    public void block(int x, int y) {
+        checkFree(x, y);
+        field[x][y] = BLOCKED;
+        blocked.add(x * cols + y);
+    }
+
+    /**
+     * Fixes a piece in place.
+     *
+     * @throws IllegalArgumentException if it leaves the board or overlaps a
+     *                                  cell that is already taken
+     */
+    public void force(char piece, int mutation, int x, int y) {
+        int id = Pieces.characterToID(piece);
+        int[][] shape = PentominoDatabase.data[id][mutation];
+        for (int i = 0; i < shape.length; i++) {
+            for (int j = 0; j < shape[i].length; j++) {
+                if (shape[i][j] == 1) {
+                    checkFree(x + i, y + j);
+                }
+            }
+        }
+        for (int i = 0; i < shape.length; i++) {
+            for (int j = 0; j < shape[i].length; j++) {
+                if (shape[i][j] == 1) {
+                    field[x + i][y + j] = id;
+                }
+            }
+        }
+        forced.add(new int[] { id, mutation, x, y });
+    }
+
+    /**
+     * Fixes a piece in the middle of the board.
+     */
+    public void forceCentred(char piece, int mutation) {
+        int[][] shape = PentominoDatabase.data[Pieces.characterToID(piece)][mutation];
+        force(piece, mutation, (rows - shape.length) / 2, (cols - shape[0].length) / 2);
+    }
+
+    private void checkFree(int x, int y) {
+        if (x < 0 || x >= rows || y < 0 || y >= cols) {
+            throw new IllegalArgumentException("Cell " + x + "," + y + " is outside the board");
+        }
+        if (field[x][y] != -1) {
+            throw new IllegalArgumentException("Cell " + x + "," + y + " is already taken");
+        }
+    }
+
+    /**
+     * @return piece ID, mutation, x and y of every fixed piece
+     */
+    public List<int[]> getForced() {
+        return forced;
+    }
+
+    /**
+     * @return the blocked cells
+     */
+    public int[] getBlocked() {
+        return blocked.stream().mapToInt(c -> c).toArray();
+    }
+
+    /**
+     * @return the cells of the k-th fixed piece, sorted
+     */
+    public int[] forcedCells(int k) {
+        int[] f = forced.get(k);
+        int[][] shape = PentominoDatabase.data[f[0]][f[1]];
+        List<Integer> cells = new ArrayList<>();
+        for (int i = 0; i < shape.length; i++) {
+            for (int j = 0; j < shape[i].length; j++) {
+                if (shape[i][j] == 1) {
+                    cells.add((f[2] + i) * cols + f[3] + j);
+                }
+            }
+        }
+        return cells.stream().mapToInt(c -> c).toArray();
+    }
+
+    /**
+     * @return all cells that are filled before the search starts, blocked or
+     *         under a fixed piece
+     */
+    public int[] filledCells() {
+        List<Integer> cells = new ArrayList<>();
+        for (int c = 0; c < rows * cols; c++) {
+            if (field[c / cols][c % cols] != -1) {
+                cells.add(c);
+            }
+        }
+        return cells.stream().mapToInt(c -> c).toArray();
+    }
+
+    /**
+     * @return a copy of the field with the fixed pieces (their piece IDs) and
+     *         the blocked cells (BLOCKED), -1 for the other cells
+     */
+    public int[][] field() {
+        int[][] copy = new int[rows][];
+        for (int x = 0; x < rows; x++) {
+            copy[x] = field[x].clone();
+        }
+        return copy;
+    }
+
+    /**
+     * @param input the pieces of the puzzle
+     * @return the pieces that are left to place once the fixed ones are taken
+     *         out
+     * @throws IllegalArgumentException if a fixed piece is not in the input
+     */
+    public char[] remainingPieces(char[] input) {
+        List<Character> left = new ArrayList<>();
+        for (char c : input) {
+            left.add(c);
+        }
+        for (int[] f : forced) {
+            int i = 0;
+            while (i < left.size() && Pieces.characterToID(left.get(i)) != f[0]) {
+                i++;
+            }
+            if (i == left.size()) {
+                throw new IllegalArgumentException("A fixed piece is not one of the input pieces");
+            }
+            left.remove(i);
+        }
+        char[] result = new char[left.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = left.get(i);
+        }
+        return result;
+    }
+
+    /**
+     * Puts the filled cells into a PlacementState of the remaining pieces, see
+     * remainingPieces. The state has to be new.
+     */
+    public void fill(PlacementState state) {
+        for (int c : filledCells()) {
+            state.fill(c);
+        }
+    }
+
+    /**
+     * Tells pruners made for the remaining pieces about the filled cells.
+     */
+    public void fill(List<Pruner> pruners) {
+        int[] cells = filledCells();
+        for (Pruner pruner : pruners) {
+            pruner.fill(cells);
+        }
+    }
+
+    /**
+     * Empties the filled cells in pruners filled with fill(List) again.
+     */
+    public void unfill(List<Pruner> pruners) {
+        int[] cells = filledCells();
+        for (int i = pruners.size() - 1; i >= 0; i--) {
+            pruners.get(i).unfill(cells);
+        }
+    }
+
+    /**
+     * @return the text form described above, parse reads it back
+     */
+    @Override
+    public String toString() {
+        StringBuilder text = new StringBuilder();
+        for (int cell : blocked) {
+            text.append('#').append(cell / cols).append(',').append(cell % cols).append(' ');
+        }
+        for (int[] f : forced) {
+            text.append(Pieces.idToCharacter(f[0])).append(f[1]).append('@').append(f[2]).append(',').append(f[3])
+                    .append(' ');
+        }
+        return text.toString().trim();
+    }
+}
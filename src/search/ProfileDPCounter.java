@@ -0,0 +1,249 @@
+package search;
+// Counts the tilings of narrow boards with a transfer matrix over the frontier
+
+// The board is filled cell by cell, column after column. Every cell that is
+// still empty when it is reached has to be the first cell of a piece, so the
+// only thing that matters for the rest of the board is which of the next few
+// cells are already covered (the profile) and which pieces are used. The
+// number of ways to reach every such state is kept in a map, so the work per
+// column does not depend on the length of the board.
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import pentominoes.PentominoDatabase;
+
+public class ProfileDPCounter {
+
+    // number of cells per column, the short side of the board
+    public final int height;
+
+    private final int[] typeIDs;
+    // pieces of every type, -1 for an unlimited supply
+    private final int[] typeCount;
+    // used pieces are stored as one number in mixed radix count + 1
+    private final long[] radix;
+    private final int window;
+
+    // per row of the first cell, the cells every mutation covers as a bit
+    // mask relative to that cell, and the type of the mutation
+    private final long[][] masks;
+    private final int[][] maskTypes;
+
+    /**
+     * @param height    number of cells per column
+     * @param shapes    mutations of every piece ID, e.g. PentominoDatabase.data
+     * @param pieceIDs  the pieces that may be used, an ID can appear more than
+     *                  once
+     * @param unlimited true if every piece can be used any number of times
+     */
+    public ProfileDPCounter(int height, int[][][][] shapes, int[] pieceIDs, boolean unlimited) {
+        this.height = height;
+        int[] countByID = new int[shapes.length];
+        for (int id : pieceIDs) {
+            countByID[id]++;
+        }
+        List<Integer> ids = new ArrayList<>();
+        for (int id = 0; id < countByID.length; id++) {
+            if (countByID[id] > 0) {
+                ids.add(id);
+            }
+        }
+        typeIDs = ids.stream().mapToInt(i -> i).toArray();
+        typeCount = new int[typeIDs.length];
+        radix = new long[typeIDs.length];
+        long code = 1;
+        for (int t = 0; t < typeIDs.length; t++) {
+            typeCount[t] = unlimited ? -1 : countByID[typeIDs[t]];
+            radix[t] = code;
+            if (!unlimited) {
+                code *= typeCount[t] + 1;
+            }
+        }
+
+        // the first cell of a piece is its leftmost cell with the smallest row,
+        // every other cell lies ahead of it in column order
+        int longest = 1;
+        for (int id : typeIDs) {
+            for (int[][] mutation : shapes[id]) {
+                longest = Math.max(longest, mutation[0].length);
+            }
+        }
+        window = longest * height;
+        int codeBits = 64 - Long.numberOfLeadingZeros(code);
+        if (window + codeBits > 63) {
+            throw new IllegalArgumentException("Board too high or too many pieces for a 64 bit state");
+        }
+
+        masks = new long[height][];
+        maskTypes = new int[height][];
+        for (int row = 0; row < height; row++) {
+            List<Long> rowMasks = new ArrayList<>();
+            List<Integer> rowTypes = new ArrayList<>();
+            for (int t = 0; t < typeIDs.length; t++) {
+                for (int[][] mutation : shapes[typeIDs[t]]) {
+                    long mask = maskAt(mutation, row);
+                    if (mask != 0) {
+                        rowMasks.add(mask);
+                        rowTypes.add(t);
+                    }
+                }
+            }
+            masks[row] = rowMasks.stream().mapToLong(m -> m).toArray();
+            maskTypes[row] = rowTypes.stream().mapToInt(t -> t).toArray();
+        }
+    }
+
+    /**
+     * Tilings with the given pentominoes, each used at most once.
+     *
+     * @param height number of cells per column
+     * @param pieces pentomino letters, a letter can appear more than once
+     */
+    public static ProfileDPCounter forPentominoes(int height, char[] pieces) {
+        int[] ids = new int[pieces.length];
+        for (int i = 0; i < pieces.length; i++) {
+            ids[i] = Pieces.characterToID(pieces[i]);
+        }
+        return new ProfileDPCounter(height, PentominoDatabase.data, ids, false);
+    }
+
+    /**
+     * Tilings with any number of each of the given pentominoes.
+     */
+    public static ProfileDPCounter unlimitedPentominoes(int height, char[] pieces) {
+        int[] ids = new int[pieces.length];
+        for (int i = 0; i < pieces.length; i++) {
+            ids[i] = Pieces.characterToID(pieces[i]);
+        }
+        return new ProfileDPCounter(height, PentominoDatabase.data, ids, true);
+    }
+
+    /**
+     * @return the cells of the mutation as bits relative to its first cell,
+     *         which is put in the given row, or 0 if it does not fit in the
+     *         height of the board
+     */
+    private long maskAt(int[][] mutation, int row) {
+        // the mutation is stored as [row][column]
+        int firstRow = -1;
+        for (int i = 0; i < mutation.length && firstRow == -1; i++) {
+            if (mutation[i][0] == 1) {
+                firstRow = i;
+            }
+        }
+        long mask = 0;
+        for (int i = 0; i < mutation.length; i++) {
+            for (int j = 0; j < mutation[i].length; j++) {
+                if (mutation[i][j] == 1) {
+                    int r = row + i - firstRow;
+                    if (r < 0 || r >= height) {
+                        return 0;
+                    }
+                    mask |= 1L << (j * height + i - firstRow);
+                }
+            }
+        }
+        return mask;
+    }
+
+    /**
+     * @param length number of columns
+     * @return the number of tilings of the height x length board, mirrored and
+     *         rotated tilings count as different ones
+     */
+    public BigInteger count(int length) {
+        return countUpTo(length)[length];
+    }
+
+    /**
+     * Counts the tilings of every length up to maxLength in one pass. A state
+     * without covered cells ahead of a column is a finished tiling of the
+     * board up to that column.
+     *
+     * @return the number of tilings per length, index 0 is the empty board
+     */
+    public BigInteger[] countUpTo(int maxLength) {
+        BigInteger[] result = new BigInteger[maxLength + 1];
+        Map<Long, BigInteger> states = new HashMap<>();
+        states.put(0L, BigInteger.ONE);
+        long profileMask = (1L << window) - 1;
+        for (int column = 0; column <= maxLength; column++) {
+            BigInteger complete = BigInteger.ZERO;
+            for (Map.Entry<Long, BigInteger> entry : states.entrySet()) {
+                if ((entry.getKey() & profileMask) == 0) {
+                    complete = complete.add(entry.getValue());
+                }
+            }
+            result[column] = complete;
+            if (column == maxLength) {
+                break;
+            }
+            for (int row = 0; row < height; row++) {
+                states = step(states, row, profileMask);
+            }
+        }
+        return result;
+    }
+
+    // Moves every state past one cell in the given row
+    private Map<Long, BigInteger> step(Map<Long, BigInteger> states, int row, long profileMask) {
+        Map<Long, BigInteger> next = new HashMap<>(states.size() * 2);
+        for (Map.Entry<Long, BigInteger> entry : states.entrySet()) {
+            long key = entry.getKey();
+            long profile = key & profileMask;
+            long used = key >>> window;
+            BigInteger ways = entry.getValue();
+            if ((profile & 1) != 0) {
+                // covered by an earlier piece
+                next.merge(used << window | profile >>> 1, ways, BigInteger::add);
+                continue;
+            }
+            long[] rowMasks = masks[row];
+            for (int k = 0; k < rowMasks.length; k++) {
+                if ((profile & rowMasks[k]) != 0) {
+                    continue;
+                }
+                int t = maskTypes[row][k];
+                long nextUsed = used;
+                if (typeCount[t] >= 0) {
+                    if (used / radix[t] % (typeCount[t] + 1) == typeCount[t]) {
+                        continue; // all pieces of this type are on the board
+                    }
+                    nextUsed += radix[t];
+                }
+                next.merge(nextUsed << window | (profile | rowMasks[k]) >>> 1, ways, BigInteger::add);
+            }
+        }
+        return next;
+    }
+
+    /**
+     * Main function. Counts the tilings of the narrow rectangles with the 12
+     * pentominoes, and of 5xN boards with unlimited pentominoes for N up to the
+     * argument (default 100)
+     */
+    public static void main(String[] args) {
+        char[] all = { 'X', 'I', 'Z', 'T', 'U', 'V', 'W', 'Y', 'L', 'P', 'N', 'F' };
+        int[][] boards = { { 3, 20 }, { 4, 15 }, { 5, 12 }, { 6, 10 } };
+        for (int[] board : boards) {
+            long startTime = System.currentTimeMillis();
+            BigInteger count = forPentominoes(board[0], all).count(board[1]);
+            long endTime = System.currentTimeMillis();
+            System.out.println(board[0] + "x" + board[1] + ": " + count + " tilings in " + (endTime - startTime)
+                    + " ms");
+        }
+
+        int maxLength = args.length > 0 ? Integer.parseInt(args[0]) : 100;
+        long startTime = System.currentTimeMillis();
+        BigInteger[] counts = unlimitedPentominoes(5, all).countUpTo(maxLength);
+        long endTime = System.currentTimeMillis();
+        for (int n = 1; n <= maxLength; n++) {
+            System.out.println("5x" + n + " with unlimited pentominoes: " + counts[n]);
+        }
+        System.out.println("Counted in " + (endTime - startTime) + " ms");
+    }
+}
@@ -0,0 +1,72 @@
+package search;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A check that can reject a partial solution early. The search tells the
+ * pruner about every piece it places and removes (always in reverse order),
+ * so the pruner can keep its counts up to date and answer isFeasible in
+ * constant time.
+ * 
+ * Cells are numbered x * cols + y, types are the piece IDs of the shape table
+ * the pruner was made for (the pentomino ID for pentominoes).
+ */
+public interface Pruner {
+    /**
+     * A piece was put on the board
+     * 
+     * @param type  piece ID
+     * @param cells the cells it covers
+     */
+    void place(int type, int[] cells);
+
+    /**
+     * The last placed piece was taken off the board again
+     * 
+     * @param type  piece ID
+     * @param cells the cells it covered
+     */
+    void remove(int type, int[] cells);
+
+    /**
+     * Cells that are filled before the search starts without a piece of the
+     * pruner, e.g. blocked cells or pieces fixed in place (see Preplacement).
+     * They stay filled for the whole search.
+     * 
+     * @param cells the filled cells
+     */
+    void fill(int[] cells);
+
+    /**
+     * Empties cells that were filled with fill again
+     * 
+     * @param cells the cells, as given to fill
+     */
+    void unfill(int[] cells);
+
+    /**
+     * @return false if the remaining pieces can certainly not be placed on the
+     *         remaining cells
+     */
+    boolean isFeasible();
+
+    /**
+     * The pruners the searches use by default: a checkerboard colouring,
+     * stripes modulo 5 in both directions and the shape of small regions.
+     * 
+     * @param rows     size of the field in x
+     * @param cols     size of the field in y
+     * @param shapes   mutations of every piece ID, e.g. PentominoDatabase.data
+     * @param pieceIDs ID of every piece that has to be placed
+     * @return a new list of pruners for this board
+     */
+    static List<Pruner> standardPruners(int rows, int cols, int[][][][] shapes, int[] pieceIDs) {
+        List<Pruner> pruners = new ArrayList<>();
+        pruners.add(ColouringPruner.checkerboard(rows, cols, shapes, pieceIDs));
+        pruners.add(ColouringPruner.stripes(rows, cols, 5, true, shapes, pieceIDs));
+        pruners.add(ColouringPruner.stripes(rows, cols, 5, false, shapes, pieceIDs));
+        pruners.add(new RegionPruner(rows, cols, shapes, pieceIDs));
+        return pruners;
+    }
+}
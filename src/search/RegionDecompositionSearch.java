@@ -0,0 +1,515 @@
+package search;
+// Search that splits the empty area into independent regions
+
+// As soon as a placement cuts the empty cells into disconnected regions, each
+// region is solved on its own with a part of the remaining pieces. The number
+// of tilings of the board is then the product of the counts of the regions,
+// summed over every way to divide the pieces. Results are memoised by the
+// shape of the region (moved to the corner) and the pieces it gets, so a
+// region that shows up again at another place or in another branch is solved
+// only once.
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Scanner;
+
+import common.UI;
+import pentominoes.PentominoDatabase;
+
+public class RegionDecompositionSearch {
+
+    public int horiGridSize;
+    public int vertGridSize;
+    public char[] input;
+    // stop adding regions to the memo once it holds this many
+    public int memoLimit = 500_000;
+
+    // Create the UI object
+    public UI ui;
+
+    // the pieces grouped by type
+    private int[] typeIDs;
+    private int[] typeArea;
+    // per type and mutation the cells relative to the first cell (x major)
+    private int[][][][] anchored;
+
+    // the field is searched with the shorter side as cols, so the edge between
+    // the filled and the empty cells stays short
+    private int rows;
+    private int cols;
+    private boolean transposed;
+    private boolean[] free;
+    private int[][] field;
+    // flood fill scratch space, a cell is visited if its stamp is the current one
+    private int[] stamp;
+    private int currentStamp;
+
+    // region and pieces -> number of tilings, or 0 / 1 when looking for one
+    private Map<RegionKey, Long> memo;
+    private long nodes;
+    private long memoHits;
+
+    /**
+     * Looks for one tiling of the whole field.
+     *
+     * @return the field with the pentomino ID on every cell, or null if there
+     *         is no tiling
+     */
+    public int[][] search() {
+        long startTime = System.currentTimeMillis();
+        int[] counts = prepare();
+        boolean found = counts != null && find(components(allCells()), 0, counts);
+        long endTime = System.currentTimeMillis();
+        if (found) {
+            System.out.println("Found a solution in " + (endTime - startTime) + " ms");
+            int[][] result = field;
+            if (transposed) {
+                result = new int[horiGridSize][vertGridSize];
+                for (int x = 0; x < horiGridSize; x++) {
+                    for (int y = 0; y < vertGridSize; y++) {
+                        result[x][y] = field[y][x];
+                    }
+                }
+            }
+            if (ui != null) {
+                ui.setState(result);
+            }
+            return result;
+        }
+        System.out.println("No solution found");
+        return null;
+    }
+
+    /**
+     * Counts the tilings of the whole field, mirrored and rotated tilings
+     * count as different ones.
+     *
+     * @return the number of tilings
+     * @throws ArithmeticException if the number does not fit in a long
+     */
+    public long count() {
+        long startTime = System.currentTimeMillis();
+        int[] counts = prepare();
+        long result = counts == null ? 0 : combine(components(allCells()), 0, counts);
+        long endTime = System.currentTimeMillis();
+        System.out.println(result + " solutions after " + nodes + " nodes and " + memoHits + " memo hits in "
+                + (endTime - startTime) + " ms");
+        return result;
+    }
+
+    /**
+     * @return the number of placements tried by the last search
+     */
+    public long getNodeCount() {
+        return nodes;
+    }
+
+    /**
+     * @return how often the last search reused a solved region
+     */
+    public long getMemoHits() {
+        return memoHits;
+    }
+
+    /**
+     * Groups the input by pentomino and resets the board.
+     *
+     * @return the number of pieces of every type, or null if their area is not
+     *         the area of the field
+     */
+    private int[] prepare() {
+        int[] countByID = new int[PentominoDatabase.data.length];
+        for (char c : input) {
+            countByID[Pieces.characterToID(c)]++;
+        }
+        int types = 0;
+        for (int count : countByID) {
+            if (count > 0) {
+                types++;
+            }
+        }
+        typeIDs = new int[types];
+        typeArea = new int[types];
+        anchored = new int[types][][][];
+        int[] counts = new int[types];
+        int area = 0;
+        int t = 0;
+        for (int id = 0; id < countByID.length; id++) {
+            if (countByID[id] > 0) {
+                typeIDs[t] = id;
+                counts[t] = countByID[id];
+                anchored[t] = Pieces.anchoredMutations(PentominoDatabase.data[id]);
+                typeArea[t] = anchored[t][0].length;
+                area += typeArea[t] * counts[t];
+                t++;
+            }
+        }
+
+        transposed = vertGridSize > horiGridSize;
+        rows = transposed ? vertGridSize : horiGridSize;
+        cols = transposed ? horiGridSize : vertGridSize;
+        free = new boolean[rows * cols];
+        Arrays.fill(free, true);
+        field = new int[rows][cols];
+        for (int[] row : field) {
+            Arrays.fill(row, -1);
+        }
+        stamp = new int[free.length];
+        currentStamp = 0;
+        memo = new HashMap<>();
+        nodes = 0;
+        memoHits = 0;
+        return area == free.length ? counts : null;
+    }
+
+    private int[] allCells() {
+        int[] cells = new int[free.length];
+        for (int c = 0; c < cells.length; c++) {
+            cells[c] = c;
+        }
+        return cells;
+    }
+
+    /**
+     * Counts the tilings of one connected region.
+     *
+     * @param region the cells of the region in ascending order
+     * @param counts the number of pieces of every type, their area is the size
+     *               of the region
+     */
+    private long countRegion(int[] region, int[] counts) {
+        if (region.length == 0) {
+            return 1;
+        }
+        RegionKey key = new RegionKey(region, cols, counts);
+        Long known = memo.get(key);
+        if (known != null) {
+            memoHits++;
+            return known;
+        }
+        long total = 0;
+        int[] cells = new int[maxArea()];
+        for (int t = 0; t < counts.length; t++) {
+            if (counts[t] == 0) {
+                continue;
+            }
+            for (int[][] mutation : anchored[t]) {
+                if (!fits(region[0], mutation, cells)) {
+                    continue;
+                }
+                nodes++;
+                setFree(cells, mutation.length, false);
+                counts[t]--;
+                long ways = combine(components(remove(region, mutation.length)), 0, counts);
+                counts[t]++;
+                setFree(cells, mutation.length, true);
+                total = Math.addExact(total, ways);
+            }
+        }
+        remember(key, total);
+        return total;
+    }
+
+    /**
+     * Counts the tilings of the regions from index on, summed over every way
+     * to give them the pieces.
+     */
+    private long combine(List<int[]> regions, int index, int[] counts) {
+        if (index == regions.size()) {
+            return 1;
+        }
+        int[] region = regions.get(index);
+        if (index == regions.size() - 1) {
+            // the last region gets the pieces that are left
+            return countRegion(region, counts);
+        }
+        long total = 0;
+        for (int[] part : partitions(counts, region.length)) {
+            long here = countRegion(region, part);
+            if (here == 0) {
+                continue;
+            }
+            int[] rest = subtract(counts, part);
+            total = Math.addExact(total, Math.multiplyExact(here, combine(regions, index + 1, rest)));
+        }
+        return total;
+    }
+
+    /**
+     * Tiles one connected region and writes the pieces on the field.
+     *
+     * @return false if the region can not be tiled with these pieces, the
+     *         field is then unchanged
+     */
+    private boolean findRegion(int[] region, int[] counts) {
+        if (region.length == 0) {
+            return true;
+        }
+        // only failures are memoised, a success ends the search
+        RegionKey key = new RegionKey(region, cols, counts);
+        if (memo.containsKey(key)) {
+            memoHits++;
+            return false;
+        }
+        int[] cells = new int[maxArea()];
+        for (int t = 0; t < counts.length; t++) {
+            if (counts[t] == 0) {
+                continue;
+            }
+            for (int[][] mutation : anchored[t]) {
+                if (!fits(region[0], mutation, cells)) {
+                    continue;
+                }
+                nodes++;
+                setFree(cells, mutation.length, false);
+                counts[t]--;
+                boolean found = find(components(remove(region, mutation.length)), 0, counts);
+                counts[t]++;
+                if (found) {
+                    for (int i = 0; i < mutation.length; i++) {
+                        field[cells[i] / cols][cells[i] % cols] = typeIDs[t];
+                    }
+                    return true;
+                }
+                setFree(cells, mutation.length, true);
+            }
+        }
+        remember(key, 0L);
+        return false;
+    }
+
+    /**
+     * Tiles the regions from index on with the first division of the pieces
+     * that works.
+     */
+    private boolean find(List<int[]> regions, int index, int[] counts) {
+        if (index == regions.size()) {
+            return true;
+        }
+        int[] region = regions.get(index);
+        if (index == regions.size() - 1) {
+            return findRegion(region, counts);
+        }
+        for (int[] part : partitions(counts, region.length)) {
+            if (!findRegion(region, part)) {
+                continue;
+            }
+            if (find(regions, index + 1, subtract(counts, part))) {
+                return true;
+            }
+            // take this region off the field again and try the next division
+            for (int c : region) {
+                field[c / cols][c % cols] = -1;
+                free[c] = true;
+            }
+        }
+        return false;
+    }
+
+    private void remember(RegionKey key, long value) {
+        if (memo.size() < memoLimit) {
+            memo.put(key, value);
+        }
+    }
+
+    private int maxArea() {
+        int max = 0;
+        for (int area : typeArea) {
+            max = Math.max(max, area);
+        }
+        return max;
+    }
+
+    /**
+     * Puts a mutation on the anchor cell.
+     *
+     * @param cells receives the cells the mutation covers
+     * @return false if a cell is outside the field or not free
+     */
+    private boolean fits(int anchor, int[][] mutation, int[] cells) {
+        int x = anchor / cols;
+        int y = anchor % cols;
+        for (int i = 0; i < mutation.length; i++) {
+            int cx = x + mutation[i][0];
+            int cy = y + mutation[i][1];
+            if (cx >= rows || cy < 0 || cy >= cols || !free[cx * cols + cy]) {
+                return false;
+            }
+            cells[i] = cx * cols + cy;
+        }
+        return true;
+    }
+
+    private void setFree(int[] cells, int length, boolean value) {
+        for (int i = 0; i < length; i++) {
+            free[cells[i]] = value;
+        }
+    }
+
+    // The cells of the region that are still free
+    private int[] remove(int[] region, int length) {
+        int[] rest = new int[region.length - length];
+        int k = 0;
+        for (int c : region) {
+            if (free[c]) {
+                rest[k++] = c;
+            }
+        }
+        return rest;
+    }
+
+    /**
+     * Splits free cells into connected regions, smallest first so that a
+     * region that can not be tiled is found early.
+     */
+    private List<int[]> components(int[] cells) {
+        List<int[]> regions = new ArrayList<>();
+        currentStamp++;
+        int[] stack = new int[cells.length];
+        for (int start : cells) {
+            if (stamp[start] == currentStamp) {
+                continue;
+            }
+            int size = 0;
+            int top = 0;
+            stack[top++] = start;
+            stamp[start] = currentStamp;
+            int[] region = new int[cells.length];
+            while (top > 0) {
+                int c = stack[--top];
+                region[size++] = c;
+                int x = c / cols;
+                int y = c % cols;
+                if (x > 0) {
+                    top = push(c - cols, stack, top);
+                }
+                if (x < rows - 1) {
+                    top = push(c + cols, stack, top);
+                }
+                if (y > 0) {
+                    top = push(c - 1, stack, top);
+                }
+                if (y < cols - 1) {
+                    top = push(c + 1, stack, top);
+                }
+            }
+            region = Arrays.copyOf(region, size);
+            Arrays.sort(region);
+            regions.add(region);
+        }
+        regions.sort((a, b) -> a.length - b.length);
+        return regions;
+    }
+
+    private int push(int c, int[] stack, int top) {
+        if (free[c] && stamp[c] != currentStamp) {
+            stamp[c] = currentStamp;
+            stack[top++] = c;
+        }
+        return top;
+    }
+
+    /**
+     * @return every choice of at most counts[t] pieces of each type whose area
+     *         is exactly area
+     */
+    private List<int[]> partitions(int[] counts, int area) {
+        List<int[]> result = new ArrayList<>();
+        partitions(counts, 0, area, new int[counts.length], result);
+        return result;
+    }
+
+    private void partitions(int[] counts, int type, int area, int[] part, List<int[]> result) {
+        if (area == 0) {
+            result.add(part.clone());
+            return;
+        }
+        if (type == counts.length) {
+            return;
+        }
+        for (int n = 0; n <= counts[type] && n * typeArea[type] <= area; n++) {
+            part[type] = n;
+            partitions(counts, type + 1, area - n * typeArea[type], part, result);
+        }
+        part[type] = 0;
+    }
+
+    private static int[] subtract(int[] counts, int[] part) {
+        int[] rest = counts.clone();
+        for (int t = 0; t < rest.length; t++) {
+            rest[t] -= part[t];
+        }
+        return rest;
+    }
+
+    /**
+     * A region moved to the corner of the field together with the pieces it
+     * has to be tiled with. Regions that only differ by a translation have the
+     * same key.
+     */
+    private static final class RegionKey {
+        private final int[] data;
+        private final int hash;
+
+        RegionKey(int[] region, int cols, int[] counts) {
+            int minX = region[0] / cols;
+            int minY = Integer.MAX_VALUE;
+            for (int c : region) {
+                minY = Math.min(minY, c % cols);
+            }
+            data = new int[region.length + counts.length];
+            for (int i = 0; i < region.length; i++) {
+                data[i] = region[i] - minX * cols - minY;
+            }
+            System.arraycopy(counts, 0, data, region.length, counts.length);
+            hash = Arrays.hashCode(data);
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof RegionKey && Arrays.equals(data, ((RegionKey) other).data);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    public void getUserInput() {
+        Scanner scanner = new Scanner(System.in);
+
+        System.out.println("Enter the horizontal grid size:");
+        horiGridSize = Integer.parseInt(scanner.nextLine().trim());
+        System.out.println("Enter the vertical grid size:");
+        vertGridSize = Integer.parseInt(scanner.nextLine().trim());
+
+        System.out.println("Enter pentomino letters separated by commas (e.g., X, U, I):");
+        List<String> lettersList = Arrays.asList(scanner.nextLine().toUpperCase().split(","));
+        input = new char[lettersList.size()];
+        for (int i = 0; i < lettersList.size(); i++) {
+            input[i] = lettersList.get(i).trim().charAt(0);
+        }
+        scanner.close();
+
+        ui = new UI(horiGridSize, vertGridSize, 60);
+    }
+
+    /**
+     * Main function. Needs to be executed to start the search algorithm, with
+     * the argument "count" it counts all tilings instead of showing one
+     */
+    public static void main(String[] args) {
+        RegionDecompositionSearch search = new RegionDecompositionSearch();
+        search.getUserInput();
+        System.out.println("Starting search...");
+        if (args.length > 0 && args[0].equals("count")) {
+            search.count();
+        } else {
+            search.search();
+        }
+    }
+}
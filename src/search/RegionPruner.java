@@ -0,0 +1,379 @@
+package search;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * Prunes boards with a small closed region of empty cells that the remaining
+ * pieces can not fill. Checking only the size of a region (a multiple of 5)
+ * lets through a 5 cell hole that has the shape of no remaining pentomino, or
+ * a 10 cell region that no pair of them can fill.
+ * 
+ * A region smaller than three times the smallest piece holds at most two
+ * pieces, so it is fillable exactly if its shape is one mutation of a
+ * remaining piece, or the union of two. Both shapes are looked up in tables
+ * built once per piece set, keyed by the shape moved to the corner.
+ * 
+ * After every placement only the regions touching the new piece are
+ * checked, because only those can have changed.
+ */
+public class RegionPruner implements Pruner {
+    // tables per shape table (by identity, dropped with it) and piece set
+    private static final Map<int[][][][], Map<String, Tables>> tableCache = new WeakHashMap<>();
+    // piece sets kept per shape table, the least recently used go first
+    private static final int CACHED_SETS = 64;
+
+    private final int rows;
+    private final int cols;
+    private final int[] area;
+    private final int[] remaining;
+    // largest region that is classified
+    private final int maxRegion;
+    // shape key -> piece IDs that have this shape
+    private final Map<Long, int[]> singles;
+    // shape key -> pairs of piece IDs (first * shapeCount + second) that fill it
+    private final Map<Long, int[]> pairs;
+    private final int shapeCount;
+
+    private final boolean[] filled;
+    private int emptyCells;
+    private int remainingArea;
+    private int[] lastCells;
+
+    // flood fill scratch space, a cell is visited if its stamp is the current one
+    private final int[] stamp;
+    private int currentStamp;
+    private final int[] region;
+    private final int[] stack;
+
+    /**
+     * @param rows     size of the field in x
+     * @param cols     size of the field in y
+     * @param shapes   mutations of every piece ID, e.g. PentominoDatabase.data
+     * @param pieceIDs ID of every piece that still has to be placed
+     */
+    public RegionPruner(int rows, int cols, int[][][][] shapes, int[] pieceIDs) {
+        this.rows = rows;
+        this.cols = cols;
+        this.shapeCount = shapes.length;
+        area = new int[shapes.length];
+        remaining = new int[shapes.length];
+        int minArea = Integer.MAX_VALUE;
+        for (int id : pieceIDs) {
+            remaining[id]++;
+            area[id] = cellsOf(shapes[id][0]).length;
+            minArea = Math.min(minArea, area[id]);
+            remainingArea += area[id];
+        }
+        maxRegion = pieceIDs.length == 0 ? 0 : 3 * minArea - 1;
+
+        Tables tables = tables(shapes, remaining);
+        singles = tables.singles;
+        pairs = tables.pairs;
+
+        filled = new boolean[rows * cols];
+        emptyCells = rows * cols;
+        stamp = new int[rows * cols];
+        region = new int[maxRegion + 1];
+        stack = new int[rows * cols];
+    }
+
+    // The shape tables of a piece set
+    private static final class Tables {
+        final Map<Long, int[]> singles;
+        final Map<Long, int[]> pairs;
+
+        Tables(Map<Long, int[]> singles, Map<Long, int[]> pairs) {
+            this.singles = singles;
+            this.pairs = pairs;
+        }
+    }
+
+    // Builds or reuses the tables of single and pair shapes
+    private static synchronized Tables tables(int[][][][] shapes, int[] counts) {
+        StringBuilder key = new StringBuilder();
+        for (int id = 0; id < counts.length; id++) {
+            if (counts[id] > 0) {
+                key.append(id).append(',');
+            }
+        }
+        // arrays are compared by identity, so every shape table has its own
+        // entry
+        Map<String, Tables> sets = tableCache.computeIfAbsent(shapes,
+                k -> new LinkedHashMap<>(16, 0.75f, true) {
+                    @Override
+                    protected boolean removeEldestEntry(Map.Entry<String, Tables> eldest) {
+                        return size() > CACHED_SETS;
+                    }
+                });
+        Tables tables = sets.get(key.toString());
+        if (tables != null) {
+            return tables;
+        }
+
+        Map<Long, List<Integer>> singleLists = new HashMap<>();
+        Map<Long, List<Integer>> pairLists = new HashMap<>();
+        List<Integer> ids = new ArrayList<>();
+        for (int id = 0; id < counts.length; id++) {
+            if (counts[id] > 0) {
+                ids.add(id);
+                for (int[][] mutation : shapes[id]) {
+                    long shape = shapeKey(cellsOf(mutation));
+                    addUnique(singleLists, shape, id);
+                }
+            }
+        }
+        // put every mutation of the second piece at every offset next to the first
+        for (int a = 0; a < ids.size(); a++) {
+            for (int b = a; b < ids.size(); b++) {
+                int first = ids.get(a);
+                int second = ids.get(b);
+                int code = first * shapes.length + second;
+                for (int[][] mutationA : shapes[first]) {
+                    int[] cellsA = cellsOf(mutationA);
+                    for (int[][] mutationB : shapes[second]) {
+                        int[] cellsB = cellsOf(mutationB);
+                        for (int dx = -mutationB.length; dx <= mutationA.length; dx++) {
+                            for (int dy = -mutationB[0].length; dy <= mutationA[0].length; dy++) {
+                                int[] union = union(cellsA, cellsB, dx, dy);
+                                if (union != null) {
+                                    addUnique(pairLists, shapeKey(union), code);
+                                }
+                            }
+                        }
+                    }
+                }
+            }
+        }
+        tables = new Tables(toArrays(singleLists), toArrays(pairLists));
+        sets.put(key.toString(), tables);
+        return tables;
+    }
+
+    private static void addUnique(Map<Long, List<Integer>> map, long shape, int value) {
+        if (shape == -1) {
+            return;
+        }
+        List<Integer> list = map.computeIfAbsent(shape, k -> new ArrayList<>());
+        if (!list.contains(value)) {
+            list.add(value);
+        }
+    }
+
+    private static Map<Long, int[]> toArrays(Map<Long, List<Integer>> lists) {
+        Map<Long, int[]> result = new HashMap<>();
+        for (Map.Entry<Long, List<Integer>> entry : lists.entrySet()) {
+            result.put(entry.getKey(), entry.getValue().stream().mapToInt(i -> i).toArray());
+        }
+        return result;
+    }
+
+    // cells of a mutation as x << 16 | y
+    private static int[] cellsOf(int[][] piece) {
+        List<Integer> cells = new ArrayList<>();
+        for (int i = 0; i < piece.length; i++) {
+            for (int j = 0; j < piece[i].length; j++) {
+                if (piece[i][j] == 1) {
+                    cells.add(i << 16 | j);
+                }
+            }
+        }
+        return cells.stream().mapToInt(c -> c).toArray();
+    }
+
+    /**
+     * @return the cells of both pieces with the second one moved by (dx, dy),
+     *         or null if they overlap or do not touch
+     */
+    private static int[] union(int[] cellsA, int[] cellsB, int dx, int dy) {
+        boolean touching = false;
+        int[] result = new int[cellsA.length + cellsB.length];
+        System.arraycopy(cellsA, 0, result, 0, cellsA.length);
+        for (int k = 0; k < cellsB.length; k++) {
+            int x = (cellsB[k] >> 16) + dx;
+            int y = (cellsB[k] & 0xFFFF) + dy;
+            for (int a : cellsA) {
+                int ax = a >> 16;
+                int ay = a & 0xFFFF;
+                if (ax == x && ay == y) {
+                    return null;
+                }
+                if (Math.abs(ax - x) + Math.abs(ay - y) == 1) {
+                    touching = true;
+                }
+            }
+            // may be negative, shapeKey moves the cells back
+            result[cellsA.length + k] = (x + 1024) << 16 | (y + 1024);
+        }
+        for (int k = 0; k < cellsA.length; k++) {
+            result[k] = ((result[k] >> 16) + 1024) << 16 | ((result[k] & 0xFFFF) + 1024);
+        }
+        return touching ? result : null;
+    }
+
+    /**
+     * Turns a set of cells (x << 16 | y) into a key that is the same for equal
+     * shapes at any position: a bit mask of the bounding box plus its size.
+     * 
+     * @return the key, or -1 if the bounding box is too large for a long
+     */
+    static long shapeKey(int[] cells) {
+        int minX = Integer.MAX_VALUE;
+        int minY = Integer.MAX_VALUE;
+        int maxX = Integer.MIN_VALUE;
+        int maxY = Integer.MIN_VALUE;
+        for (int cell : cells) {
+            minX = Math.min(minX, cell >> 16);
+            maxX = Math.max(maxX, cell >> 16);
+            minY = Math.min(minY, cell & 0xFFFF);
+            maxY = Math.max(maxY, cell & 0xFFFF);
+        }
+        int height = maxX - minX + 1;
+        int width = maxY - minY + 1;
+        if (height * width > 56 || height > 15 || width > 15) {
+            return -1;
+        }
+        long mask = 0;
+        for (int cell : cells) {
+            mask |= 1L << (((cell >> 16) - minX) * width + (cell & 0xFFFF) - minY);
+        }
+        return mask | (long) height << 56 | (long) width << 60;
+    }
+
+    public void place(int type, int[] cells) {
+        for (int c : cells) {
+            filled[c] = true;
+        }
+        remaining[type]--;
+        emptyCells -= cells.length;
+        remainingArea -= cells.length;
+        lastCells = cells;
+    }
+
+    public void remove(int type, int[] cells) {
+        for (int c : cells) {
+            filled[c] = false;
+        }
+        remaining[type]++;
+        emptyCells += cells.length;
+        remainingArea += cells.length;
+        lastCells = null;
+    }
+
+    public void fill(int[] cells) {
+        for (int c : cells) {
+            filled[c] = true;
+        }
+        emptyCells -= cells.length;
+    }
+
+    public void unfill(int[] cells) {
+        for (int c : cells) {
+            filled[c] = false;
+        }
+        emptyCells += cells.length;
+    }
+
+    public boolean isFeasible() {
+        // regions may stay partly empty if there are more cells than pieces
+        if (lastCells == null || emptyCells != remainingArea) {
+            return true;
+        }
+        currentStamp++;
+        for (int c : lastCells) {
+            int x = c / cols;
+            int y = c % cols;
+            if ((x > 0 && !checkRegion(c - cols)) || (x < rows - 1 && !checkRegion(c + cols))
+                    || (y > 0 && !checkRegion(c - 1)) || (y < cols - 1 && !checkRegion(c + 1))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Flood fills the region of an empty cell, giving up once it is larger
+     * than maxRegion, and checks whether the remaining pieces can fill it.
+     * 
+     * @return false if the region is small and can not be filled
+     */
+    private boolean checkRegion(int start) {
+        if (filled[start] || stamp[start] == currentStamp) {
+            return true;
+        }
+        int size = 0;
+        int top = 0;
+        boolean large = false;
+        stack[top++] = start;
+        stamp[start] = currentStamp;
+        while (top > 0) {
+            int c = stack[--top];
+            if (size <= maxRegion) {
+                region[size] = c;
+            }
+            size++;
+            if (size > maxRegion) {
+                // keep filling so the cells are marked, but do not classify
+                large = true;
+            }
+            int x = c / cols;
+            int y = c % cols;
+            if (x > 0) {
+                top = push(c - cols, top);
+            }
+            if (x < rows - 1) {
+                top = push(c + cols, top);
+            }
+            if (y > 0) {
+                top = push(c - 1, top);
+            }
+            if (y < cols - 1) {
+                top = push(c + 1, top);
+            }
+        }
+        return large || canFill(size);
+    }
+
+    private int push(int c, int top) {
+        if (!filled[c] && stamp[c] != currentStamp) {
+            stamp[c] = currentStamp;
+            stack[top++] = c;
+        }
+        return top;
+    }
+
+    // Classifies a closed region of at most maxRegion cells
+    private boolean canFill(int size) {
+        int[] cells = new int[size];
+        for (int i = 0; i < size; i++) {
+            cells[i] = (region[i] / cols) << 16 | (region[i] % cols);
+        }
+        long key = shapeKey(cells);
+        if (key == -1) {
+            return true;
+        }
+        int[] ids = singles.get(key);
+        if (ids != null) {
+            for (int id : ids) {
+                if (remaining[id] > 0) {
+                    return true;
+                }
+            }
+        }
+        int[] codes = pairs.get(key);
+        if (codes != null) {
+            for (int code : codes) {
+                int first = code / shapeCount;
+                int second = code % shapeCount;
+                if (first == second ? remaining[first] >= 2 : remaining[first] > 0 && remaining[second] > 0) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+}
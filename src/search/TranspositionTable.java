@@ -0,0 +1,264 @@
+package search;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * Remembers board states that are known to have no solution, so a search
+ * never explores the same failed subproblem twice.
+ *
+ * A state is identified by a Zobrist hash: every cell and every (piece type,
+ * number left) pair has a random 64 bit key, and the hash of a state is the
+ * XOR of the keys of its occupied cells and of its remaining pieces. Placing
+ * or removing a piece changes the hash with a few XORs.
+ *
+ * The table has a fixed size and stores only the hashes, in two long arrays.
+ * Every bucket has two slots: the first keeps the state whose failure took the
+ * most work to prove, the second always takes the newest state. Two different
+ * states with the same 64 bit hash are not told apart, which is very unlikely
+ * at the sizes used here.
+ *
+ * The keys come from a fixed seed, so a table saved by one run can be loaded
+ * by the next, as long as the board and pieces are the same. The caller
+ * passes a problem key that describes them and load refuses tables of other
+ * problems.
+ */
+public class TranspositionTable {
+    private static final int MAGIC = 0x5454424C; // "TTBL"
+    private static final long SEED = 0x9E3779B97F4A7C15L;
+
+    private final int cells;
+    private final int pieceTypes;
+    private final int maxCount;
+    private final int sizeLog2;
+    private final long problemKey;
+
+    private final long[] cellKeys;
+    private final long[] pieceKeys;
+
+    // slot 2 * bucket prefers hard states, slot 2 * bucket + 1 always replaces
+    private final long[] hashes;
+    private final int[] work;
+    private final int mask;
+
+    private long probes;
+    private long hits;
+    private long stores;
+    private long overwrites;
+
+    /**
+     * @param cells      number of cells of the board
+     * @param pieceTypes number of piece types
+     * @param maxCount   the most pieces of one type that can be left
+     * @param sizeLog2   the table has 2^sizeLog2 buckets of two states
+     * @param problemKey describes the board and pieces, checked when loading
+     */
+    public TranspositionTable(int cells, int pieceTypes, int maxCount, int sizeLog2, long problemKey) {
+        if (sizeLog2 < 1 || sizeLog2 > 29) {
+            throw new IllegalArgumentException("Table size must be between 2^1 and 2^29 buckets");
+        }
+        this.cells = cells;
+        this.pieceTypes = pieceTypes;
+        this.maxCount = maxCount;
+        this.sizeLog2 = sizeLog2;
+        this.problemKey = problemKey;
+
+        SplittableRandom random = new SplittableRandom(SEED);
+        cellKeys = new long[cells];
+        for (int c = 0; c < cells; c++) {
+            cellKeys[c] = random.nextLong();
+        }
+        pieceKeys = new long[pieceTypes * (maxCount + 1)];
+        for (int i = 0; i < pieceKeys.length; i++) {
+            pieceKeys[i] = random.nextLong();
+        }
+
+        hashes = new long[2 << sizeLog2];
+        work = new int[2 << sizeLog2];
+        mask = (1 << sizeLog2) - 1;
+    }
+
+    /**
+     * @return the key to XOR into the hash when the cell gets occupied or free
+     */
+    public long cellKey(int cell) {
+        return cellKeys[cell];
+    }
+
+    /**
+     * @return the key of a state with count pieces of this type left
+     */
+    public long pieceKey(int type, int count) {
+        return pieceKeys[type * (maxCount + 1) + count];
+    }
+
+    /**
+     * @param counts number of pieces left of every type
+     * @return the part of the hash that describes the remaining pieces
+     */
+    public long piecesKey(int[] counts) {
+        long key = 0;
+        for (int t = 0; t < counts.length; t++) {
+            key ^= pieceKey(t, counts[t]);
+        }
+        return key;
+    }
+
+    /**
+     * @param hash the Zobrist hash of a state
+     * @return true if the state is known to have no solution
+     */
+    public boolean isFailure(long hash) {
+        probes++;
+        hash = nonZero(hash);
+        int slot = bucket(hash);
+        if (hashes[slot] == hash || hashes[slot + 1] == hash) {
+            hits++;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Remembers that a state has no solution.
+     *
+     * @param hash  the Zobrist hash of the state
+     * @param nodes the number of nodes it took to find out, states that took
+     *              more work are kept longer
+     */
+    public void storeFailure(long hash, long nodes) {
+        stores++;
+        hash = nonZero(hash);
+        int slot = bucket(hash);
+        int effort = (int) Math.min(nodes, Integer.MAX_VALUE);
+        if (hashes[slot] == hash || hashes[slot + 1] == hash) {
+            return;
+        }
+        if (hashes[slot] == 0 || effort >= work[slot]) {
+            // the old state moves to the slot that always gets replaced
+            if (hashes[slot + 1] != 0) {
+                overwrites++;
+            }
+            hashes[slot + 1] = hashes[slot];
+            work[slot + 1] = work[slot];
+            hashes[slot] = hash;
+            work[slot] = effort;
+        } else {
+            if (hashes[slot + 1] != 0) {
+                overwrites++;
+            }
+            hashes[slot + 1] = hash;
+            work[slot + 1] = effort;
+        }
+    }
+
+    // 0 marks an empty slot
+    private static long nonZero(long hash) {
+        return hash == 0 ? 1 : hash;
+    }
+
+    private int bucket(long hash) {
+        return (int) ((hash >>> 32 ^ hash) & mask) << 1;
+    }
+
+    /**
+     * Forgets all states, the statistics are kept.
+     */
+    public void clear() {
+        Arrays.fill(hashes, 0);
+        Arrays.fill(work, 0);
+    }
+
+    public long getProbes() {
+        return probes;
+    }
+
+    public long getHits() {
+        return hits;
+    }
+
+    public long getStores() {
+        return stores;
+    }
+
+    public long getOverwrites() {
+        return overwrites;
+    }
+
+    /**
+     * @return the number of bytes the table arrays take
+     */
+    public long getMemoryBytes() {
+        return (long) hashes.length * Long.BYTES + (long) work.length * Integer.BYTES
+                + (long) (cellKeys.length + pieceKeys.length) * Long.BYTES;
+    }
+
+    /**
+     * @return how many states the table holds
+     */
+    public int getUsedSlots() {
+        int used = 0;
+        for (long hash : hashes) {
+            if (hash != 0) {
+                used++;
+            }
+        }
+        return used;
+    }
+
+    /**
+     * Prints the hit rate and memory use
+     */
+    public void printStatistics() {
+        double hitRate = probes == 0 ? 0 : 100.0 * hits / probes;
+        System.out.printf("Transposition table: %d probes, %d hits (%.1f%%), %d stores, %d overwritten, "
+                + "%d of %d slots used, %.1f MB%n", probes, hits, hitRate, stores, overwrites, getUsedSlots(),
+                hashes.length, getMemoryBytes() / (1024.0 * 1024.0));
+    }
+
+    /**
+     * Writes the stored states to a file, so a later run on the same problem
+     * can start with them.
+     */
+    public void save(Path file) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(cells);
+            out.writeInt(pieceTypes);
+            out.writeInt(maxCount);
+            out.writeInt(sizeLog2);
+            out.writeLong(problemKey);
+            for (int i = 0; i < hashes.length; i++) {
+                out.writeLong(hashes[i]);
+                out.writeInt(work[i]);
+            }
+        }
+    }
+
+    /**
+     * Reads the states saved by an earlier run.
+     *
+     * @return false if the file belongs to another problem or table size, the
+     *         table is then unchanged
+     */
+    public boolean load(Path file) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readInt() != cells || in.readInt() != pieceTypes
+                    || in.readInt() != maxCount || in.readInt() != sizeLog2 || in.readLong() != problemKey) {
+                return false;
+            }
+            for (int i = 0; i < hashes.length; i++) {
+                hashes[i] = in.readLong();
+                work[i] = in.readInt();
+            }
+            return true;
+        }
+    }
+}
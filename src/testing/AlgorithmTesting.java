@@ -4,6 +4,7 @@ import java.io.FileNotFoundException;
 import java.io.PrintWriter;
 import java.io.UnsupportedEncodingException;
 
+import sat.SatSearch;
 import search.BasicSearch;
 import search.MoreOptimizedBacktrackingSearch;
 import search.OptimizedBacktrackingSearch;
@@ -32,6 +33,9 @@ public class AlgorithmTesting {
                 // Test BacktrackingOptimized with FloodFill optimization
                 MoreOptimizedBacktrackingSearch improvedSearch = new MoreOptimizedBacktrackingSearch();
 
+                // Test the SAT encoding with the CDCL solver
+                SatSearch satSearch = new SatSearch();
+
                 writer = new PrintWriter("testing.csv", "UTF-8");
 
                 for (TestingParameter param : parameters) {
@@ -49,6 +53,10 @@ public class AlgorithmTesting {
                         improvedSearch.vertGridSize = param.pentominoHeight;
                         improvedSearch.input = param.pentominoes;
 
+                        satSearch.horiGridSize = param.pentominoWidth;
+                        satSearch.vertGridSize = param.pentominoHeight;
+                        satSearch.input = param.pentominoes;
+
                         long startTime;
                         long endTime;
 
@@ -85,6 +93,14 @@ public class AlgorithmTesting {
                                         param.pentominoes.length,
                                         (endTime - startTime));
 
+                        // Test SAT
+                        System.out.println("Testing SAT");
+                        startTime = System.currentTimeMillis();
+                        satSearch.search();
+                        endTime = System.currentTimeMillis();
+                        writeToFile("sat", param.pentominoWidth, param.pentominoHeight, param.pentominoes.length,
+                                        (endTime - startTime));
+
                 }
                 writer.close();
         }
@@ -0,0 +1,53 @@
+package testing;
+
+import dancinglinks.DancingCells;
+import dancinglinks.DancingLinks;
+import dancinglinks.Example;
+import dancinglinks.RowPrinter;
+
+/**
+ * Counts the tilings of the standard boards with DancingCells and with
+ * DancingLinks on the same matrix and prints both times.
+ */
+public class DancingCellsBenchmark {
+
+        public static final TestingParameter[] parameters = new TestingParameter[] {
+                        new TestingParameter(3, 20,
+                                        new char[] { 'X', 'I', 'Z', 'T', 'U', 'V', 'W', 'Y', 'L', 'P', 'N', 'F' }),
+                        new TestingParameter(4, 15,
+                                        new char[] { 'X', 'I', 'Z', 'T', 'U', 'V', 'W', 'Y', 'L', 'P', 'N', 'F' }),
+                        new TestingParameter(5, 12,
+                                        new char[] { 'X', 'I', 'Z', 'T', 'U', 'V', 'W', 'Y', 'L', 'P', 'N', 'F' }),
+                        new TestingParameter(6, 10,
+                                        new char[] { 'X', 'I', 'Z', 'T', 'U', 'V', 'W', 'Y', 'L', 'P', 'N', 'F' })
+        };
+
+        public static void main(String[] args) throws InterruptedException {
+                for (TestingParameter param : parameters) {
+                        System.out.println("Testing parameter: " + param.pentominoWidth + "x" + param.pentominoHeight);
+                        Character[] pieces = new Character[param.pentominoes.length];
+                        for (int i = 0; i < pieces.length; i++) {
+                                pieces[i] = param.pentominoes[i];
+                        }
+                        int[][] matrix = Example.buildMatrix(param.pentominoWidth, param.pentominoHeight, pieces);
+                        int[][] sparseRows = Example.toSparseRows(matrix);
+
+                        DancingCells cells = new DancingCells(matrix[0].length, null, sparseRows, rows -> {
+                        });
+                        long startTime = System.currentTimeMillis();
+                        long cellsCount = cells.enumerate();
+                        long cellsTime = System.currentTimeMillis() - startTime;
+
+                        DancingLinks dlx = new DancingLinks(matrix[0].length, sparseRows, new RowPrinter(rows -> {
+                        }));
+                        startTime = System.currentTimeMillis();
+                        long dlxCount = dlx.enumerate();
+                        long dlxTime = System.currentTimeMillis() - startTime;
+
+                        System.out.println("DancingCells: " + cellsCount + " tilings, " + cells.getNodeCount()
+                                        + " nodes in " + cellsTime + " ms");
+                        System.out.println("DancingLinks: " + dlxCount + " tilings, " + dlx.getNodeCount()
+                                        + " nodes in " + dlxTime + " ms");
+                }
+        }
+}
@@ -0,0 +1,50 @@
+package testing;
+
+import dancinglinks.DancingLinks;
+import dancinglinks.Example;
+import dancinglinks.RowPrinter;
+import search.MeetInTheMiddleSolver;
+
+/**
+ * Counts the tilings of long boards with the meet-in-the-middle solver and
+ * with DancingLinks and prints both times.
+ */
+public class MeetInTheMiddleBenchmark {
+
+        public static final TestingParameter[] parameters = new TestingParameter[] {
+                        new TestingParameter(3, 20,
+                                        new char[] { 'X', 'I', 'Z', 'T', 'U', 'V', 'W', 'Y', 'L', 'P', 'N', 'F' }),
+                        new TestingParameter(4, 15,
+                                        new char[] { 'X', 'I', 'Z', 'T', 'U', 'V', 'W', 'Y', 'L', 'P', 'N', 'F' }),
+                        new TestingParameter(5, 12,
+                                        new char[] { 'X', 'I', 'Z', 'T', 'U', 'V', 'W', 'Y', 'L', 'P', 'N', 'F' })
+        };
+
+        public static void main(String[] args) throws InterruptedException {
+                for (TestingParameter param : parameters) {
+                        System.out.println("Testing parameter: " + param.pentominoWidth + "x" + param.pentominoHeight);
+
+                        MeetInTheMiddleSolver solver = new MeetInTheMiddleSolver();
+                        solver.horiGridSize = param.pentominoWidth;
+                        solver.vertGridSize = param.pentominoHeight;
+                        solver.input = param.pentominoes;
+                        long startTime = System.currentTimeMillis();
+                        long mitmCount = solver.count();
+                        long mitmTime = System.currentTimeMillis() - startTime;
+
+                        Character[] pieces = new Character[param.pentominoes.length];
+                        for (int i = 0; i < pieces.length; i++) {
+                                pieces[i] = param.pentominoes[i];
+                        }
+                        int[][] matrix = Example.buildMatrix(param.pentominoWidth, param.pentominoHeight, pieces);
+                        DancingLinks dlx = new DancingLinks(matrix, new RowPrinter(rows -> {
+                        }));
+                        startTime = System.currentTimeMillis();
+                        long dlxCount = dlx.enumerate();
+                        long dlxTime = System.currentTimeMillis() - startTime;
+
+                        System.out.println("Meet in the middle: " + mitmCount + " tilings in " + mitmTime + " ms");
+                        System.out.println("DancingLinks:       " + dlxCount + " tilings in " + dlxTime + " ms");
+                }
+        }
+}
@@ -0,0 +1,60 @@
+package testing;
+
+import dancinglinks.DancingLinks;
+import dancinglinks.Example;
+import dancinglinks.RowPrinter;
+import search.MoreOptimizedBacktrackingSearch;
+import search.Preplacement;
+
+/**
+ * Counts the tilings of boards with and without pieces fixed in place or
+ * cells blocked, with DancingLinks and the standard pruners, and times
+ * MoreOptimizedBacktrackingSearch finding one of them. The constrained boards should be the faster ones.
+ */
+public class PreplacementBenchmark {
+
+        private static final char[] PIECES = { 'X', 'I', 'Z', 'T', 'U', 'V', 'W', 'Y', 'L', 'P', 'N', 'F' };
+
+        // board size and constraints, an empty text for none
+        private static final Object[][] cases = new Object[][] {
+                        { 6, 10, "" },
+                        { 6, 10, "X0@c" },
+                        { 6, 10, "X0@c I0@0,0" },
+                        // Scott's problem: 8x8 with the 2x2 centre blocked
+                        { 8, 8, "#3,3 #3,4 #4,3 #4,4" },
+                        { 8, 8, "#3,3 #3,4 #4,3 #4,4 X0@0,1" }
+        };
+
+        public static void main(String[] args) throws InterruptedException {
+                for (Object[] c : cases) {
+                        int rows = (Integer) c[0];
+                        int cols = (Integer) c[1];
+                        Preplacement preplacement = Preplacement.parse(rows, cols, (String) c[2]);
+                        System.out.println("Testing parameter: " + rows + "x" + cols + " " + c[2]);
+
+                        Character[] pieces = new Character[PIECES.length];
+                        for (int i = 0; i < pieces.length; i++) {
+                                pieces[i] = PIECES[i];
+                        }
+                        long startTime = System.currentTimeMillis();
+                        int[][] matrix = Example.toSparseRows(Example.buildMatrix(rows, cols, pieces));
+                        DancingLinks dlx = new DancingLinks(pieces.length + rows * cols, matrix, new RowPrinter(r -> {
+                        }));
+                        Example.addStandardPruners(dlx, matrix, Example.pieceTypes(pieces));
+                        if (!Example.applyPreplacement(dlx, matrix, Example.pieceTypes(pieces), preplacement)) {
+                                System.out.println("The constraints can not be applied");
+                                continue;
+                        }
+                        long count = dlx.enumerate();
+                        System.out.println("DancingLinks: " + count + " tilings, " + dlx.getNodeCount() + " nodes in "
+                                        + (System.currentTimeMillis() - startTime) + " ms");
+
+                        MoreOptimizedBacktrackingSearch search = new MoreOptimizedBacktrackingSearch();
+                        search.horiGridSize = rows;
+                        search.vertGridSize = cols;
+                        search.input = PIECES;
+                        search.preplacement = preplacement;
+                        search.search();
+                }
+        }
+}
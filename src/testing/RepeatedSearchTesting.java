@@ -0,0 +1,68 @@
+package testing;
+
+import pentominoes.PentominoDatabase;
+import search.MoreOptimizedBacktrackingSearch;
+import search.Pieces;
+import search.Preplacement;
+import search.Pruner;
+
+/**
+ * Runs MoreOptimizedBacktrackingSearch twice on the same instance with the
+ * same pruners. Pruners set by the caller are kept between searches, so the
+ * second search only finds a solution if the first one left them as it found
+ * them.
+ */
+public class RepeatedSearchTesting {
+
+        public static final TestingParameter[] parameters = new TestingParameter[] {
+                        new TestingParameter(6, 10,
+                                        new char[] { 'X', 'I', 'Z', 'T', 'U', 'V', 'W', 'Y', 'L', 'P', 'N', 'F' }),
+                        new TestingParameter(5, 12,
+                                        new char[] { 'X', 'I', 'Z', 'T', 'U', 'V', 'W', 'Y', 'L', 'P', 'N', 'F' })
+        };
+
+        // pieces fixed before the search, null for none
+        public static final String[] preplacements = { null, "X0@c" };
+
+        public static void main(String[] args) {
+                boolean passed = true;
+                for (TestingParameter param : parameters) {
+                        for (String text : preplacements) {
+                                System.out.println("Testing parameter: " + param.pentominoWidth + "x"
+                                                + param.pentominoHeight + (text == null ? "" : " " + text));
+                                MoreOptimizedBacktrackingSearch search = new MoreOptimizedBacktrackingSearch();
+                                search.horiGridSize = param.pentominoWidth;
+                                search.vertGridSize = param.pentominoHeight;
+                                search.input = param.pentominoes;
+                                char[] pieces = param.pentominoes;
+                                if (text != null) {
+                                        search.preplacement = Preplacement.parse(param.pentominoWidth,
+                                                        param.pentominoHeight, text);
+                                        pieces = search.preplacement.remainingPieces(param.pentominoes);
+                                }
+                                int[] pieceIDs = new int[pieces.length];
+                                for (int i = 0; i < pieces.length; i++) {
+                                        pieceIDs[i] = Pieces.characterToID(pieces[i]);
+                                }
+                                search.pruners = Pruner.standardPruners(param.pentominoWidth,
+                                                param.pentominoHeight, PentominoDatabase.data, pieceIDs);
+
+                                search.search();
+                                boolean first = search.getSolution() != null;
+                                // a work unit export in between must not change the pruners either
+                                search.splitPrefixes(1);
+                                search.search();
+                                boolean second = search.getSolution() != null;
+                                if (!first || !second) {
+                                        System.out.println("FAILED: first search " + first + ", second search "
+                                                        + second);
+                                        passed = false;
+                                }
+                        }
+                }
+                System.out.println(passed ? "All searches found a solution" : "Some searches failed");
+                if (!passed) {
+                        System.exit(1);
+                }
+        }
+}